@@ -10,4 +10,49 @@ public interface CustomAgentDao {
     long updateAllStatus(Agent.Status status);
 
     List<Agent> findAll(Collection<String> tags, Collection<Agent.Status> statuses);
+
+    /**
+     * Set the first IDLE agent matched tags to BUSY with job id, atomic
+     *
+     * @return agent before update, or null if no idle agent
+     */
+    Agent acquire(Collection<String> tags, String jobId);
+
+    /**
+     * Set agent matched tags to BUSY with job id, atomic
+     *
+     * @param onlyIdle the agent must be IDLE before acquired
+     * @return agent before update, or null if not matched
+     */
+    Agent acquire(String agentId, Collection<String> tags, boolean onlyIdle, String jobId);
+
+    /**
+     * Set BUSY agent to IDLE and remove job id, atomic
+     *
+     * @return agent before update, or null if agent not BUSY
+     */
+    Agent release(String agentId);
+
+    /**
+     * Remove job id from agent
+     */
+    void removeJob(String agentId);
+
+    /**
+     * Set status of agent, atomic, the job id is not changed
+     *
+     * @param expected the status before update, or any status if null
+     * @return agent before update, or null if status not expected
+     */
+    Agent updateStatus(String agentId, Agent.Status expected, Agent.Status status);
+
+    /**
+     * Set connection info of agent, the status and job id are not changed
+     */
+    void updateConnection(Agent agent);
+
+    /**
+     * Set container id of agent started from host
+     */
+    void updateContainerId(String agentId, String containerId);
 }
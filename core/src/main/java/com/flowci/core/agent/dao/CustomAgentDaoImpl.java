@@ -9,7 +9,9 @@ import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.core.query.Update;
 
+import java.time.Instant;
 import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 
 public class CustomAgentDaoImpl implements CustomAgentDao {
@@ -26,12 +28,7 @@ public class CustomAgentDaoImpl implements CustomAgentDao {
     @Override
     public List<Agent> findAll(Collection<String> tags, Collection<Agent.Status> statuses) {
         Query q = new Query();
-
-        if (ObjectsHelper.hasCollection(tags)) {
-            q.addCriteria(Criteria.where("tags").in(tags));
-        } else {
-            q.addCriteria(Criteria.where("tags.0").exists(false));
-        }
+        q.addCriteria(tagsCriteria(tags));
 
         if (ObjectsHelper.hasCollection(statuses)) {
             q.addCriteria(Criteria.where("status").in(statuses));
@@ -40,5 +37,89 @@ public class CustomAgentDaoImpl implements CustomAgentDao {
         return operations.find(q, Agent.class);
     }
 
+    @Override
+    public Agent acquire(Collection<String> tags, String jobId) {
+        Query q = new Query();
+        q.addCriteria(tagsCriteria(tags));
+        q.addCriteria(Criteria.where("status").is(Agent.Status.IDLE));
 
+        return operations.findAndModify(q, toStatus(Agent.Status.BUSY).set("jobId", jobId), Agent.class);
+    }
+
+    @Override
+    public Agent acquire(String agentId, Collection<String> tags, boolean onlyIdle, String jobId) {
+        Query q = new Query();
+        q.addCriteria(Criteria.where("_id").is(agentId));
+        q.addCriteria(tagsCriteria(tags));
+
+        if (onlyIdle) {
+            q.addCriteria(Criteria.where("status").is(Agent.Status.IDLE));
+        }
+
+        return operations.findAndModify(q, toStatus(Agent.Status.BUSY).set("jobId", jobId), Agent.class);
+    }
+
+    @Override
+    public Agent release(String agentId) {
+        Query q = new Query();
+        q.addCriteria(Criteria.where("_id").is(agentId));
+        q.addCriteria(Criteria.where("status").is(Agent.Status.BUSY));
+
+        return operations.findAndModify(q, toStatus(Agent.Status.IDLE).unset("jobId"), Agent.class);
+    }
+
+    @Override
+    public void removeJob(String agentId) {
+        Query q = new Query(Criteria.where("_id").is(agentId));
+        operations.updateFirst(q, new Update().unset("jobId").set("updatedAt", new Date()), Agent.class);
+    }
+
+    @Override
+    public Agent updateStatus(String agentId, Agent.Status expected, Agent.Status status) {
+        Query q = new Query();
+        q.addCriteria(Criteria.where("_id").is(agentId));
+
+        if (expected != null) {
+            q.addCriteria(Criteria.where("status").is(expected));
+        }
+
+        return operations.findAndModify(q, toStatus(status), Agent.class);
+    }
+
+    @Override
+    public void updateConnection(Agent agent) {
+        Query q = new Query(Criteria.where("_id").is(agent.getId()));
+        Update u = new Update()
+                .set("url", agent.getUrl())
+                .set("os", agent.getOs())
+                .set("isK8sCluster", agent.isK8sCluster())
+                .set("isDocker", agent.isDocker())
+                .set("connectedAt", agent.getConnectedAt())
+                .set("updatedAt", new Date());
+
+        operations.updateFirst(q, u, Agent.class);
+    }
+
+    @Override
+    public void updateContainerId(String agentId, String containerId) {
+        Query q = new Query(Criteria.where("_id").is(agentId));
+        operations.updateFirst(q, new Update().set("containerId", containerId).set("updatedAt", new Date()), Agent.class);
+    }
+
+    /**
+     * Same as Agent.match(Selector), agent without tags only for selector without labels
+     */
+    private static Criteria tagsCriteria(Collection<String> tags) {
+        if (ObjectsHelper.hasCollection(tags)) {
+            return Criteria.where("tags").in(tags);
+        }
+        return Criteria.where("tags.0").exists(false);
+    }
+
+    private static Update toStatus(Agent.Status status) {
+        return new Update()
+                .set("status", status)
+                .set("statusUpdatedAt", Instant.now())
+                .set("updatedAt", new Date());
+    }
 }
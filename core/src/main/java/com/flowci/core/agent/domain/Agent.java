@@ -31,7 +31,6 @@ import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.Instant;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.Set;
 
 /**
@@ -171,12 +170,16 @@ public class Agent extends Mongoable {
     }
 
     public boolean match(Selector selector) {
-        Set<String> labels = new HashSet<>(selector.getLabel());
-        if (labels.isEmpty() && tags.isEmpty()) {
-            return true;
+        Set<String> labels = selector.getLabel();
+        if (labels.isEmpty()) {
+            return tags.isEmpty();
         }
 
-        labels.retainAll(tags);
-        return !labels.isEmpty();
+        for (String label : labels) {
+            if (tags.contains(label)) {
+                return true;
+            }
+        }
+        return false;
     }
 }
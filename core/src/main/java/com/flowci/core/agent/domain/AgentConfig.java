@@ -10,4 +10,6 @@ import lombok.experimental.Accessors;
 public class AgentConfig {
 
     private int ExitOnIdle;
+
+    private int SlogVersion; // negotiated binary shell log frame version, 0 for json
 }
@@ -40,4 +40,6 @@ public class AgentInit {
     private Common.OS os;
 
     private Agent.Status status;
+
+    private Integer slogVersion; // max binary shell log frame version, json shell log if not set
 }
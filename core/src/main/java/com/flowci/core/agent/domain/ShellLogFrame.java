@@ -0,0 +1,77 @@
+package com.flowci.core.agent.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binary shell log frame from agent, the body of 'slog' event once the version negotiated
+ * - version: 1 byte
+ * - job id: 2 bytes length + utf8 bytes
+ * - step id: 2 bytes length + utf8 bytes
+ * - log: raw bytes to the end of message
+ */
+@Getter
+@AllArgsConstructor
+public final class ShellLogFrame {
+
+    public static final int Version = 1;
+
+    private final String jobId;
+
+    private final String stepId;
+
+    private final byte[] log;
+
+    /**
+     * Read frame from current position to the limit of buffer
+     *
+     * @throws IllegalArgumentException if frame is invalid
+     */
+    public static ShellLogFrame decode(ByteBuffer buffer) {
+        try {
+            int version = buffer.get() & 0xFF;
+            if (version != Version) {
+                throw new IllegalArgumentException("Unsupported shell log frame version " + version);
+            }
+
+            String jobId = readString(buffer);
+            String stepId = readString(buffer);
+
+            byte[] log = new byte[buffer.remaining()];
+            buffer.get(log);
+
+            return new ShellLogFrame(jobId, stepId, log);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Incomplete shell log frame");
+        }
+    }
+
+    public byte[] encode() {
+        byte[] job = jobId.getBytes(StandardCharsets.UTF_8);
+        byte[] step = stepId.getBytes(StandardCharsets.UTF_8);
+
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 2 + job.length + 2 + step.length + log.length);
+        buffer.put((byte) Version);
+        buffer.putShort((short) job.length).put(job);
+        buffer.putShort((short) step.length).put(step);
+        buffer.put(log);
+        return buffer.array();
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getShort() & 0xFFFF;
+        if (buffer.hasArray()) {
+            int start = buffer.arrayOffset() + buffer.position();
+            buffer.position(buffer.position() + length);
+            return new String(buffer.array(), start, length, StandardCharsets.UTF_8);
+        }
+
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,34 @@
+package com.flowci.core.agent.event;
+
+import com.flowci.core.agent.domain.Agent;
+import com.flowci.core.common.event.BroadcastEvent;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * Broadcast agent status to the idle agent pool of all instances
+ */
+@Getter
+@Setter
+public class IdleAgentSyncEvent extends BroadcastEvent {
+
+    private String agentId;
+
+    private Set<String> tags = Collections.emptySet();
+
+    private boolean idle;
+
+    public IdleAgentSyncEvent() {
+        super();
+    }
+
+    public IdleAgentSyncEvent(Object source, Agent agent, boolean idle) {
+        super(source);
+        this.agentId = agent.getId();
+        this.tags = agent.getTags();
+        this.idle = idle;
+    }
+}
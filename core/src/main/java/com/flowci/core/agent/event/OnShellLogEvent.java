@@ -9,12 +9,12 @@ public class OnShellLogEvent extends EventFromAgent {
 
     private final String stepId;
 
-    private final String b64Log;
+    private final byte[] log;
 
-    public OnShellLogEvent(Object source, String jobId, String stepId, String b64Log) {
+    public OnShellLogEvent(Object source, String jobId, String stepId, byte[] log) {
         super(source, null, null);
         this.jobId = jobId;
         this.stepId = stepId;
-        this.b64Log = b64Log;
+        this.log = log;
     }
 }
@@ -15,7 +15,9 @@ import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.handler.BinaryWebSocketHandler;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.Base64;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
@@ -41,6 +43,8 @@ public class AgentEventManager extends BinaryWebSocketHandler {
 
     private final static String HeaderToken = "Token";
 
+    private final static String AttrSlogVersion = "slogVersion";
+
     private final Map<String, WebSocketSession> agentSessionStore = new ConcurrentHashMap<>();
 
     @Autowired
@@ -76,15 +80,24 @@ public class AgentEventManager extends BinaryWebSocketHandler {
 
     @Override
     protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) throws Exception {
-        byte[] bytes = message.getPayload().array();
+        ByteBuffer payload = message.getPayload();
 
-        if (bytes.length < (EventLength + 2)) {
+        if (payload.remaining() < (EventLength + 2)) {
             log.warn("invalid binary message");
             return;
         }
 
+        String event = getEvent(payload);
+
+        // decode shell log frame from payload directly since it's the most frequent event
+        if (EventShellLog.equals(event) && isBinaryShellLog(session)) {
+            payload.position(payload.position() + EventLength + 1);
+            onShellLog(payload);
+            return;
+        }
+
+        byte[] bytes = getBytes(payload);
         String token = getToken(session);
-        String event = getEvent(bytes);
         byte[] body = getBody(bytes);
 
         if (EventConnect.equals(event)) {
@@ -151,13 +164,17 @@ public class AgentEventManager extends BinaryWebSocketHandler {
             init.setToken(token);
             init.setIp(session.getRemoteAddress() == null ? null : session.getRemoteAddress().getAddress().toString());
 
+            int slogVersion = negotiateSlogVersion(init.getSlogVersion());
+            session.getAttributes().put(AttrSlogVersion, slogVersion);
+
             OnConnectedEvent event = new OnConnectedEvent(this, token, session, init, true);
             eventManager.publish(event);
             agentSessionStore.put(token, session);
 
             Agent agent = event.getAgent();
-            writeMessage(token, new ResponseMessage<>(StatusCode.OK, agent.getConfig()));
-            log.debug("Agent {} is connected with status {}", token, init.getStatus());
+            AgentConfig config = agent.getConfig().setSlogVersion(slogVersion);
+            writeMessage(token, new ResponseMessage<>(StatusCode.OK, config));
+            log.debug("Agent {} is connected with status {} and shell log version {}", token, init.getStatus(), slogVersion);
         } catch (Exception e) {
             log.warn(e);
             writeMessage(session, new ResponseMessage<Void>(StatusCode.FATAL, e.getMessage(), null));
@@ -176,12 +193,22 @@ public class AgentEventManager extends BinaryWebSocketHandler {
     private void onShellLog(byte[] body) {
         try {
             ShellLog item = objectMapper.readValue(body, ShellLog.class);
-            eventManager.publish(new OnShellLogEvent(this, item.getJobId(), item.getStepId(), item.getLog()));
-        } catch (IOException e) {
+            byte[] raw = Base64.getDecoder().decode(item.getLog());
+            eventManager.publish(new OnShellLogEvent(this, item.getJobId(), item.getStepId(), raw));
+        } catch (IOException | IllegalArgumentException e) {
             log.warn(e);
         }
     }
 
+    private void onShellLog(ByteBuffer body) {
+        try {
+            ShellLogFrame frame = ShellLogFrame.decode(body);
+            eventManager.publish(new OnShellLogEvent(this, frame.getJobId(), frame.getStepId(), frame.getLog()));
+        } catch (IllegalArgumentException e) {
+            log.warn(e.getMessage());
+        }
+    }
+
     private void onTtyLog(byte[] body) {
         try {
             TtyCmd.Log item = objectMapper.readValue(body, TtyCmd.Log.class);
@@ -205,8 +232,33 @@ public class AgentEventManager extends BinaryWebSocketHandler {
         return session.getHandshakeHeaders().get(HeaderToken).get(0);
     }
 
-    private static String getEvent(byte[] bytes) {
-        return new String(Arrays.copyOf(bytes, EventLength)).trim();
+    private static int negotiateSlogVersion(Integer agentVersion) {
+        if (agentVersion == null || agentVersion < ShellLogFrame.Version) {
+            return 0;
+        }
+        return ShellLogFrame.Version;
+    }
+
+    private static boolean isBinaryShellLog(WebSocketSession session) {
+        Object version = session.getAttributes().get(AttrSlogVersion);
+        return version != null && (int) version > 0;
+    }
+
+    private static String getEvent(ByteBuffer payload) {
+        byte[] event = new byte[EventLength];
+        payload.duplicate().get(event);
+        return new String(event).trim();
+    }
+
+    private static byte[] getBytes(ByteBuffer payload) {
+        if (payload.hasArray() && payload.arrayOffset() == 0 && payload.position() == 0
+                && payload.remaining() == payload.array().length) {
+            return payload.array();
+        }
+
+        byte[] bytes = new byte[payload.remaining()];
+        payload.duplicate().get(bytes);
+        return bytes;
     }
 
     private static byte[] getBody(byte[] bytes) {
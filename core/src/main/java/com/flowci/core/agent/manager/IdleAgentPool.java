@@ -0,0 +1,211 @@
+package com.flowci.core.agent.manager;
+
+import com.flowci.tree.Selector;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * Local index of idle agents by tag, it's a hint for agent acquiring
+ * and the agent must be acquired from db atomically after polled from the pool
+ * - tags are interned to id, each tag id has a bitset of agent ordinal
+ * - selector matching is done by bitset intersection with idle agent bitset
+ * - ordinal and tag id are released once agent removed or polled, and reused by the next agent or tag
+ */
+@Component
+public class IdleAgentPool {
+
+    private static final int[] NoTags = new int[0];
+
+    // tag : tag id
+    private final Map<String, Integer> tagIds = new HashMap<>();
+
+    // tag id : tag
+    private final List<String> tagNames = new ArrayList<>();
+
+    // tag id : ordinal of agents with the tag
+    private final List<BitSet> agentsOfTag = new ArrayList<>();
+
+    // agent id : ordinal
+    private final Map<String, Integer> ordinals = new HashMap<>();
+
+    // ordinal : agent id
+    private final List<String> agentIds = new ArrayList<>();
+
+    // ordinal : tag ids
+    private final List<int[]> tagsOfAgent = new ArrayList<>();
+
+    private final BitSet untagged = new BitSet();
+
+    private final BitSet idle = new BitSet();
+
+    private final BitSet freeOrdinals = new BitSet();
+
+    private final BitSet freeTagIds = new BitSet();
+
+    /**
+     * Add agent to pool as idle agent
+     */
+    public synchronized void put(String agentId, Collection<String> tags) {
+        int ordinal = ordinalOf(agentId);
+        setTags(ordinal, tags);
+        idle.set(ordinal);
+    }
+
+    /**
+     * Remove agent from pool
+     */
+    public synchronized void remove(String agentId) {
+        Integer ordinal = ordinals.get(agentId);
+        if (ordinal != null) {
+            release(ordinal);
+        }
+    }
+
+    /**
+     * Find and remove an idle agent matched the selector
+     *
+     * @return agent id
+     */
+    public synchronized Optional<String> poll(Selector selector) {
+        int ordinal = find(selector.getLabel());
+        if (ordinal < 0) {
+            return Optional.empty();
+        }
+
+        String agentId = agentIds.get(ordinal);
+        release(ordinal);
+        return Optional.of(agentId);
+    }
+
+    public synchronized boolean contains(String agentId) {
+        Integer ordinal = ordinals.get(agentId);
+        return ordinal != null && idle.get(ordinal);
+    }
+
+    public synchronized int size() {
+        return idle.cardinality();
+    }
+
+    private int find(Set<String> labels) {
+        if (labels.isEmpty()) {
+            return firstIdle(untagged);
+        }
+
+        for (String label : labels) {
+            Integer tagId = tagIds.get(label);
+            if (tagId == null) {
+                continue;
+            }
+
+            int ordinal = firstIdle(agentsOfTag.get(tagId));
+            if (ordinal >= 0) {
+                return ordinal;
+            }
+        }
+
+        return -1;
+    }
+
+    private int firstIdle(BitSet candidates) {
+        if (!candidates.intersects(idle)) {
+            return -1;
+        }
+
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            if (idle.get(i)) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private int ordinalOf(String agentId) {
+        Integer ordinal = ordinals.get(agentId);
+        if (ordinal != null) {
+            return ordinal;
+        }
+
+        ordinal = freeOrdinals.nextSetBit(0);
+        if (ordinal < 0) {
+            ordinal = agentIds.size();
+            agentIds.add(agentId);
+            tagsOfAgent.add(NoTags);
+        } else {
+            freeOrdinals.clear(ordinal);
+            agentIds.set(ordinal, agentId);
+        }
+
+        ordinals.put(agentId, ordinal);
+        return ordinal;
+    }
+
+    private void release(int ordinal) {
+        clearTags(ordinal);
+        untagged.clear(ordinal);
+        idle.clear(ordinal);
+
+        ordinals.remove(agentIds.get(ordinal));
+        agentIds.set(ordinal, null);
+        freeOrdinals.set(ordinal);
+    }
+
+    private void setTags(int ordinal, Collection<String> tags) {
+        clearTags(ordinal);
+
+        if (tags == null || tags.isEmpty()) {
+            untagged.set(ordinal);
+            return;
+        }
+
+        untagged.clear(ordinal);
+
+        int[] ids = new int[tags.size()];
+        int i = 0;
+        for (String tag : tags) {
+            int tagId = tagIdOf(tag);
+            agentsOfTag.get(tagId).set(ordinal);
+            ids[i++] = tagId;
+        }
+        tagsOfAgent.set(ordinal, ids);
+    }
+
+    /**
+     * Remove agent from bitset of its tags, and release tag id without agent
+     */
+    private void clearTags(int ordinal) {
+        for (int tagId : tagsOfAgent.get(ordinal)) {
+            BitSet agents = agentsOfTag.get(tagId);
+            agents.clear(ordinal);
+
+            if (agents.isEmpty()) {
+                tagIds.remove(tagNames.get(tagId));
+                tagNames.set(tagId, null);
+                freeTagIds.set(tagId);
+            }
+        }
+
+        tagsOfAgent.set(ordinal, NoTags);
+    }
+
+    private int tagIdOf(String tag) {
+        Integer tagId = tagIds.get(tag);
+        if (tagId != null) {
+            return tagId;
+        }
+
+        tagId = freeTagIds.nextSetBit(0);
+        if (tagId < 0) {
+            tagId = agentsOfTag.size();
+            tagNames.add(tag);
+            agentsOfTag.add(new BitSet());
+        } else {
+            freeTagIds.clear(tagId);
+            tagNames.set(tagId, tag);
+        }
+
+        tagIds.put(tag, tagId);
+        return tagId;
+    }
+}
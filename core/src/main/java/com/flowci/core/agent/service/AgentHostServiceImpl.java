@@ -284,6 +284,7 @@ public class AgentHostServiceImpl implements AgentHostService {
                 String cid = cm.start(startOption);
 
                 agent.setContainerId(cid);
+                agentDao.updateContainerId(agent.getId(), cid);
                 agentService.update(agent, Agent.Status.STARTING);
 
                 log.info("Agent {} been created and started", name);
@@ -102,7 +102,8 @@ public interface AgentService {
     Agent update(AgentOption option);
 
     /**
-     * Update agent status
+     * Update agent status if it's not changed from the status of agent instance,
+     * otherwise the agent instance is synced with the latest status
      */
     Agent update(Agent agent, Agent.Status status);
 
@@ -111,4 +112,9 @@ public interface AgentService {
      */
     void dispatch(CmdIn cmd, Agent agent);
 
+    /**
+     * Push idle agent back to idle agent queue after delay, if it's not used
+     */
+    void pushBackIdle(String agentId);
+
 }
@@ -23,10 +23,10 @@ import com.flowci.core.agent.domain.*;
 import com.flowci.core.agent.domain.Agent.Status;
 import com.flowci.core.agent.event.*;
 import com.flowci.core.agent.manager.AgentEventManager;
+import com.flowci.core.agent.manager.IdleAgentPool;
 import com.flowci.core.common.config.AppProperties;
 import com.flowci.core.common.domain.PushEvent;
 import com.flowci.core.common.helper.CipherHelper;
-import com.flowci.core.common.helper.ThreadHelper;
 import com.flowci.core.common.manager.SocketPushManager;
 import com.flowci.core.common.manager.SpringEventManager;
 import com.flowci.core.common.manager.SpringTaskManager;
@@ -34,15 +34,12 @@ import com.flowci.core.common.rabbit.RabbitOperations;
 import com.flowci.core.job.event.NoIdleAgentEvent;
 import com.flowci.exception.DuplicateException;
 import com.flowci.exception.NotFoundException;
-import com.flowci.exception.StatusException;
 import com.flowci.tree.Selector;
-import com.flowci.util.ObjectsHelper;
-import com.flowci.zookeeper.InterLock;
 import com.flowci.zookeeper.ZookeeperClient;
-import com.google.common.collect.Sets;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 
@@ -64,14 +61,6 @@ import static com.flowci.core.agent.domain.Agent.Status.*;
 @Service
 public class AgentServiceImpl implements AgentService {
 
-    private static final String FetchAgentLockKey = "fetch-agent";
-
-    private static final int DefaultAgentLockTimeout = 20; // seconds
-
-    private static final int MinIdleAgentPushBack = 2; // seconds
-
-    private static final int MaxIdleAgentPushBack = 10; // seconds
-
     @Autowired
     private String topicForAgentProfile;
 
@@ -102,12 +91,21 @@ public class AgentServiceImpl implements AgentService {
     @Autowired
     private String idleAgentQueue;
 
+    @Autowired
+    private String idleAgentDelayQueue;
+
     @Autowired
     private RabbitOperations idleAgentQueueManager;
 
     @Autowired
     private SocketPushManager socketPushManager;
 
+    @Autowired
+    private IdleAgentPool idleAgentPool;
+
+    @Autowired
+    private TaskExecutor appTaskExecutor;
+
     @PostConstruct
     public void initAgentStatus() {
         taskManager.run("init-agent-status", true, () -> {
@@ -119,6 +117,12 @@ public class AgentServiceImpl implements AgentService {
                 agent.setStatus(OFFLINE);
                 agentDao.save(agent);
             }
+
+            for (Agent agent : agentDao.findAll()) {
+                if (agent.isIdle()) {
+                    idleAgentPool.put(agent.getId(), agent.getTags());
+                }
+            }
         });
     }
 
@@ -128,28 +132,35 @@ public class AgentServiceImpl implements AgentService {
             String agentId = new String(body);
             log.debug("Got an idle agent {}", agentId);
 
-            Agent agent = get(agentId);
+            Optional<Agent> optional = agentDao.findById(agentId);
+            if (!optional.isPresent()) {
+                log.debug("Agent {} not found", agentId);
+                return true;
+            }
+
+            Agent agent = optional.get();
             if (!agent.isIdle()) {
                 log.debug("Agent {} is not idle", agentId);
                 return true;
             }
 
+            // recover idle agent which may missed from local pool
+            idleAgentPool.put(agentId, agent.getTags());
+
             try {
                 IdleAgentEvent event = new IdleAgentEvent(this, agentId);
                 eventManager.publish(event);
 
-                // agent not used after event, push back to queue
+                // agent not used after event, push back to queue via delay queue
                 Boolean shouldPushBack = event.getFetched();
                 if (shouldPushBack) {
-                    int randomSec = ObjectsHelper.randomNumber(MinIdleAgentPushBack, MaxIdleAgentPushBack);
-                    ThreadHelper.sleep(randomSec * 1000L);
-                    idleAgentQueueManager.send(idleAgentQueue, agentId.getBytes());
+                    pushBackIdle(agentId);
                 }
             } catch (Exception e) {
                 log.warn(e.getMessage());
             }
             return true;
-        }, null);
+        }, appTaskExecutor);
     }
 
     @PostConstruct
@@ -233,85 +244,55 @@ public class AgentServiceImpl implements AgentService {
     @Override
     public void delete(Agent agent) {
         agentDao.delete(agent);
+        syncIdleAgentPool(agent, false);
         log.debug("{} has been deleted", agent.getName());
     }
 
     @Override
     public Optional<Agent> acquire(String jobId, Selector selector, String agentId, boolean shouldIdle) {
-        Optional<InterLock> lock = lock();
-        if (!lock.isPresent()) {
+        Agent agent = agentDao.acquire(agentId, selector.getLabel(), shouldIdle, jobId);
+        if (agent == null) {
             return Optional.empty();
         }
 
-        try {
-            Optional<Agent> optional = agentDao.findById(agentId);
-            if (!optional.isPresent()) {
-                return Optional.empty();
-            }
-
-            Agent agent = optional.get();
-            if (shouldIdle && !agent.isIdle()) {
-                return Optional.empty();
-            }
-
-            if (!agent.match(selector)) {
-                return Optional.empty();
-            }
-
-            agent.setJobId(jobId);
-            update(agent, BUSY);
-            return optional;
-        } finally {
-            unlock(lock.get());
-        }
+        onAcquired(agent, jobId);
+        return Optional.of(agent);
     }
 
     @Override
     public Optional<Agent> acquire(String jobId, Selector selector) {
-        Optional<InterLock> lock = lock();
-        if (!lock.isPresent()) {
-            throw new StatusException("Unable to get lock");
-        }
-
-        try {
-            List<Agent> agents = agentDao.findAll(selector.getLabel(), Sets.newHashSet(IDLE));
-            if (agents.isEmpty()) {
-                eventManager.publish(new NoIdleAgentEvent(this, jobId, selector));
-                return Optional.empty();
+        Optional<String> candidate;
+
+        // the pool is a hint, the agent is acquired from db only if still idle
+        while ((candidate = idleAgentPool.poll(selector)).isPresent()) {
+            Agent agent = agentDao.acquire(candidate.get(), selector.getLabel(), true, jobId);
+            if (agent != null) {
+                onAcquired(agent, jobId);
+                return Optional.of(agent);
             }
-
-            Agent agent = agents.get(0);
-            agent.setJobId(jobId);
-            update(agent, BUSY);
-
-            return Optional.of(agent);
-        } finally {
-            unlock(lock.get());
         }
+
+        eventManager.publish(new NoIdleAgentEvent(this, jobId, selector));
+        return Optional.empty();
     }
 
     @Override
     public void release(Collection<String> ids) {
-        Optional<InterLock> lock = lock();
-        if (!lock.isPresent()) {
-            throw new StatusException("Unable to get lock");
-        }
+        for (String agentId : ids) {
+            Agent agent = agentDao.release(agentId);
 
-        try {
-            for (String agentId : ids) {
-                Agent agent = get(agentId);
-                agent.setJobId(null);
-
-                switch (agent.getStatus()) {
-                    case OFFLINE:
-                        update(agent, OFFLINE);
-                    case BUSY:
-                        update(agent, IDLE);
-                        idleAgentQueueManager.send(idleAgentQueue, agentId.getBytes());
-                }
+            // agent not busy, only remove job id
+            if (agent == null) {
+                agentDao.removeJob(agentId);
+                continue;
             }
-        } finally {
-            unlock(lock.get());
+
+            agent.setJobId(null);
+            agent.setStatus(IDLE);
+            eventManager.publish(new AgentStatusEvent(this, agent));
+            syncIdleAgentPool(agent, true);
+
+            idleAgentQueueManager.send(idleAgentQueue, agentId.getBytes());
         }
     }
 
@@ -350,7 +331,9 @@ public class AgentServiceImpl implements AgentService {
         agent.setExitOnIdle(option.getExitOnIdle());
 
         try {
-            return agentDao.save(agent);
+            agentDao.save(agent);
+            syncIdleAgentPool(agent, agent.isIdle());
+            return agent;
         } catch (DuplicateKeyException e) {
             throw new DuplicateException("Agent name {0} is already defined", option.getName());
         }
@@ -358,16 +341,7 @@ public class AgentServiceImpl implements AgentService {
 
     @Override
     public Agent update(Agent agent, Status status) {
-        if (agent.getStatus() == status) {
-            agentDao.save(agent);
-            return agent;
-        }
-
-        agent.setStatus(status);
-        agentDao.save(agent);
-
-        eventManager.publish(new AgentStatusEvent(this, agent));
-        return agent;
+        return updateStatus(agent, agent.getStatus(), status);
     }
 
     @Override
@@ -381,38 +355,44 @@ public class AgentServiceImpl implements AgentService {
         }
     }
 
+    @Override
+    public void pushBackIdle(String agentId) {
+        idleAgentQueueManager.send(idleAgentDelayQueue, agentId.getBytes());
+    }
+
     //====================================================================
     //        %% Spring Event Listener
     //====================================================================
 
     @EventListener
     public void onConnected(OnConnectedEvent event) {
-        Optional<InterLock> lock = lock();
-        if (!lock.isPresent()) {
-            log.error("Agent lock not available");
-            return;
-        }
+        Agent target = getByToken(event.getToken());
+        AgentInit init = event.getInit();
 
-        try {
-            Agent target = getByToken(event.getToken());
-            AgentInit init = event.getInit();
+        target.setK8sCluster(init.getIsK8sCluster());
+        target.setDocker(init.getIsDocker());
+        target.setUrl("http://" + init.getIp() + ":" + init.getPort());
+        target.setOs(init.getOs());
+        target.setConnectedAt(Instant.now());
+        agentDao.updateConnection(target);
 
-            target.setK8sCluster(init.getIsK8sCluster());
-            target.setDocker(init.getIsDocker());
-            target.setUrl("http://" + init.getIp() + ":" + init.getPort());
-            target.setOs(init.getOs());
-            target.setConnectedAt(Instant.now());
+        update(target, init.getStatus());
 
-            update(target, init.getStatus());
+        if (target.isIdle() && event.isToIdleQueue()) {
+            idleAgentQueueManager.send(idleAgentQueue, target.getId().getBytes());
+        }
 
-            if (target.isIdle() && event.isToIdleQueue()) {
-                idleAgentQueueManager.send(idleAgentQueue, target.getId().getBytes());
-            }
+        event.setAgent(target);
+    }
 
-            event.setAgent(target);
-        } finally {
-            unlock(lock.get());
+    @EventListener
+    public void onIdleAgentSync(IdleAgentSyncEvent event) {
+        if (event.isIdle()) {
+            idleAgentPool.put(event.getAgentId(), event.getTags());
+            return;
         }
+
+        idleAgentPool.remove(event.getAgentId());
     }
 
     @EventListener
@@ -423,14 +403,11 @@ public class AgentServiceImpl implements AgentService {
 
     @EventListener
     public void onDisconnected(OnDisconnectedEvent event) {
-        Optional<InterLock> lock = lock();
         try {
             Agent target = getByToken(event.getToken());
-            update(target, OFFLINE);
+            updateStatus(target, null, OFFLINE);
         } catch (NotFoundException ignore) {
 
-        } finally {
-            lock.ifPresent(this::unlock);
         }
     }
 
@@ -438,19 +415,54 @@ public class AgentServiceImpl implements AgentService {
     //        %% Private methods
     //====================================================================
 
-    private Optional<InterLock> lock() {
-        String path = zk.makePath("/agent-locks", FetchAgentLockKey);
-        Optional<InterLock> lock = zk.lock(path, DefaultAgentLockTimeout);
-        lock.ifPresent(interLock -> log.debug("Lock: {}", FetchAgentLockKey));
-        return lock;
+    /**
+     * Set status only on the status field, since the agent might be acquired or released concurrently
+     *
+     * @param expected the status read from agent, or null to set in any status
+     */
+    private Agent updateStatus(Agent agent, Status expected, Status status) {
+        Agent before = agentDao.updateStatus(agent.getId(), expected, status);
+
+        if (before == null) {
+            // status changed by others, the latest status is kept
+            agentDao.findById(agent.getId()).ifPresent(latest -> {
+                agent.setStatus(latest.getStatus());
+                agent.setJobId(latest.getJobId());
+            });
+            log.debug("Agent {} status not updated to {} since changed", agent.getName(), status);
+            return agent;
+        }
+
+        agent.setStatus(status);
+        agent.setJobId(before.getJobId());
+
+        if (before.getStatus() == status) {
+            return agent;
+        }
+
+        eventManager.publish(new AgentStatusEvent(this, agent));
+        syncIdleAgentPool(agent, agent.isIdle());
+        return agent;
     }
 
-    private void unlock(InterLock lock) {
-        try {
-            zk.release(lock);
-            log.debug("Unlock: {}", FetchAgentLockKey);
-        } catch (Exception warn) {
-            log.warn(warn);
+    /**
+     * Sync acquired status to agent instance which is the value before update
+     */
+    private void onAcquired(Agent agent, String jobId) {
+        Status before = agent.getStatus();
+        agent.setJobId(jobId);
+        agent.setStatus(BUSY);
+
+        if (before != BUSY) {
+            eventManager.publish(new AgentStatusEvent(this, agent));
+            syncIdleAgentPool(agent, false);
         }
     }
+
+    /**
+     * Broadcast agent idle status to local idle agent pool of all instances
+     */
+    private void syncIdleAgentPool(Agent agent, boolean idle) {
+        eventManager.publish(new IdleAgentSyncEvent(this, agent, idle));
+    }
 }
@@ -137,10 +137,14 @@ public class OpenRestServiceImpl implements OpenRestService {
     public void addToJobContext(String flowName, long buildNumber, Map<String, String> vars) {
         Job job = getJob(flowName, buildNumber);
 
-        // TODO: verify key value string
+        for (String key : vars.keySet()) {
+            if (key.isEmpty() || key.contains(".") || key.startsWith("$")) {
+                throw new ArgumentException("Invalid context key {0}", key);
+            }
+        }
 
-        job.getContext().putAll(vars);
-        jobDao.save(job);
+        // set vars only, since job context might be updated by job action at the same time
+        jobDao.addToContext(job.getId(), vars);
     }
 
     @Override
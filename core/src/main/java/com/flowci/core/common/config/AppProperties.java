@@ -24,6 +24,7 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.PropertySource;
 import org.springframework.core.io.Resource;
+import org.springframework.util.unit.DataSize;
 import org.springframework.validation.annotation.Validated;
 
 import javax.validation.constraints.NotBlank;
@@ -117,6 +118,26 @@ public class AppProperties {
     public static class Job {
 
         private int retryWaitingSeconds;
+
+        // run job status transition in per job mailbox
+        private boolean asyncTransition;
+
+        // max memory of live step logs for all jobs
+        private DataSize logBufferSize;
+
+        // max memory of live logs for each step, the oldest logs will be dropped
+        private DataSize stepLogBufferSize;
+
+        // live logs pushed to client in batch every interval or once over the size
+        private int logPushIntervalMillis;
+
+        private DataSize logPushSize;
+
+        // uncompressed size of each gzip block of spooled step log
+        private DataSize logSpoolBlockSize;
+
+        // logs indexed before the days are removed from index
+        private int logIndexRetentionDays;
     }
 
     @Data
@@ -138,6 +159,10 @@ public class AppProperties {
 
         private String cronRoot;
 
+        private String serverRoot; // live server instances
+
+        private String queueRoot; // job action queues of server instances, removed once the queue deleted
+
         private Integer timeout;
 
         private Integer retry;
@@ -41,6 +41,14 @@ public class QueueConfig {
 
     public static final String JobDlRoutingKey = "jobtimeout";
 
+    public static final int IdleAgentPushBack = 5; // seconds
+
+    // job action queue of server instance, the job actions are sent to the owner instance of job
+    public static final String JobActionQueuePrefix = "flow.q.job.action.";
+
+    // reply queue of server instance, the owner notifies the instance which forwarded the job action
+    public static final String JobActionReplyQueuePrefix = "flow.q.job.reply.";
+
     @Autowired
     private AppProperties.RabbitMQ rabbitProperties;
 
@@ -80,10 +88,46 @@ public class QueueConfig {
         return "flow.idle.agent";
     }
 
+    @Bean("idleAgentDelayQueue")
+    public String idleAgentDelayQueue() {
+        return "flow.idle.agent.delay";
+    }
+
     @Bean("idleAgentQueueManager")
-    public RabbitOperations idleAgentQueueManager(Connection rabbitConnection, String idleAgentQueue) throws IOException {
-        RabbitOperations manager = new RabbitOperations(rabbitConnection, 1);
+    public RabbitOperations idleAgentQueueManager(Connection rabbitConnection,
+                                                  String idleAgentQueue,
+                                                  String idleAgentDelayQueue) throws IOException {
+        RabbitOperations manager = new RabbitOperations(rabbitConnection, 10);
         manager.declareTemp(idleAgentQueue);
+
+        // agent not used will be pushed back to idle agent queue after delay
+        manager.declareDelay(idleAgentDelayQueue, idleAgentQueue, IdleAgentPushBack);
+        return manager;
+    }
+
+    @Bean("serverId")
+    public String serverId() {
+        return StringHelper.randomString(8);
+    }
+
+    @Bean("jobActionQueue")
+    public String jobActionQueue(String serverId) {
+        return JobActionQueuePrefix + serverId;
+    }
+
+    @Bean("jobActionReplyQueue")
+    public String jobActionReplyQueue(String serverId) {
+        return JobActionReplyQueuePrefix + serverId;
+    }
+
+    @Bean("jobActionQueueManager")
+    public RabbitOperations jobActionQueueManager(Connection rabbitConnection,
+                                                  String jobActionQueue,
+                                                  String jobActionReplyQueue) throws IOException {
+        RabbitOperations manager = new RabbitOperations(rabbitConnection, 10);
+        // durable, the actions left are forwarded by other instance if current instance is dead
+        manager.declare(jobActionQueue, true);
+        manager.declareTemp(jobActionReplyQueue);
         return manager;
     }
 
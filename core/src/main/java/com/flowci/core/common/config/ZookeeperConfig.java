@@ -21,6 +21,7 @@ import com.flowci.exception.CIException;
 import com.flowci.zookeeper.LocalServer;
 import com.flowci.zookeeper.ZookeeperClient;
 import com.flowci.zookeeper.ZookeeperException;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.log4j.Log4j2;
 import org.apache.zookeeper.CreateMode;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -48,7 +49,7 @@ public class ZookeeperConfig {
     private AppProperties.Zookeeper zkProperties;
 
     @Bean(name = "zk")
-    public ZookeeperClient zookeeperClient(TaskExecutor appTaskExecutor) {
+    public ZookeeperClient zookeeperClient(TaskExecutor appTaskExecutor, MeterRegistry meterRegistry) {
         if (zkProperties.getEmbedded()) {
             startEmbeddedServer();
             log.info("Embedded zookeeper been started ~");
@@ -58,11 +59,13 @@ public class ZookeeperConfig {
         Integer timeout = zkProperties.getTimeout();
         Integer retry = zkProperties.getRetry();
 
-        client = new ZookeeperClient(host, retry, timeout, appTaskExecutor);
+        client = new ZookeeperClient(host, retry, timeout, appTaskExecutor, meterRegistry);
         client.start();
 
         initRoots(client, zkProperties.getCronRoot());
         initRoots(client, zkProperties.getAgentRoot());
+        initRoots(client, zkProperties.getServerRoot());
+        initRoots(client, zkProperties.getQueueRoot());
 
         return client;
     }
@@ -0,0 +1,334 @@
+package com.flowci.core.common.expression;
+
+import com.flowci.domain.Vars;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Node of condition expression, the result is same as groovy for supported syntax
+ */
+public interface Expression {
+
+    enum Type {
+        BOOLEAN,
+
+        STRING,
+
+        LIST,
+
+        MATCHER,
+
+        // variable or null
+        ANY
+    }
+
+    long RegexTimeout = 2000; // millis
+
+    Type type();
+
+    /**
+     * @throws UnsupportedExpressionException if the result cannot be determined natively
+     * @throws ExpressionTimeoutException     if regex matching exceeds the timeout
+     */
+    Object eval(Vars<String> vars);
+
+    /**
+     * Groovy truth of value
+     */
+    static boolean asBoolean(Object value) {
+        if (value == null) {
+            return false;
+        }
+
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+
+        if (value instanceof String) {
+            return !((String) value).isEmpty();
+        }
+
+        if (value instanceof List) {
+            return !((List<?>) value).isEmpty();
+        }
+
+        if (value instanceof Matcher) {
+            return ((Matcher) value).find();
+        }
+
+        throw new UnsupportedExpressionException("Unsupported value type " + value.getClass());
+    }
+
+    @Getter
+    @AllArgsConstructor
+    final class Literal implements Expression {
+
+        private final Object value;
+
+        @Override
+        public Type type() {
+            if (value instanceof Boolean) {
+                return Type.BOOLEAN;
+            }
+            return value == null ? Type.ANY : Type.STRING;
+        }
+
+        @Override
+        public Object eval(Vars<String> vars) {
+            return value;
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    final class Variable implements Expression {
+
+        private final String name;
+
+        @Override
+        public Type type() {
+            return Type.ANY;
+        }
+
+        @Override
+        public Object eval(Vars<String> vars) {
+            // groovy will throw MissingPropertyException or resolve it to other objects
+            if (vars == null || !vars.containsKey(name)) {
+                throw new UnsupportedExpressionException("Variable " + name + " not found");
+            }
+            return vars.get(name);
+        }
+    }
+
+    @AllArgsConstructor
+    final class ListOf implements Expression {
+
+        private final List<Expression> items;
+
+        @Override
+        public Type type() {
+            return Type.LIST;
+        }
+
+        @Override
+        public Object eval(Vars<String> vars) {
+            List<Object> values = new ArrayList<>(items.size());
+            for (Expression item : items) {
+                values.add(item.eval(vars));
+            }
+            return values;
+        }
+    }
+
+    @AllArgsConstructor
+    final class Not implements Expression {
+
+        private final Expression operand;
+
+        @Override
+        public Type type() {
+            return Type.BOOLEAN;
+        }
+
+        @Override
+        public Object eval(Vars<String> vars) {
+            return !asBoolean(operand.eval(vars));
+        }
+    }
+
+    @AllArgsConstructor
+    final class And implements Expression {
+
+        private final Expression left;
+
+        private final Expression right;
+
+        @Override
+        public Type type() {
+            return Type.BOOLEAN;
+        }
+
+        @Override
+        public Object eval(Vars<String> vars) {
+            return asBoolean(left.eval(vars)) && asBoolean(right.eval(vars));
+        }
+    }
+
+    @AllArgsConstructor
+    final class Or implements Expression {
+
+        private final Expression left;
+
+        private final Expression right;
+
+        @Override
+        public Type type() {
+            return Type.BOOLEAN;
+        }
+
+        @Override
+        public Object eval(Vars<String> vars) {
+            return asBoolean(left.eval(vars)) || asBoolean(right.eval(vars));
+        }
+    }
+
+    @AllArgsConstructor
+    final class Equals implements Expression {
+
+        private final Expression left;
+
+        private final Expression right;
+
+        private final boolean negate;
+
+        @Override
+        public Type type() {
+            return Type.BOOLEAN;
+        }
+
+        @Override
+        public Object eval(Vars<String> vars) {
+            boolean equals = Objects.equals(left.eval(vars), right.eval(vars));
+            return negate != equals;
+        }
+    }
+
+    /**
+     * Groovy 'in' operator on list literal
+     */
+    @AllArgsConstructor
+    final class In implements Expression {
+
+        private final Expression left;
+
+        private final ListOf right;
+
+        @Override
+        public Type type() {
+            return Type.BOOLEAN;
+        }
+
+        @Override
+        public Object eval(Vars<String> vars) {
+            return ((List<?>) right.eval(vars)).contains(left.eval(vars));
+        }
+    }
+
+    /**
+     * Regex find (=~) returns matcher, and regex match (==~) returns boolean
+     */
+    @AllArgsConstructor
+    final class Regex implements Expression {
+
+        private final Expression left;
+
+        private final Expression right;
+
+        // compiled pattern if right is literal
+        private final Pattern pattern;
+
+        private final boolean match;
+
+        @Override
+        public Type type() {
+            return match ? Type.BOOLEAN : Type.MATCHER;
+        }
+
+        @Override
+        public Object eval(Vars<String> vars) {
+            Object value = left.eval(vars);
+            if (!(value instanceof String)) {
+                throw new UnsupportedExpressionException("Regex on non string value");
+            }
+
+            Pattern p = pattern;
+            if (p == null) {
+                Object regex = right.eval(vars);
+                if (!(regex instanceof String)) {
+                    throw new UnsupportedExpressionException("Regex is not string");
+                }
+                p = Pattern.compile((String) regex);
+            }
+
+            Matcher matcher = p.matcher(new Deadline((String) value, System.currentTimeMillis() + RegexTimeout));
+            return match ? (Object) matcher.matches() : matcher;
+        }
+    }
+
+    /**
+     * Input of regex matcher which fails once the deadline passed, since matching cannot be interrupted
+     */
+    @AllArgsConstructor
+    final class Deadline implements CharSequence {
+
+        private final CharSequence value;
+
+        private final long deadline;
+
+        @Override
+        public int length() {
+            return value.length();
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new ExpressionTimeoutException("Regex matching timeout");
+            }
+            return value.charAt(index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new Deadline(value.subSequence(start, end), deadline);
+        }
+
+        @Override
+        public String toString() {
+            return value.toString();
+        }
+    }
+
+    /**
+     * Method call on string
+     */
+    @AllArgsConstructor
+    final class Call implements Expression {
+
+        private final Expression target;
+
+        private final StringMethod method;
+
+        private final List<Expression> args;
+
+        @Override
+        public Type type() {
+            return method.getType();
+        }
+
+        @Override
+        public Object eval(Vars<String> vars) {
+            Object value = target.eval(vars);
+            if (!(value instanceof String)) {
+                throw new UnsupportedExpressionException("Method " + method.getName() + " on non string value");
+            }
+
+            String[] params = new String[args.size()];
+            for (int i = 0; i < params.length; i++) {
+                Object param = args.get(i).eval(vars);
+                if (!(param instanceof String)) {
+                    throw new UnsupportedExpressionException("Non string argument of " + method.getName());
+                }
+                params[i] = (String) param;
+            }
+
+            return method.invoke((String) value, params);
+        }
+    }
+}
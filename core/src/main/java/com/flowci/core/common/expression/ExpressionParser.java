@@ -0,0 +1,448 @@
+package com.flowci.core.common.expression;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Parse condition which is a single boolean expression in groovy syntax, ex:
+ * return $FLOWCI_GIT_BRANCH == "master" || $FLOWCI_GIT_BRANCH.startsWith("release/")
+ * <p>
+ * Supports ==, !=, =~, ==~, &&, ||, !, in [..], string methods, string and boolean literals,
+ * the UnsupportedExpressionException will be thrown for other syntax
+ */
+public final class ExpressionParser {
+
+    private enum Kind {
+        STRING,
+
+        REGEX,
+
+        IDENT,
+
+        OPERATOR,
+
+        EOF
+    }
+
+    private static final class Token {
+
+        private final Kind kind;
+
+        private final String text;
+
+        Token(Kind kind, String text) {
+            this.kind = kind;
+            this.text = text;
+        }
+
+        boolean is(String operator) {
+            return kind == Kind.OPERATOR && text.equals(operator);
+        }
+
+        boolean isKeyword(String keyword) {
+            return kind == Kind.IDENT && text.equals(keyword);
+        }
+    }
+
+    // order matters, the longer operator first
+    private static final String[] Operators = {"==~", "==", "!=", "=~", "&&", "||", "!", "(", ")", "[", "]", ",", ".", ";"};
+
+    /**
+     * Parse and validate the expression returns boolean
+     *
+     * @throws UnsupportedExpressionException if not supported
+     */
+    public static Expression parse(String script) {
+        ExpressionParser parser = new ExpressionParser(tokenize(script));
+
+        if (parser.peek().isKeyword("return")) {
+            parser.next();
+        }
+
+        Expression expression = parser.or();
+
+        if (parser.peek().is(";")) {
+            parser.next();
+        }
+
+        if (parser.peek().kind != Kind.EOF) {
+            throw new UnsupportedExpressionException("Single expression is expected");
+        }
+
+        if (expression.type() != Expression.Type.BOOLEAN) {
+            throw new UnsupportedExpressionException("Boolean expression is expected");
+        }
+
+        return expression;
+    }
+
+    private final List<Token> tokens;
+
+    private int index = 0;
+
+    private ExpressionParser(List<Token> tokens) {
+        this.tokens = tokens;
+    }
+
+    private Token peek() {
+        return tokens.get(index);
+    }
+
+    private Token next() {
+        return tokens.get(index++);
+    }
+
+    private void expect(String operator) {
+        if (!next().is(operator)) {
+            throw new UnsupportedExpressionException("'" + operator + "' is expected");
+        }
+    }
+
+    private Expression or() {
+        Expression left = and();
+        while (peek().is("||")) {
+            next();
+            left = new Expression.Or(left, and());
+        }
+        return left;
+    }
+
+    private Expression and() {
+        Expression left = equality();
+        while (peek().is("&&")) {
+            next();
+            left = new Expression.And(left, equality());
+        }
+        return left;
+    }
+
+    private Expression equality() {
+        Expression left = relational();
+        Token op = peek();
+
+        if (op.is("==") || op.is("!=")) {
+            next();
+            Expression right = relational();
+            requireValue(left, right);
+            return new Expression.Equals(left, right, op.is("!="));
+        }
+
+        if (op.is("=~") || op.is("==~")) {
+            next();
+            Expression right = relational();
+            requireValue(left, right);
+            return new Expression.Regex(left, right, compile(right), op.is("==~"));
+        }
+
+        return left;
+    }
+
+    private Expression relational() {
+        Expression left = unary();
+
+        if (peek().isKeyword("in")) {
+            next();
+            Expression right = unary();
+            if (!(right instanceof Expression.ListOf)) {
+                throw new UnsupportedExpressionException("List literal is expected after 'in'");
+            }
+
+            requireValue(left);
+            return new Expression.In(left, (Expression.ListOf) right);
+        }
+
+        return left;
+    }
+
+    private Expression unary() {
+        if (peek().is("!")) {
+            next();
+            return new Expression.Not(unary());
+        }
+        return postfix();
+    }
+
+    private Expression postfix() {
+        Expression target = primary();
+
+        while (peek().is(".")) {
+            next();
+            Token name = next();
+            if (name.kind != Kind.IDENT) {
+                throw new UnsupportedExpressionException("Method name is expected");
+            }
+
+            StringMethod method = method(name.text);
+            List<Expression> args = new ArrayList<>(method.getNumOfArgs());
+
+            expect("(");
+            if (!peek().is(")")) {
+                args.add(or());
+                while (peek().is(",")) {
+                    next();
+                    args.add(or());
+                }
+            }
+            expect(")");
+
+            if (args.size() != method.getNumOfArgs()) {
+                throw new UnsupportedExpressionException("Invalid arguments of method " + name.text);
+            }
+
+            if (target.type() != Expression.Type.STRING && target.type() != Expression.Type.ANY) {
+                throw new UnsupportedExpressionException("Method on non string value");
+            }
+
+            target = new Expression.Call(target, method, args);
+        }
+
+        return target;
+    }
+
+    private Expression primary() {
+        Token token = next();
+
+        switch (token.kind) {
+            case STRING:
+            case REGEX:
+                return new Expression.Literal(token.text);
+
+            case IDENT:
+                switch (token.text) {
+                    case "true":
+                        return new Expression.Literal(Boolean.TRUE);
+                    case "false":
+                        return new Expression.Literal(Boolean.FALSE);
+                    case "null":
+                        return new Expression.Literal(null);
+                    case "return":
+                    case "in":
+                        throw new UnsupportedExpressionException("Unexpected keyword " + token.text);
+                    default:
+                        if (peek().is("(")) {
+                            throw new UnsupportedExpressionException("Function call is not supported");
+                        }
+                        return new Expression.Variable(token.text);
+                }
+
+            case OPERATOR:
+                if (token.is("(")) {
+                    Expression expression = or();
+                    expect(")");
+                    return expression;
+                }
+
+                if (token.is("[")) {
+                    List<Expression> items = new ArrayList<>();
+                    if (!peek().is("]")) {
+                        items.add(or());
+                        while (peek().is(",")) {
+                            next();
+                            items.add(or());
+                        }
+                    }
+                    expect("]");
+
+                    requireValue(items.toArray(new Expression[0]));
+                    return new Expression.ListOf(items);
+                }
+
+                throw new UnsupportedExpressionException("Unexpected operator " + token.text);
+
+            default:
+                throw new UnsupportedExpressionException("Unexpected token " + token.text);
+        }
+    }
+
+    private static StringMethod method(String name) {
+        try {
+            return StringMethod.valueOf(name);
+        } catch (IllegalArgumentException e) {
+            throw new UnsupportedExpressionException("Method " + name + " is not supported");
+        }
+    }
+
+    /**
+     * Matcher only used as boolean
+     */
+    private static void requireValue(Expression... expressions) {
+        for (Expression e : expressions) {
+            if (e.type() == Expression.Type.MATCHER) {
+                throw new UnsupportedExpressionException("Matcher is not supported as value");
+            }
+        }
+    }
+
+    private static Pattern compile(Expression regex) {
+        if (!(regex instanceof Expression.Literal)) {
+            return null;
+        }
+
+        Object value = ((Expression.Literal) regex).getValue();
+        if (!(value instanceof String)) {
+            throw new UnsupportedExpressionException("Regex is not string");
+        }
+
+        try {
+            return Pattern.compile((String) value);
+        } catch (PatternSyntaxException e) {
+            throw new UnsupportedExpressionException("Invalid regex: " + e.getDescription());
+        }
+    }
+
+    //====================================================================
+    //        %% Tokenizer
+    //====================================================================
+
+    private static List<Token> tokenize(String script) {
+        List<Token> tokens = new ArrayList<>();
+        int i = 0;
+        int length = script.length();
+
+        while (i < length) {
+            char c = script.charAt(i);
+
+            if (Character.isWhitespace(c)) {
+                i++;
+                continue;
+            }
+
+            if (c == '"' || c == '\'') {
+                i = readString(script, i, tokens);
+                continue;
+            }
+
+            // slashy string as regex, division is not supported
+            if (c == '/') {
+                i = readSlashy(script, i, tokens);
+                continue;
+            }
+
+            if (Character.isJavaIdentifierStart(c)) {
+                int start = i;
+                while (i < length && Character.isJavaIdentifierPart(script.charAt(i))) {
+                    i++;
+                }
+                tokens.add(new Token(Kind.IDENT, script.substring(start, i)));
+                continue;
+            }
+
+            String operator = null;
+            for (String op : Operators) {
+                if (script.startsWith(op, i)) {
+                    operator = op;
+                    break;
+                }
+            }
+
+            if (operator == null) {
+                throw new UnsupportedExpressionException("Unexpected character " + c);
+            }
+
+            tokens.add(new Token(Kind.OPERATOR, operator));
+            i += operator.length();
+        }
+
+        tokens.add(new Token(Kind.EOF, "<EOF>"));
+        return tokens;
+    }
+
+    private static int readString(String script, int start, List<Token> tokens) {
+        char quote = script.charAt(start);
+        if (script.startsWith(String.valueOf(new char[]{quote, quote, quote}), start)) {
+            throw new UnsupportedExpressionException("Multiline string is not supported");
+        }
+
+        StringBuilder builder = new StringBuilder();
+        int i = start + 1;
+
+        while (i < script.length()) {
+            char c = script.charAt(i);
+
+            if (c == quote) {
+                tokens.add(new Token(Kind.STRING, builder.toString()));
+                return i + 1;
+            }
+
+            // GString
+            if (c == '$' && quote == '"') {
+                throw new UnsupportedExpressionException("String interpolation is not supported");
+            }
+
+            if (c == '\n') {
+                break;
+            }
+
+            if (c == '\\') {
+                if (i + 1 >= script.length()) {
+                    break;
+                }
+
+                char escaped = script.charAt(++i);
+                switch (escaped) {
+                    case 'n':
+                        builder.append('\n');
+                        break;
+                    case 't':
+                        builder.append('\t');
+                        break;
+                    case 'r':
+                        builder.append('\r');
+                        break;
+                    case '\\':
+                    case '\'':
+                    case '"':
+                    case '$':
+                        builder.append(escaped);
+                        break;
+                    default:
+                        throw new UnsupportedExpressionException("Unsupported escape \\" + escaped);
+                }
+
+                i++;
+                continue;
+            }
+
+            builder.append(c);
+            i++;
+        }
+
+        throw new UnsupportedExpressionException("Unterminated string");
+    }
+
+    private static int readSlashy(String script, int start, List<Token> tokens) {
+        StringBuilder builder = new StringBuilder();
+        int i = start + 1;
+
+        if (i < script.length() && (script.charAt(i) == '/' || script.charAt(i) == '*')) {
+            throw new UnsupportedExpressionException("Comment is not supported");
+        }
+
+        while (i < script.length()) {
+            char c = script.charAt(i);
+
+            if (c == '/') {
+                tokens.add(new Token(Kind.REGEX, builder.toString()));
+                return i + 1;
+            }
+
+            if (c == '$') {
+                throw new UnsupportedExpressionException("String interpolation is not supported");
+            }
+
+            // only slash is escaped in slashy string
+            if (c == '\\' && i + 1 < script.length() && script.charAt(i + 1) == '/') {
+                builder.append('/');
+                i += 2;
+                continue;
+            }
+
+            builder.append(c);
+            i++;
+        }
+
+        throw new UnsupportedExpressionException("Unterminated slashy string");
+    }
+}
@@ -0,0 +1,11 @@
+package com.flowci.core.common.expression;
+
+/**
+ * The expression took too long to evaluate, ex: regex with catastrophic backtracking
+ */
+public class ExpressionTimeoutException extends RuntimeException {
+
+    public ExpressionTimeoutException(String message) {
+        super(message);
+    }
+}
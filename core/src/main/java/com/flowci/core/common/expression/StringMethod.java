@@ -0,0 +1,54 @@
+package com.flowci.core.common.expression;
+
+import lombok.Getter;
+
+import java.util.function.BiFunction;
+import java.util.regex.Pattern;
+
+/**
+ * String methods supported in expression
+ */
+@Getter
+public enum StringMethod {
+
+    startsWith(1, Expression.Type.BOOLEAN, (s, args) -> s.startsWith(args[0])),
+
+    endsWith(1, Expression.Type.BOOLEAN, (s, args) -> s.endsWith(args[0])),
+
+    contains(1, Expression.Type.BOOLEAN, (s, args) -> s.contains(args[0])),
+
+    equals(1, Expression.Type.BOOLEAN, (s, args) -> s.equals(args[0])),
+
+    equalsIgnoreCase(1, Expression.Type.BOOLEAN, (s, args) -> s.equalsIgnoreCase(args[0])),
+
+    matches(1, Expression.Type.BOOLEAN, (s, args) -> Pattern.matches(args[0],
+            new Expression.Deadline(s, System.currentTimeMillis() + Expression.RegexTimeout))),
+
+    isEmpty(0, Expression.Type.BOOLEAN, (s, args) -> s.isEmpty()),
+
+    toLowerCase(0, Expression.Type.STRING, (s, args) -> s.toLowerCase()),
+
+    toUpperCase(0, Expression.Type.STRING, (s, args) -> s.toUpperCase()),
+
+    trim(0, Expression.Type.STRING, (s, args) -> s.trim());
+
+    private final int numOfArgs;
+
+    private final Expression.Type type;
+
+    private final BiFunction<String, String[], Object> function;
+
+    StringMethod(int numOfArgs, Expression.Type type, BiFunction<String, String[], Object> function) {
+        this.numOfArgs = numOfArgs;
+        this.type = type;
+        this.function = function;
+    }
+
+    public String getName() {
+        return name();
+    }
+
+    public Object invoke(String target, String[] args) {
+        return function.apply(target, args);
+    }
+}
@@ -0,0 +1,11 @@
+package com.flowci.core.common.expression;
+
+/**
+ * The expression cannot be handled natively, should be evaluated by groovy
+ */
+public class UnsupportedExpressionException extends RuntimeException {
+
+    public UnsupportedExpressionException(String message) {
+        super(message);
+    }
+}
@@ -1,17 +1,30 @@
 package com.flowci.core.common.manager;
 
+import com.flowci.core.common.expression.Expression;
+import com.flowci.core.common.expression.ExpressionParser;
+import com.flowci.core.common.expression.ExpressionTimeoutException;
+import com.flowci.core.common.expression.UnsupportedExpressionException;
+import com.flowci.core.common.helper.CacheHelper;
 import com.flowci.domain.Vars;
+import com.github.benmanes.caffeine.cache.Cache;
 import com.google.common.base.Strings;
+import com.google.common.hash.Hashing;
 import groovy.lang.Binding;
+import groovy.lang.GroovyClassLoader;
 import groovy.lang.GroovyRuntimeException;
-import groovy.lang.GroovyShell;
+import groovy.lang.Script;
 import groovy.util.ScriptException;
+import lombok.AllArgsConstructor;
 import lombok.extern.log4j.Log4j2;
+import org.codehaus.groovy.runtime.InvokerHelper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
@@ -23,13 +36,31 @@ public class ConditionManagerImpl implements ConditionManager {
 
     private final int DefaultTimeout = 2; // seconds
 
+    private final int CacheSize = 1000;
+
+    private final int CacheExpire = 3600; // seconds
+
+    // content hash : compiled script, the class loader is closed on eviction to unload the script class
+    private final Cache<String, CompiledScript> compiled = CacheHelper.createLocalCache(CacheSize, CacheExpire,
+            (key, value, cause) -> {
+                if (value != null) {
+                    value.close();
+                }
+            });
+
+    // content hash : native expression, empty if not supported
+    private final Cache<String, Optional<Expression>> expressions = CacheHelper.createLocalCache(CacheSize, CacheExpire);
+
     @Autowired
     private ThreadPoolTaskExecutor jobConditionExecutor;
 
     @Override
     public void verify(@Nullable String condition) throws ScriptException {
         try {
-            new GroovyShell().parse(condition);
+            if (parse(condition).isPresent()) {
+                return;
+            }
+            compile(condition);
         } catch (Exception e) {
             throw new ScriptException("Invalid groovy condition: " + e.getMessage());
         }
@@ -41,6 +72,22 @@ public class ConditionManagerImpl implements ConditionManager {
             return true;
         }
 
+        // evaluate on current thread, and fallback to groovy if result cannot be determined
+        Optional<Expression> expression = parse(groovyScript);
+        if (expression.isPresent()) {
+            try {
+                return (Boolean) expression.get().eval(envs);
+            } catch (ExpressionTimeoutException e) {
+                throw new ScriptException("Condition script timeout");
+            } catch (RuntimeException e) {
+                log.debug("Condition fallback to groovy: {}", e.getMessage());
+            }
+        }
+
+        return runGroovy(groovyScript, envs);
+    }
+
+    private boolean runGroovy(String groovyScript, Vars<String> envs) throws ScriptException {
         Future<Boolean> submit = jobConditionExecutor.submit(() -> {
             Binding binding = new Binding();
             if (envs != null) {
@@ -48,8 +95,8 @@ public class ConditionManagerImpl implements ConditionManager {
             }
 
             try {
-                GroovyShell groovy = new GroovyShell(binding);
-                Object value = groovy.evaluate(groovyScript);
+                Script script = InvokerHelper.createScript(compile(groovyScript).type, binding);
+                Object value = script.run();
                 if (value instanceof Boolean) {
                     return (Boolean) value;
                 }
@@ -70,4 +117,55 @@ public class ConditionManagerImpl implements ConditionManager {
             throw new ScriptException("Condition script timeout");
         }
     }
+
+    private Optional<Expression> parse(String script) {
+        return expressions.get(hash(script), key -> {
+            try {
+                return Optional.of(ExpressionParser.parse(script));
+            } catch (UnsupportedExpressionException e) {
+                return Optional.empty();
+            }
+        });
+    }
+
+    /**
+     * Parse script to class once for the same content
+     */
+    private CompiledScript compile(String groovyScript) {
+        return compiled.get(hash(groovyScript), key -> {
+            GroovyClassLoader loader = new GroovyClassLoader(getClass().getClassLoader());
+            try {
+                Class<?> type = loader.parseClass(groovyScript, "Condition_" + key.substring(0, 16) + ".groovy");
+                return new CompiledScript(loader, type);
+            } catch (RuntimeException e) {
+                close(loader);
+                throw e;
+            }
+        });
+    }
+
+    private static String hash(String script) {
+        return Hashing.sha256().hashString(script, StandardCharsets.UTF_8).toString();
+    }
+
+    private static void close(GroovyClassLoader loader) {
+        try {
+            loader.clearCache();
+            loader.close();
+        } catch (IOException e) {
+            log.warn("Unable to close condition class loader: {}", e.getMessage());
+        }
+    }
+
+    @AllArgsConstructor
+    private static class CompiledScript {
+
+        private final GroovyClassLoader loader;
+
+        private final Class<?> type;
+
+        void close() {
+            ConditionManagerImpl.close(loader);
+        }
+    }
 }
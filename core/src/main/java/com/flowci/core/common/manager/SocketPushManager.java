@@ -30,6 +30,8 @@ import javax.annotation.PostConstruct;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
 
 /**
  * @author yang
@@ -55,11 +57,19 @@ public class SocketPushManager {
     @Autowired
     private RabbitOperations broadcastQueueManager;
 
+    // key as topic prefix, value as handler of pushed topic and body on every instance
+    private final Map<String, BiConsumer<String, byte[]>> subscribers = new ConcurrentHashMap<>();
+
     @PostConstruct
     public void subscribeBroadcastQueue() throws IOException {
         broadcastQueueManager.startConsumer(wsBroadcastQueue, true, (headers, body, envelope) -> {
             try {
                 String topic = headers.get(HeaderTopic).toString();
+                subscribers.forEach((prefix, subscriber) -> {
+                    if (topic.startsWith(prefix)) {
+                        subscriber.accept(topic, body);
+                    }
+                });
                 simpMessagingTemplate.convertAndSend(topic, body);
             } catch (Exception e) {
                 log.warn(e);
@@ -68,6 +78,13 @@ public class SocketPushManager {
         }, null);
     }
 
+    /**
+     * Handle bytes pushed to topics with prefix on every instance before sent to clients
+     */
+    public void subscribe(String topicPrefix, BiConsumer<String, byte[]> subscriber) {
+        subscribers.put(topicPrefix, subscriber);
+    }
+
     public void push(String topic, PushEvent event, Object obj) {
         try {
             PushBody push = new PushBody(event, obj);
@@ -28,6 +28,7 @@ import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
 
 @Log4j2
 @Getter
@@ -79,6 +80,18 @@ public class RabbitOperations implements AutoCloseable {
         this.channel.queueDeclare(queue, durable, false, false, props);
     }
 
+    /**
+     * Declare a queue without consumer, the message will be dead lettered to the target queue
+     * via default exchange after delay
+     */
+    public void declareDelay(String queue, String targetQueue, int delayInSecond) throws IOException {
+        Map<String, Object> props = new HashMap<>(3);
+        props.put("x-message-ttl", delayInSecond * 1000);
+        props.put("x-dead-letter-exchange", StringHelper.EMPTY);
+        props.put("x-dead-letter-routing-key", targetQueue);
+        this.channel.queueDeclare(queue, false, false, false, props);
+    }
+
     public boolean delete(String queue) {
         try {
             this.channel.queueDelete(queue);
@@ -88,6 +101,19 @@ public class RabbitOperations implements AutoCloseable {
         }
     }
 
+    /**
+     * Delete queue only if it has no consumer and message, on a new channel since the channel
+     * will be closed by broker if the queue is in use
+     */
+    public boolean deleteIfIdle(String queue) {
+        try (Channel temp = conn.createChannel()) {
+            temp.queueDelete(queue, true, true);
+            return true;
+        } catch (IOException | TimeoutException | ShutdownSignalException e) {
+            return false;
+        }
+    }
+
     public boolean purge(String queue) {
         try {
             this.channel.queuePurge(queue);
@@ -406,7 +406,11 @@ public class FlowServiceImpl implements FlowService {
             jobsQueueManager.startConsumer(queue, false, (header, body, envelope) -> {
                 try {
                     String jobId = new String(body);
-                    eventManager.publish(new JobActionEvent(this, jobId, JobActionEvent.ACTION_TO_RUN));
+
+                    // the job might be started by reloaded waiter before the message consumed
+                    JobActionEvent event = new JobActionEvent(this, jobId, JobActionEvent.ACTION_TO_RUN);
+                    event.setExpected(Job.Status.QUEUED);
+                    eventManager.publish(event);
                 } catch (Exception e) {
                     log.warn(e);
                 }
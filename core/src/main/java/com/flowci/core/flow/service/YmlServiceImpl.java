@@ -23,6 +23,7 @@ import com.flowci.core.flow.dao.FlowDao;
 import com.flowci.core.flow.dao.YmlDao;
 import com.flowci.core.flow.domain.Flow;
 import com.flowci.core.flow.domain.Yml;
+import com.flowci.core.job.manager.YmlManager;
 import com.flowci.core.plugin.event.GetPluginEvent;
 import com.flowci.core.secret.event.GetSecretEvent;
 import com.flowci.domain.Vars;
@@ -31,9 +32,7 @@ import com.flowci.exception.DuplicateException;
 import com.flowci.exception.NotFoundException;
 import com.flowci.tree.FlowNode;
 import com.flowci.tree.NodeTree;
-import com.flowci.tree.YmlParser;
 import com.flowci.util.StringHelper;
-import com.github.benmanes.caffeine.cache.Cache;
 import com.google.common.collect.ImmutableList;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.DuplicateKeyException;
@@ -58,7 +57,7 @@ public class YmlServiceImpl implements YmlService {
     );
 
     @Autowired
-    private Cache<String, NodeTree> flowTreeCache;
+    private YmlManager ymlManager;
 
     @Autowired
     private YmlDao ymlDao;
@@ -84,8 +83,7 @@ public class YmlServiceImpl implements YmlService {
     @Override
     public NodeTree getTree(String flowId, String name) {
         Yml yml = getYml(flowId, name);
-        FlowNode root = YmlParser.load(yml.getRaw());
-        return flowTreeCache.get(yamlCacheKey(flowId, name), key -> NodeTree.create(root));
+        return ymlManager.parseTree(yml.getRaw());
     }
 
     @Override
@@ -109,8 +107,8 @@ public class YmlServiceImpl implements YmlService {
             throw new ArgumentException("YAML content cannot be null or empty");
         }
 
-        FlowNode root = YmlParser.load(yaml);
-        NodeTree tree = NodeTree.create(root);
+        NodeTree tree = ymlManager.parseTree(yaml);
+        FlowNode root = tree.getRoot();
 
         for (NodeElementChecker checker : elementCheckers) {
             Optional<RuntimeException> exception = checker.apply(tree);
@@ -131,9 +129,6 @@ public class YmlServiceImpl implements YmlService {
         vars.clear();
         vars.merge(root.getEnvironments());
         flowDao.save(flow);
-
-        // put tree into cache
-        flowTreeCache.put(yamlCacheKey(flow.getId(), name), tree);
         return ymlObj;
     }
 
@@ -153,10 +148,6 @@ public class YmlServiceImpl implements YmlService {
         ymlDao.deleteByFlowIdAndName(flowId, name);
     }
 
-    private String yamlCacheKey(String flowId, String name) {
-        return flowId + "-" + name;
-    }
-
     private Yml getOrCreate(String flowId, String name, String ymlInB64) {
         Optional<Yml> optional = ymlDao.findByFlowIdAndName(flowId, name);
         if (optional.isPresent()) {
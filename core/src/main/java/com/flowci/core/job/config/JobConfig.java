@@ -19,12 +19,22 @@ package com.flowci.core.job.config;
 import com.flowci.core.common.config.AppProperties;
 import com.flowci.core.common.helper.CacheHelper;
 import com.flowci.core.common.helper.ThreadHelper;
+import com.flowci.core.common.manager.SocketPushManager;
+import com.flowci.core.job.domain.JobRuntimeState;
 import com.flowci.core.job.domain.JobSmContext;
-import com.flowci.core.job.domain.Step;
+import com.flowci.core.job.manager.LogIndex;
+import com.flowci.core.job.manager.LogIndexImpl;
+import com.flowci.core.job.manager.StepLogBuffer;
+import com.flowci.core.job.manager.StepLogBufferImpl;
+import com.flowci.core.job.manager.StepLogPusher;
+import com.flowci.core.job.manager.StepLogPusherImpl;
+import com.flowci.core.job.manager.StepLogSpool;
+import com.flowci.core.job.manager.StepLogSpoolImpl;
 import com.flowci.sm.StateMachine;
 import com.flowci.tree.NodeTree;
 import com.flowci.util.FileHelper;
 import com.github.benmanes.caffeine.cache.Cache;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
@@ -32,9 +42,11 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.OverlappingFileLockException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.List;
+import java.nio.file.StandardOpenOption;
 
 /**
  * @author yang
@@ -43,22 +55,59 @@ import java.util.List;
 @Configuration
 public class JobConfig {
 
+    private static final int MaxLogIndexDirs = 64;
+
     @Autowired
     private AppProperties appProperties;
 
-    @Autowired
-    private ThreadPoolTaskExecutor appTaskExecutor;
+    // lock of the log index dir claimed by this instance, held until the instance stopped
+    private FileChannel logIndexLock;
 
     @Bean("jobTreeCache")
     public Cache<String, NodeTree> jobTreeCache() {
         return CacheHelper.createLocalCache(50, 120);
     }
 
-    @Bean("jobStepCache")
-    public Cache<String, List<Step>> jobStepCache() {
+    @Bean("ymlTreeCache")
+    public Cache<String, NodeTree> ymlTreeCache() {
+        return CacheHelper.createLocalCache(200, 600);
+    }
+
+    @Bean("jobRuntimeStateCache")
+    public Cache<String, JobRuntimeState> jobRuntimeStateCache() {
         return CacheHelper.createLocalCache(100, 60);
     }
 
+    @Bean("stepLogBuffer")
+    public StepLogBuffer stepLogBuffer(AppProperties.Job jobProperties) {
+        long maxBytes = jobProperties.getLogBufferSize().toBytes();
+        long maxBytesPerStep = jobProperties.getStepLogBufferSize().toBytes();
+        return new StepLogBufferImpl(maxBytes, maxBytesPerStep);
+    }
+
+    @Bean("stepLogPusher")
+    public StepLogPusher stepLogPusher(AppProperties.Job jobProperties,
+                                       SocketPushManager socketPushManager,
+                                       String topicForLogs) {
+        int maxBytes = (int) jobProperties.getLogPushSize().toBytes();
+        return new StepLogPusherImpl(socketPushManager, topicForLogs, maxBytes);
+    }
+
+    @Bean("stepLogSpool")
+    public StepLogSpool stepLogSpool(AppProperties.Job jobProperties) throws IOException {
+        String workspace = appProperties.getWorkspace().toString();
+        Path logDir = FileHelper.createDirectory(Paths.get(workspace, "logs"));
+        int blockSize = (int) jobProperties.getLogSpoolBlockSize().toBytes();
+        return new StepLogSpoolImpl(logDir, blockSize);
+    }
+
+    @Bean("logIndex")
+    public LogIndex logIndex(AppProperties.Job jobProperties) throws IOException {
+        String workspace = appProperties.getWorkspace().toString();
+        Path dir = claimLogIndexDir(Paths.get(workspace, "logs-index"));
+        return new LogIndexImpl(dir, jobProperties.getLogIndexRetentionDays());
+    }
+
     @Bean("repoDir")
     public Path pluginDir() throws IOException {
         String workspace = appProperties.getWorkspace().toString();
@@ -71,8 +120,42 @@ public class JobConfig {
         return ThreadHelper.createTaskExecutor(20, 20, 100, "job-cond-");
     }
 
+    /**
+     * Executor for job mailboxes of async transition, not shared with app tasks
+     */
+    @Bean("jobTransitionExecutor")
+    public ThreadPoolTaskExecutor jobTransitionExecutor() {
+        return ThreadHelper.createTaskExecutor(50, 20, 1000, "job-sm-");
+    }
+
     @Bean("sm")
-    public StateMachine<JobSmContext> jobStateMachine() {
-        return new StateMachine<>("JOB_STATUS", appTaskExecutor);
+    public StateMachine<JobSmContext> jobStateMachine(MeterRegistry meterRegistry,
+                                                      ThreadPoolTaskExecutor jobTransitionExecutor) {
+        return new StateMachine<>("JOB_STATUS", jobTransitionExecutor, meterRegistry);
+    }
+
+    /**
+     * Every instance writes its own log index, so each instance claims a sub dir {root}/{n} by file lock
+     * in case the workspace is shared, the same dir will be claimed again after restarted
+     */
+    private Path claimLogIndexDir(Path root) throws IOException {
+        for (int i = 0; i < MaxLogIndexDirs; i++) {
+            Path dir = FileHelper.createDirectory(root.resolve(Integer.toString(i)));
+            FileChannel channel = FileChannel.open(dir.resolve("lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+
+            try {
+                if (channel.tryLock() != null) {
+                    logIndexLock = channel;
+                    log.info("Log index dir {} is claimed", dir);
+                    return dir;
+                }
+            } catch (OverlappingFileLockException ignore) {
+                // claimed by another context in the same jvm
+            }
+
+            channel.close();
+        }
+
+        throw new IOException("No log index dir available under " + root);
     }
 }
@@ -3,20 +3,29 @@ package com.flowci.core.job.controller;
 import com.flowci.core.auth.annotation.Action;
 import com.flowci.core.flow.domain.Flow;
 import com.flowci.core.job.domain.JobAction;
+import com.flowci.core.job.domain.LogHit;
 import com.flowci.core.job.domain.Step;
+import com.flowci.core.job.domain.StepLogChunk;
 import com.flowci.core.job.service.LoggingService;
+import com.flowci.exception.NotFoundException;
 import com.flowci.tree.NodePath;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.InputStreamResource;
 import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.util.Collection;
+import java.util.List;
 
 @RestController
 @RequestMapping("/jobs/logs")
@@ -31,19 +40,66 @@ public class LoggingController extends BaseController {
         return loggingService.read(stepId);
     }
 
+    @GetMapping("/{stepId}/chunk")
+    @Action(JobAction.DOWNLOAD_STEP_LOG)
+    public StepLogChunk readStepLogChunk(@PathVariable String stepId,
+                                         @RequestParam(required = false, defaultValue = "0") long from,
+                                         @RequestParam(required = false, defaultValue = "65536") int max) {
+        return loggingService.read(stepId, from, max);
+    }
+
+    @GetMapping("/search")
+    @Action(JobAction.GET_STEP_LOG)
+    public List<LogHit> searchStepLogs(@RequestParam String flow,
+                                       @RequestParam String text,
+                                       @RequestParam(required = false, defaultValue = "30") int days) {
+        return loggingService.search(flowService.get(flow), text, days);
+    }
+
     @GetMapping("/{stepId}/download")
     @Action(JobAction.DOWNLOAD_STEP_LOG)
-    public ResponseEntity<Resource> downloadStepLog(@PathVariable String stepId) {
+    public ResponseEntity<Resource> downloadStepLog(@PathVariable String stepId,
+                                                    @RequestHeader HttpHeaders headers) {
         Step step = stepService.get(stepId);
-        Resource resource = loggingService.get(stepId);
         Flow flow = flowService.getById(step.getFlowId());
 
         NodePath path = NodePath.create(step.getNodePath());
         String fileName = String.format("%s-#%s-%s.log", flow.getName(), step.getBuildNumber(), path.name());
 
-        return ResponseEntity.ok()
+        long length = loggingService.length(step);
+        if (length < 0) {
+            throw new NotFoundException("Log not available");
+        }
+
+        // only the first range will be applied if multiple ranges requested
+        long start = 0;
+        long end = length - 1;
+        HttpStatus status = HttpStatus.OK;
+
+        try {
+            List<HttpRange> ranges = headers.getRange();
+            if (!ranges.isEmpty()) {
+                start = ranges.get(0).getRangeStart(length);
+                end = ranges.get(0).getRangeEnd(length);
+                status = HttpStatus.PARTIAL_CONTENT;
+            }
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                    .header(HttpHeaders.CONTENT_RANGE, "bytes */" + length)
+                    .build();
+        }
+
+        long size = end - start + 1;
+        ResponseEntity.BodyBuilder builder = ResponseEntity.status(status)
                 .contentType(MediaType.parseMediaType(MediaType.APPLICATION_OCTET_STREAM_VALUE))
+                .contentLength(size)
                 .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
-                .body(resource);
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        if (status == HttpStatus.PARTIAL_CONTENT) {
+            builder.header(HttpHeaders.CONTENT_RANGE, String.format("bytes %d-%d/%d", start, end, length));
+        }
+
+        return builder.body(new InputStreamResource(loggingService.read(step, start, size)));
     }
 }
@@ -0,0 +1,13 @@
+package com.flowci.core.job.dao;
+
+import com.flowci.core.job.domain.Step;
+
+import java.util.Collection;
+
+public interface CustomExecutedCmdDao {
+
+    /**
+     * Write all steps by id in one unordered bulk operation
+     */
+    void bulkUpdate(Collection<Step> steps);
+}
@@ -0,0 +1,76 @@
+package com.flowci.core.job.dao;
+
+import com.flowci.core.job.domain.Step;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.mapping.PropertyHandler;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.Collection;
+import java.util.Date;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+public class CustomExecutedCmdDaoImpl implements CustomExecutedCmdDao {
+
+    @Autowired
+    private MongoOperations operations;
+
+    @Override
+    public void bulkUpdate(Collection<Step> steps) {
+        if (steps.isEmpty()) {
+            return;
+        }
+
+        MongoPersistentEntity<?> entity = operations.getConverter()
+                .getMappingContext()
+                .getRequiredPersistentEntity(Step.class);
+
+        Date now = new Date();
+        BulkOperations bulk = operations.bulkOps(BulkOperations.BulkMode.UNORDERED, Step.class);
+
+        for (Step step : steps) {
+            Document doc = new Document();
+            operations.getConverter().write(step, doc);
+            bulk.updateOne(query(where("_id").is(step.getId())), toUpdate(entity, doc, now));
+        }
+
+        bulk.execute();
+    }
+
+    /**
+     * $set fields of the document, $unset the fields not written since null,
+     * the last modified date is set since auditing is not applied on bulk operation
+     */
+    private static Update toUpdate(MongoPersistentEntity<?> entity, Document doc, Date now) {
+        Update update = new Update();
+
+        entity.doWithProperties((PropertyHandler<MongoPersistentProperty>) property -> {
+            if (property.isIdProperty()) {
+                return;
+            }
+
+            String field = property.getFieldName();
+
+            if (property.isAnnotationPresent(LastModifiedDate.class)) {
+                update.set(field, now);
+                return;
+            }
+
+            if (doc.containsKey(field)) {
+                update.set(field, doc.get(field));
+                return;
+            }
+
+            update.unset(field);
+        });
+
+        return update;
+    }
+}
@@ -1,6 +1,22 @@
 package com.flowci.core.job.dao;
 
+import com.flowci.core.job.domain.Job;
+
+import java.util.Map;
+
 public interface CustomJobDao {
 
     void increaseNumOfArtifact(String jobId);
+
+    /**
+     * Write changed fields only, compared to the document of job when loaded or last updated
+     *
+     * @throws org.springframework.dao.OptimisticLockingFailureException if job updated by others
+     */
+    void update(Job job);
+
+    /**
+     * Set context vars without changing job version
+     */
+    void addToContext(String jobId, Map<String, String> vars);
 }
@@ -1,18 +1,53 @@
 package com.flowci.core.job.dao;
 
 import com.flowci.core.job.domain.Job;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
 import org.springframework.data.mongodb.core.query.Update;
 
+import javax.annotation.PostConstruct;
+import java.util.*;
+
 import static org.springframework.data.mongodb.core.query.Criteria.where;
 import static org.springframework.data.mongodb.core.query.Query.query;
 
 public class CustomJobDaoImpl implements CustomJobDao {
 
+    private static final String FieldId = "_id";
+
+    private static final String FieldVersion = "version";
+
     @Autowired
     private MongoOperations operations;
 
+    // fields of Set and Map type, which are updated by elements
+    private final Set<String> setFields = new HashSet<>();
+
+    private final Set<String> mapFields = new HashSet<>();
+
+    private String contextField;
+
+    @PostConstruct
+    public void initFields() {
+        MongoPersistentEntity<?> entity = operations.getConverter().getMappingContext().getRequiredPersistentEntity(Job.class);
+        for (MongoPersistentProperty property : entity) {
+            if (Set.class.isAssignableFrom(property.getType())) {
+                setFields.add(property.getFieldName());
+            }
+
+            if (Map.class.isAssignableFrom(property.getType())) {
+                mapFields.add(property.getFieldName());
+            }
+        }
+
+        contextField = entity.getRequiredPersistentProperty("context").getFieldName();
+    }
+
     @Override
     public void increaseNumOfArtifact(String jobId) {
         operations.findAndModify(
@@ -20,4 +55,150 @@ public class CustomJobDaoImpl implements CustomJobDao {
                 new Update().inc("numOfArtifact", 1),
                 Job.class);
     }
+
+    @Override
+    public void update(Job job) {
+        Document persisted = job.getPersisted();
+
+        // not loaded from db
+        if (persisted == null) {
+            operations.save(job);
+            return;
+        }
+
+        job.setUpdatedAt(new Date());
+
+        Document current = new Document();
+        operations.getConverter().write(job, current);
+
+        Document update = diff(persisted, current);
+        if (update.isEmpty()) {
+            return;
+        }
+
+        Long version = job.getVersion();
+        update.append("$inc", new Document(FieldVersion, 1L));
+
+        // version null matches the job created before versioning
+        Document filter = new Document(FieldId, current.get(FieldId)).append(FieldVersion, version);
+        UpdateResult result = operations.getCollection(operations.getCollectionName(Job.class)).updateOne(filter, update);
+
+        if (result.getMatchedCount() == 0) {
+            throw new OptimisticLockingFailureException("Job " + job.getId() + " has been modified by others");
+        }
+
+        job.setVersion(version == null ? 1L : version + 1);
+        current.put(FieldVersion, job.getVersion());
+        job.setPersisted(current);
+    }
+
+    @Override
+    public void addToContext(String jobId, Map<String, String> vars) {
+        Update update = new Update();
+        vars.forEach((k, v) -> update.set(contextField + "." + k, v));
+        operations.updateFirst(query(where("_id").is(jobId)), update, Job.class);
+    }
+
+    /**
+     * Create update operators from changed top level fields, the elements of set and map fields are updated individually
+     */
+    private Document diff(Document persisted, Document current) {
+        Document set = new Document();
+        Document unset = new Document();
+        Document addToSet = new Document();
+        Document pullAll = new Document();
+
+        for (Map.Entry<String, Object> entry : current.entrySet()) {
+            String key = entry.getKey();
+            Object value = entry.getValue();
+            Object prev = persisted.get(key);
+
+            if (key.equals(FieldId) || key.equals(FieldVersion) || Objects.equals(prev, value)) {
+                continue;
+            }
+
+            if (setFields.contains(key) && prev instanceof List && value instanceof List) {
+                Set<Object> added = new HashSet<>((List<?>) value);
+                added.removeAll((List<?>) prev);
+
+                Set<Object> removed = new HashSet<>((List<?>) prev);
+                removed.removeAll((List<?>) value);
+
+                // cannot add and pull on the same field in one update
+                if (!added.isEmpty() && !removed.isEmpty()) {
+                    set.put(key, value);
+                    continue;
+                }
+
+                if (!added.isEmpty()) {
+                    addToSet.put(key, new Document("$each", new ArrayList<>(added)));
+                }
+
+                if (!removed.isEmpty()) {
+                    pullAll.put(key, new ArrayList<>(removed));
+                }
+                continue;
+            }
+
+            if (mapFields.contains(key) && prev instanceof Document && value instanceof Document) {
+                diffMap(key, (Document) prev, (Document) value, set, unset);
+                continue;
+            }
+
+            set.put(key, value);
+        }
+
+        for (String key : persisted.keySet()) {
+            if (!current.containsKey(key)) {
+                unset.put(key, "");
+            }
+        }
+
+        Document update = new Document();
+        putIfNotEmpty(update, "$set", set);
+        putIfNotEmpty(update, "$unset", unset);
+        putIfNotEmpty(update, "$addToSet", addToSet);
+        putIfNotEmpty(update, "$pullAll", pullAll);
+        return update;
+    }
+
+    private static void diffMap(String field, Document prev, Document current, Document set, Document unset) {
+        Document fieldSet = new Document();
+        Document fieldUnset = new Document();
+
+        for (Map.Entry<String, Object> entry : current.entrySet()) {
+            String key = entry.getKey();
+            if (!isSafeKey(key)) {
+                set.put(field, current);
+                return;
+            }
+
+            if (!prev.containsKey(key) || !Objects.equals(prev.get(key), entry.getValue())) {
+                fieldSet.put(field + "." + key, entry.getValue());
+            }
+        }
+
+        for (String key : prev.keySet()) {
+            if (!current.containsKey(key)) {
+                if (!isSafeKey(key)) {
+                    set.put(field, current);
+                    return;
+                }
+                fieldUnset.put(field + "." + key, "");
+            }
+        }
+
+        set.putAll(fieldSet);
+        unset.putAll(fieldUnset);
+    }
+
+    private static boolean isSafeKey(String key) {
+        return !key.isEmpty() && key.indexOf('.') < 0 && key.charAt(0) != '$';
+    }
+
+    private static void putIfNotEmpty(Document update, String operator, Document fields) {
+        if (!fields.isEmpty()) {
+            update.put(operator, fields);
+        }
+    }
 }
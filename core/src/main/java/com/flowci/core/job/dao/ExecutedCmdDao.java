@@ -29,7 +29,7 @@ import java.util.Optional;
  * @author yang
  */
 @Repository
-public interface ExecutedCmdDao extends MongoRepository<Step, String> {
+public interface ExecutedCmdDao extends MongoRepository<Step, String>, CustomExecutedCmdDao {
 
     Long deleteByFlowId(String flowId);
 
@@ -41,5 +41,7 @@ public interface ExecutedCmdDao extends MongoRepository<Step, String> {
 
     List<Step> findAllByFlowIdAndBuildNumber(String flowId, long buildNumber);
 
+    List<Step> findAllByStatus(Executed.Status status);
+
     List<Step> findAllByJobIdAndStatusIn(String jobId, Collection<Executed.Status> statuses);
 }
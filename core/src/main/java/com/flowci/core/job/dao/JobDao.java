@@ -20,6 +20,7 @@ import com.flowci.core.job.domain.Job;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -30,5 +31,7 @@ public interface JobDao extends MongoRepository<Job, String>, CustomJobDao {
 
     Optional<Job> findByKey(String key);
 
+    List<Job> findAllByStatusOrderByBuildNumber(Job.Status status);
+
     Long deleteAllByFlowId(String flowId);
 }
\ No newline at end of file
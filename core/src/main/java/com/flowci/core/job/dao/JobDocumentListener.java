@@ -0,0 +1,24 @@
+package com.flowci.core.job.dao;
+
+import com.flowci.core.job.domain.Job;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterConvertEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keep the document of job when loaded or saved, for partial update
+ */
+@Component
+public class JobDocumentListener extends AbstractMongoEventListener<Job> {
+
+    @Override
+    public void onAfterConvert(AfterConvertEvent<Job> event) {
+        event.getSource().setPersisted(event.getDocument());
+    }
+
+    @Override
+    public void onAfterSave(AfterSaveEvent<Job> event) {
+        event.getSource().setPersisted(event.getDocument());
+    }
+}
@@ -30,6 +30,7 @@ import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.Setter;
 import org.apache.commons.lang.time.FastDateFormat;
+import org.springframework.data.annotation.Transient;
 import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
@@ -256,6 +257,19 @@ public class Job extends Mongoable implements Pathable {
 
     private int numOfArtifact = 0;
 
+    /**
+     * Increased on each partial update, to detect job modified by others
+     */
+    private Long version;
+
+    /**
+     * Document of job when loaded or updated, used to find changed fields
+     */
+    @Transient
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    private transient org.bson.Document persisted;
+
     public void setExpire(int expire) {
         this.expire = expire;
         Instant expireAt = Instant.now().plus(expire, ChronoUnit.SECONDS);
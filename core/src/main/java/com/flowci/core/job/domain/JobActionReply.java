@@ -0,0 +1,25 @@
+package com.flowci.core.job.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Sent from the owner instance to the instance forwarded the job action, once the action processed
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public final class JobActionReply {
+
+    private String requestId;
+
+    // error message if the action failed
+    private String error;
+
+    public boolean hasError() {
+        return error != null;
+    }
+}
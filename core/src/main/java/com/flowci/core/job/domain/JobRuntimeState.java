@@ -0,0 +1,196 @@
+package com.flowci.core.job.domain;
+
+import com.flowci.exception.NotFoundException;
+import com.flowci.tree.Node;
+import com.flowci.tree.NodeTree;
+
+import java.util.*;
+
+/**
+ * In memory step status table of job, indexed by ordinal of step node in the node tree
+ * - it's write through, steps are updated after written to db
+ * - status queries of nodes are bitset operations
+ * - steps var string is in the order of node tree, and rebuilt from the first changed step on demand
+ */
+public final class JobRuntimeState {
+
+    private final String jobId;
+
+    private final NodeTree tree;
+
+    // ordinal : step, null if step of node not loaded
+    private final Step[] steps;
+
+    // ordinal : status when step updated, since step instance might be changed before update
+    private final Executed.Status[] status;
+
+    private final Map<Executed.Status, BitSet> byStatus = new EnumMap<>(Executed.Status.class);
+
+    // failure status without allow failure
+    private final BitSet failed = new BitSet();
+
+    // ordinal : node name of step
+    private final String[] names;
+
+    // "name=STATUS;" of steps, valid for ordinals before numOfBuilt
+    private final StringBuilder varString = new StringBuilder();
+
+    // ordinal : end index of "name=STATUS;" in var string
+    private final int[] varStringEnds;
+
+    private int numOfBuilt = 0;
+
+    public JobRuntimeState(String jobId, NodeTree tree, List<Step> steps) {
+        int numOfNode = tree.numOfNode();
+
+        this.jobId = jobId;
+        this.tree = tree;
+        this.steps = new Step[numOfNode];
+        this.status = new Executed.Status[numOfNode];
+        this.names = new String[numOfNode];
+        this.varStringEnds = new int[numOfNode];
+
+        for (Executed.Status s : Executed.Status.values()) {
+            byStatus.put(s, new BitSet(numOfNode));
+        }
+
+        for (Step step : steps) {
+            int ordinal = tree.indexOf(step.getNodePath());
+            if (ordinal < 0) {
+                continue;
+            }
+
+            names[ordinal] = tree.path(step.getNodePath()).name();
+            set(ordinal, step);
+        }
+    }
+
+    public synchronized Step get(String nodePath) {
+        int ordinal = tree.indexOf(nodePath);
+        if (ordinal < 0 || steps[ordinal] == null) {
+            throw new NotFoundException("Executed cmd for job {0} - {1} not found", jobId, nodePath);
+        }
+        return steps[ordinal];
+    }
+
+    public synchronized List<Step> list() {
+        List<Step> list = new ArrayList<>(steps.length);
+        for (Step step : steps) {
+            if (step != null) {
+                list.add(step);
+            }
+        }
+        return list;
+    }
+
+    public synchronized List<Step> list(Collection<Executed.Status> statuses) {
+        BitSet selected = of(statuses);
+        List<Step> list = new ArrayList<>(selected.cardinality());
+        for (int i = selected.nextSetBit(0); i >= 0; i = selected.nextSetBit(i + 1)) {
+            list.add(steps[i]);
+        }
+        return list;
+    }
+
+    public synchronized List<Step> list(Iterable<String> nodePaths) {
+        List<Step> list = new LinkedList<>();
+        for (String path : nodePaths) {
+            int ordinal = tree.indexOf(path);
+            if (ordinal >= 0 && steps[ordinal] != null) {
+                list.add(steps[ordinal]);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Ordinal bitset of nodes
+     */
+    public synchronized BitSet select(Collection<Node> nodes) {
+        BitSet selected = new BitSet(steps.length);
+        for (Node node : nodes) {
+            int ordinal = tree.indexOf(node.getPathAsString());
+            if (ordinal >= 0 && steps[ordinal] != null) {
+                selected.set(ordinal);
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Any of selected step is in the status
+     */
+    public synchronized boolean any(BitSet selected, Collection<Executed.Status> statuses) {
+        return selected.intersects(of(statuses));
+    }
+
+    /**
+     * Any of selected step is failure and not allow failure
+     */
+    public synchronized boolean anyFailure(BitSet selected) {
+        return selected.intersects(failed);
+    }
+
+    public synchronized void update(Step step) {
+        int ordinal = tree.indexOf(step.getNodePath());
+        if (ordinal < 0) {
+            return;
+        }
+
+        if (status[ordinal] != step.getStatus() && ordinal < numOfBuilt) {
+            numOfBuilt = ordinal;
+        }
+
+        if (status[ordinal] == null) {
+            names[ordinal] = tree.path(step.getNodePath()).name();
+        } else {
+            byStatus.get(status[ordinal]).clear(ordinal);
+        }
+
+        set(ordinal, step);
+    }
+
+    /**
+     * Steps var string as "name=STATUS;..." from the first step to the step of node path
+     * or to the last step if node path not found
+     */
+    public synchronized String toVarString(String nodePath) {
+        if (steps.length == 0) {
+            return "";
+        }
+
+        int ordinal = tree.indexOf(nodePath);
+        int last = ordinal < 0 ? steps.length - 1 : ordinal;
+
+        if (numOfBuilt <= last) {
+            varString.setLength(numOfBuilt == 0 ? 0 : varStringEnds[numOfBuilt - 1]);
+
+            for (int i = numOfBuilt; i <= last; i++) {
+                if (status[i] != null) {
+                    varString.append(names[i]).append('=').append(status[i].name()).append(';');
+                }
+                varStringEnds[i] = varString.length();
+            }
+
+            numOfBuilt = last + 1;
+        }
+
+        int end = varStringEnds[last];
+        return end == 0 ? "" : varString.substring(0, end - 1);
+    }
+
+    private void set(int ordinal, Step step) {
+        steps[ordinal] = step;
+        status[ordinal] = step.getStatus();
+        byStatus.get(step.getStatus()).set(ordinal);
+        failed.set(ordinal, !step.isSuccess() && Executed.FailureStatus.contains(step.getStatus()));
+    }
+
+    private BitSet of(Collection<Executed.Status> statuses) {
+        BitSet selected = new BitSet(steps.length);
+        for (Executed.Status s : statuses) {
+            selected.or(byStatus.get(s));
+        }
+        return selected;
+    }
+}
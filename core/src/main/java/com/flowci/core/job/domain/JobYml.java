@@ -38,8 +38,17 @@ public class JobYml extends Mongoable {
      */
     private String raw;
 
+    /**
+     * Node tree encoded by NodeTreeCodec, to restore tree without yml parsing
+     */
+    private byte[] tree;
+
     public JobYml(String jobId, String name, String raw) {
         this.id = jobId;
         this.raw = raw;
     }
+
+    public boolean hasTree() {
+        return tree != null && tree.length > 0;
+    }
 }
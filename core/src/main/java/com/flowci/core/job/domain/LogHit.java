@@ -0,0 +1,25 @@
+package com.flowci.core.job.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Step log matched the search text
+ */
+@Getter
+@AllArgsConstructor
+public final class LogHit {
+
+    private final String flowId;
+
+    private final long buildNumber;
+
+    private final String stepId;
+
+    /**
+     * Line numbers start from 1, only the first lines are listed
+     */
+    private final List<Integer> lines;
+}
@@ -0,0 +1,26 @@
+package com.flowci.core.job.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Log items of step read from offset
+ */
+@Getter
+@AllArgsConstructor
+public final class StepLogChunk {
+
+    /**
+     * Offset of the first item, could be greater than the requested offset if logs dropped
+     */
+    private final long offset;
+
+    /**
+     * Offset to read the following items
+     */
+    private final long next;
+
+    private final List<byte[]> items;
+}
@@ -1,15 +1,61 @@
 package com.flowci.core.job.domain;
 
-import lombok.AllArgsConstructor;
 import lombok.Getter;
-import lombok.Setter;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Shell log pushed to client as binary frame
+ * - step id: 2 bytes length + utf8 bytes
+ * - content: raw log bytes to the end of frame
+ */
 @Getter
-@Setter
-@AllArgsConstructor
 public final class StepLogItem {
 
-    private String id;
+    private final String id;
+
+    private final byte[] content;
+
+    private final byte[] idBytes;
+
+    /**
+     * Read frame with length from buffer
+     */
+    public static StepLogItem read(ByteBuffer buffer, int length) {
+        byte[] idBytes = new byte[buffer.getShort()];
+        buffer.get(idBytes);
+
+        byte[] content = new byte[length - 2 - idBytes.length];
+        buffer.get(content);
+
+        return new StepLogItem(new String(idBytes, StandardCharsets.UTF_8), content, idBytes);
+    }
+
+    public StepLogItem(String id, byte[] content) {
+        this(id, content, id.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private StepLogItem(String id, byte[] content, byte[] idBytes) {
+        this.id = id;
+        this.content = content;
+        this.idBytes = idBytes;
+    }
+
+    /**
+     * Length of frame
+     */
+    public int size() {
+        return 2 + idBytes.length + content.length;
+    }
+
+    public byte[] toBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(size());
+        writeTo(buffer);
+        return buffer.array();
+    }
 
-    private String content;
+    public void writeTo(ByteBuffer buffer) {
+        buffer.putShort((short) idBytes.length).put(idBytes).put(content);
+    }
 }
@@ -0,0 +1,53 @@
+package com.flowci.core.job.domain;
+
+import com.flowci.tree.Selector;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.Comparator;
+
+/**
+ * Step which is waiting for agent, ordered by job priority (high first),
+ * build number and flow id
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@EqualsAndHashCode(of = {"jobId", "nodePath"})
+public final class WaitingStep implements Comparable<WaitingStep> {
+
+    private static final Comparator<WaitingStep> Order = Comparator
+            .comparing(WaitingStep::getPriority, Comparator.reverseOrder())
+            .thenComparing(WaitingStep::getBuildNumber)
+            .thenComparing(WaitingStep::getFlowId)
+            .thenComparing(WaitingStep::getJobId)
+            .thenComparing(WaitingStep::getNodePath);
+
+    private String jobId;
+
+    private String nodePath;
+
+    private String flowId;
+
+    private Long buildNumber;
+
+    private Integer priority;
+
+    private Selector selector;
+
+    public WaitingStep(Job job, Step step, Selector selector) {
+        this.jobId = job.getId();
+        this.nodePath = step.getNodePath();
+        this.flowId = job.getFlowId();
+        this.buildNumber = job.getBuildNumber();
+        this.priority = job.getPriority();
+        this.selector = selector;
+    }
+
+    @Override
+    public int compareTo(WaitingStep o) {
+        return Order.compare(this, o);
+    }
+}
@@ -1,18 +1,70 @@
 package com.flowci.core.job.event;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.flowci.core.agent.domain.ShellOut;
+import com.flowci.core.job.domain.Job;
 import lombok.Getter;
+import lombok.Setter;
 import org.springframework.context.ApplicationEvent;
 
+/**
+ * Job status action or idle agent assignment, it will be sent to the owner instance of job if not owned by current instance
+ */
 @Getter
+@Setter
+@JsonIgnoreProperties({"source"})
 public class JobActionEvent extends ApplicationEvent {
 
+    private final static Object Source = new Object();
+
+    public static final String ACTION_TO_LOADING = "toLoading";
+
+    public static final String ACTION_TO_CREATED = "toCreated";
+
+    public static final String ACTION_TO_START = "toStart";
+
     public static final String ACTION_TO_RUN = "toRun";
 
+    public static final String ACTION_TO_CONTINUE = "toContinue";
+
+    public static final String ACTION_TO_CANCEL = "toCancel";
+
     public static final String ACTION_TO_TIMEOUT = "toTimeout";
 
-    private final String jobId;
+    public static final String ACTION_ASSIGN_AGENT = "assignAgent";
+
+    private String jobId;
+
+    private String action;
+
+    // yaml for created action
+    private String yml;
 
-    private final String action;
+    // step result for continue action
+    private ShellOut shellOut;
+
+    // error message for cancel action
+    private String error;
+
+    // idle agent for assign agent action
+    private String agentId;
+
+    // the action is skipped if job not in the status, for action might be sent more than once
+    private Job.Status expected;
+
+    // action received from other instance
+    private boolean forwarded;
+
+    // id to match the reply of forwarded action
+    private String requestId;
+
+    // server id of instance which forwarded the action
+    private String replyTo;
+
+    public JobActionEvent() {
+        super(Source);
+    }
 
     public JobActionEvent(Object source, String jobId, String action) {
         super(source);
@@ -20,10 +72,12 @@ public class JobActionEvent extends ApplicationEvent {
         this.action = action;
     }
 
+    @JsonIgnore
     public boolean isToRun() {
         return this.action.equals(ACTION_TO_RUN);
     }
 
+    @JsonIgnore
     public boolean isToTimeOut() {
         return this.action.equals(ACTION_TO_TIMEOUT);
     }
@@ -0,0 +1,32 @@
+package com.flowci.core.job.event;
+
+import com.flowci.core.common.event.BroadcastEvent;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Broadcast to all instances when a job removed from flow priority queue
+ */
+@Getter
+@Setter
+public class JobPriorityChangedEvent extends BroadcastEvent {
+
+    private String flowId;
+
+    // build number of job that removed from priority queue
+    private Long buildNumber;
+
+    // build number of job on top priority after removed
+    private Long topBuildNumber;
+
+    public JobPriorityChangedEvent() {
+        super();
+    }
+
+    public JobPriorityChangedEvent(Object source, String flowId, Long buildNumber, Long topBuildNumber) {
+        super(source);
+        this.flowId = flowId;
+        this.buildNumber = buildNumber;
+        this.topBuildNumber = topBuildNumber;
+    }
+}
@@ -0,0 +1,24 @@
+package com.flowci.core.job.event;
+
+import com.flowci.core.common.event.BroadcastEvent;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Log file of step saved, broadcast to index it on every instance
+ */
+@Getter
+@Setter
+public class StepLogSavedEvent extends BroadcastEvent {
+
+    private String stepId;
+
+    public StepLogSavedEvent() {
+        super();
+    }
+
+    public StepLogSavedEvent(Object source, String stepId) {
+        super(source);
+        this.stepId = stepId;
+    }
+}
@@ -0,0 +1,29 @@
+package com.flowci.core.job.event;
+
+import com.flowci.core.common.event.BroadcastEvent;
+import com.flowci.core.job.domain.WaitingStep;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Sync waiting step to the waiting step queue of all instances
+ */
+@Getter
+@Setter
+public class WaitingStepEvent extends BroadcastEvent {
+
+    private WaitingStep step;
+
+    // true = step added, false = step removed
+    private boolean added;
+
+    public WaitingStepEvent() {
+        super();
+    }
+
+    public WaitingStepEvent(Object source, WaitingStep step, boolean added) {
+        super(source);
+        this.step = step;
+        this.added = added;
+    }
+}
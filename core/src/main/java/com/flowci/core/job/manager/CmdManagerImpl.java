@@ -26,6 +26,7 @@ import com.flowci.core.plugin.domain.Plugin;
 import com.flowci.core.plugin.event.GetPluginAndVerifySetContext;
 import com.flowci.core.plugin.event.GetPluginEvent;
 import com.flowci.domain.DockerOption;
+import com.flowci.domain.LayeredVars;
 import com.flowci.domain.Vars;
 import com.flowci.exception.StatusException;
 import com.flowci.tree.*;
@@ -57,11 +58,11 @@ public class CmdManagerImpl implements CmdManager {
                 .setFlowId(job.getFlowId())
                 .setJobId(job.getId())
                 .setAllowFailure(r.isAllowFailure())
-                .setDockers(ObjectsHelper.copy(r.fetchDockerOptions()))
+                .setDockers(DockerOption.copy(r.fetchDockerOptions()))
                 .setBash(r.fetchBash())
                 .setPwsh(r.fetchPwsh())
                 .setEnvFilters(r.fetchFilters())
-                .setInputs(r.fetchEnvs().merge(job.getContext(), false))
+                .setInputs(new LayeredVars(r.fetchEnvs(), job.getContext()))
                 .setTimeout(r.fetchTimeout(job.getTimeout()))
                 .setRetry(r.fetchRetry(0))
                 .setSecrets(r.getSecrets())
@@ -125,7 +126,7 @@ public class CmdManagerImpl implements CmdManager {
                     break;
                 }
             }
-            cmd.getDockers().add(plugin.getMeta().getDocker());
+            cmd.getDockers().add(docker.copy());
         });
     }
 
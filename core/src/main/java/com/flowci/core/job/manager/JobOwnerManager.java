@@ -0,0 +1,60 @@
+package com.flowci.core.job.manager;
+
+import com.flowci.core.job.event.JobActionEvent;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Shard jobs to live server instances by consistent hash, the job actions are processed on owner instance
+ */
+public interface JobOwnerManager {
+
+    /**
+     * Current instance is owner of the job
+     */
+    boolean isOwner(String jobId);
+
+    /**
+     * Server instances not changed recently, the owner could process job with local lock
+     */
+    boolean isStable();
+
+    /**
+     * Number of rebalances on current instance, the owner of jobs might be changed if it's changed
+     */
+    long epoch();
+
+    /**
+     * Hold the ownership of the job on current instance, the server instances will not be rebalanced
+     * on current instance until {@link #leave()} is called
+     *
+     * @return false if not owner, not stable or rebalancing, and the ownership is not held
+     */
+    boolean enter(String jobId);
+
+    /**
+     * Release the ownership held by {@link #enter(String)}
+     */
+    void leave();
+
+    /**
+     * Wait until the previous owner of the job rebalanced, so that no job action is processing on it
+     *
+     * @return false if the previous owner not rebalanced in time, the job should not be processed
+     */
+    boolean awaitHandover(String jobId);
+
+    /**
+     * Send job action to the owner instance
+     *
+     * @return completed once the owner replied, or exceptionally if the action failed or no reply in time
+     */
+    CompletableFuture<Void> forward(JobActionEvent event);
+
+    /**
+     * Reply to the instance which forwarded the action, once the action processed on current instance
+     *
+     * @param error null if the action succeeded
+     */
+    void reply(JobActionEvent event, Throwable error);
+}
@@ -0,0 +1,535 @@
+package com.flowci.core.job.manager;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.flowci.core.common.config.AppProperties;
+import com.flowci.core.common.config.QueueConfig;
+import com.flowci.core.common.helper.ThreadHelper;
+import com.flowci.core.common.manager.SpringEventManager;
+import com.flowci.core.common.rabbit.RabbitOperations;
+import com.flowci.core.job.domain.JobActionReply;
+import com.flowci.core.job.event.JobActionEvent;
+import com.flowci.exception.StatusException;
+import com.flowci.zookeeper.ZookeeperClient;
+import com.flowci.util.StringHelper;
+import com.flowci.zookeeper.ZookeeperException;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import lombok.AllArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.apache.curator.framework.recipes.cache.PathChildrenCacheEvent;
+import org.apache.zookeeper.CreateMode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Server instance registered as ephemeral node /{server root}/{server id},
+ * and the job id is mapped to server on a hash ring with virtual nodes
+ *
+ * - the ring is rebalanced on a single thread, local lock is not entered once rebalance started, and the ring
+ *   is changed after job actions held by local lock finished, then the version of server instances is written
+ *   to the node as ack of handover; the rebalance is retried if not finished in time, and the new owner
+ *   fails the job action since no ack
+ * - the forwarded job action is replied to the reply queue of the instance forwarded it once processed
+ * - the job action queue of server instance is registered as persistent node /{queue root}/{server id},
+ *   the queue of instance not alive, includes the one before restart, is taken over by the owner of its server id
+ */
+@Log4j2
+@Component
+public class JobOwnerManagerImpl implements JobOwnerManager {
+
+    private static final int VirtualNodes = 100;
+
+    private static final long StableAfter = 30 * 1000; // ms after server instances changed
+
+    private static final long HandoverTimeout = 30 * 1000; // ms
+
+    private static final long HandoverCheckInterval = 200; // ms
+
+    private static final long ReplyTimeout = 60 * 1000; // ms
+
+    private static final HashFunction Hash = Hashing.murmur3_32();
+
+    @Autowired
+    private String serverId;
+
+    @Autowired
+    private String jobActionQueue;
+
+    @Autowired
+    private String jobActionReplyQueue;
+
+    @Autowired
+    private RabbitOperations jobActionQueueManager;
+
+    @Autowired
+    private AppProperties.Zookeeper zkProperties;
+
+    @Autowired
+    private ZookeeperClient zk;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private SpringEventManager eventManager;
+
+    // hash : server id
+    private volatile TreeMap<Integer, String> ring = new TreeMap<>();
+
+    // ring before the last rebalance, to find the previous owner of job
+    private volatile TreeMap<Integer, String> previous = new TreeMap<>();
+
+    private volatile Set<String> servers = Collections.emptySet();
+
+    private volatile String version = StringHelper.EMPTY;
+
+    private volatile long changedAt = System.currentTimeMillis();
+
+    private volatile long epoch;
+
+    // num of job actions processing with local lock
+    private final AtomicInteger holders = new AtomicInteger();
+
+    // local lock cannot be entered while handing over
+    private volatile boolean handingOver;
+
+    private final AtomicBoolean rebalanceRequested = new AtomicBoolean();
+
+    // rebalance out of zookeeper watcher thread since it waits for local lock holders
+    private final ThreadPoolTaskExecutor rebalanceExecutor =
+            ThreadHelper.createTaskExecutor(1, 1, 10, "job-owner-rebalance-");
+
+    // server id of job action queues taken over by current instance
+    private final Set<String> orphanQueues = ConcurrentHashMap.newKeySet();
+
+    // request id : action forwarded from current instance and waiting for reply
+    private final Map<String, PendingAction> pendingActions = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void register() {
+        String root = zkProperties.getServerRoot();
+
+        zk.watchChildren(root, (client, event) -> {
+            PathChildrenCacheEvent.Type type = event.getType();
+
+            if (type == PathChildrenCacheEvent.Type.CONNECTION_RECONNECTED) {
+                createServerNode();
+                return;
+            }
+
+            if (type == PathChildrenCacheEvent.Type.CHILD_ADDED || type == PathChildrenCacheEvent.Type.CHILD_REMOVED) {
+                requestRebalance();
+            }
+        });
+
+        // register queue after server node created, otherwise it might be taken over as orphan
+        createServerNode();
+        registerQueue();
+        rebalance();
+    }
+
+    @PostConstruct
+    public void subscribeJobActionQueue() throws IOException {
+        // consume in order, since actions of a job should not be reordered
+        jobActionQueueManager.startConsumer(jobActionQueue, false, (header, body, envelope) -> {
+            try {
+                JobActionEvent event = objectMapper.readValue(body, JobActionEvent.class);
+
+                // owner changed after forwarded
+                if (!isOwner(event.getJobId())) {
+                    forward(event);
+                    return true;
+                }
+
+                event.setForwarded(true);
+                eventManager.publish(event);
+            } catch (Exception e) {
+                log.warn("Unable to handle job action: {}", e.getMessage());
+            }
+            return true;
+        }, null);
+    }
+
+    @PostConstruct
+    public void subscribeReplyQueue() throws IOException {
+        jobActionQueueManager.startConsumer(jobActionReplyQueue, true, (header, body, envelope) -> {
+            try {
+                JobActionReply reply = objectMapper.readValue(body, JobActionReply.class);
+                complete(reply.getRequestId(), reply.getError());
+            } catch (IOException e) {
+                log.warn("Unable to handle job action reply: {}", e.getMessage());
+            }
+            return false;
+        }, null);
+    }
+
+    @Scheduled(fixedDelay = 5 * 1000)
+    public void expirePendingActions() {
+        long now = System.currentTimeMillis();
+        pendingActions.forEach((requestId, pending) -> {
+            if (now > pending.expireAt) {
+                complete(requestId, "No reply from job owner");
+            }
+        });
+    }
+
+    /**
+     * Delete the taken over queue once the dead instance disconnected from broker and no message left,
+     * otherwise the queue is consumed again
+     */
+    @Scheduled(fixedDelay = 60 * 1000)
+    public void deleteOrphanQueues() {
+        takeOverOrphanQueues(servers);
+
+        for (String server : orphanQueues) {
+            String queue = QueueConfig.JobActionQueuePrefix + server;
+            jobActionQueueManager.removeConsumer(queue);
+
+            if (jobActionQueueManager.deleteIfIdle(queue)) {
+                orphanQueues.remove(server);
+                unregisterQueue(server);
+                log.info("Orphan job action queue {} is deleted", queue);
+                continue;
+            }
+
+            consumeOrphanQueue(server);
+        }
+    }
+
+    @Override
+    public boolean isOwner(String jobId) {
+        return serverId.equals(getOwner(jobId));
+    }
+
+    @Override
+    public boolean isStable() {
+        return System.currentTimeMillis() - changedAt > StableAfter;
+    }
+
+    @Override
+    public long epoch() {
+        return epoch;
+    }
+
+    @Override
+    public boolean enter(String jobId) {
+        holders.incrementAndGet();
+
+        // the ring will not be changed until holders left, since rebalance sets flag before checking holders
+        if (!handingOver && isOwner(jobId) && isStable()) {
+            return true;
+        }
+
+        holders.decrementAndGet();
+        return false;
+    }
+
+    @Override
+    public void leave() {
+        holders.decrementAndGet();
+    }
+
+    @Override
+    public boolean awaitHandover(String jobId) {
+        if (isStable()) {
+            return true;
+        }
+
+        String owner = getOwner(previous, jobId);
+        if (owner == null || owner.equals(serverId)) {
+            return true;
+        }
+
+        String path = zk.makePath(zkProperties.getServerRoot(), owner);
+        long deadline = System.currentTimeMillis() + HandoverTimeout;
+
+        while (System.currentTimeMillis() < deadline) {
+            String current = version;
+
+            // previous owner is dead or rebalanced
+            if (!servers.contains(owner) || !zk.exist(path) || current.equals(readVersion(path))) {
+                return true;
+            }
+
+            ThreadHelper.sleep(HandoverCheckInterval);
+        }
+
+        log.warn("Job {} handover from {} is timeout", jobId, owner);
+        return false;
+    }
+
+    @Override
+    public CompletableFuture<Void> forward(JobActionEvent event) {
+        String owner = getOwner(event.getJobId());
+        CompletableFuture<Void> future = new CompletableFuture<>();
+
+        // the reply is sent to the instance which forwarded the action at first
+        if (event.getRequestId() == null) {
+            event.setRequestId(StringHelper.randomString(16));
+            event.setReplyTo(serverId);
+            pendingActions.put(event.getRequestId(), new PendingAction(future, System.currentTimeMillis() + ReplyTimeout));
+        } else {
+            future.complete(null);
+        }
+
+        try {
+            byte[] body = objectMapper.writeValueAsBytes(event);
+            if (jobActionQueueManager.send(QueueConfig.JobActionQueuePrefix + owner, body)) {
+                log.debug("Job action {} of {} forward to {}", event.getAction(), event.getJobId(), owner);
+                return future;
+            }
+            complete(event.getRequestId(), "Unable to send job action to " + owner);
+        } catch (IOException e) {
+            log.warn("Unable to forward job action: {}", e.getMessage());
+            complete(event.getRequestId(), e.getMessage());
+        }
+
+        return future;
+    }
+
+    @Override
+    public void reply(JobActionEvent event, Throwable error) {
+        if (event.getReplyTo() == null) {
+            return;
+        }
+
+        if (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+
+        String message = error == null ? null : Objects.toString(error.getMessage(), error.getClass().getSimpleName());
+
+        try {
+            byte[] body = objectMapper.writeValueAsBytes(new JobActionReply(event.getRequestId(), message));
+            jobActionQueueManager.send(QueueConfig.JobActionReplyQueuePrefix + event.getReplyTo(), body);
+        } catch (IOException e) {
+            log.warn("Unable to reply job action: {}", e.getMessage());
+        }
+    }
+
+    private String getOwner(String jobId) {
+        String owner = getOwner(ring, jobId);
+        return owner == null ? serverId : owner;
+    }
+
+    private static String getOwner(TreeMap<Integer, String> current, String jobId) {
+        if (current.isEmpty()) {
+            return null;
+        }
+
+        Map.Entry<Integer, String> entry = current.ceilingEntry(hash(jobId));
+        if (entry == null) {
+            entry = current.firstEntry();
+        }
+        return entry.getValue();
+    }
+
+    private void createServerNode() {
+        String path = zk.makePath(zkProperties.getServerRoot(), serverId);
+        try {
+            if (!zk.exist(path)) {
+                zk.create(CreateMode.EPHEMERAL, path, version.getBytes(StandardCharsets.UTF_8));
+            }
+        } catch (ZookeeperException e) {
+            log.warn("Unable to register server instance {}: {}", serverId, e.getMessage());
+        }
+    }
+
+    /**
+     * Rebalance on the rebalance thread, the requests are merged if not started
+     */
+    private void requestRebalance() {
+        if (rebalanceRequested.compareAndSet(false, true)) {
+            rebalanceExecutor.execute(this::rebalance);
+        }
+    }
+
+    private synchronized void rebalance() {
+        rebalanceRequested.set(false);
+
+        Set<String> updatedServers;
+        try {
+            updatedServers = new TreeSet<>(zk.children(zkProperties.getServerRoot()));
+        } catch (ZookeeperException e) {
+            log.warn("Unable to list server instances: {}", e.getMessage());
+            return;
+        }
+
+        if (updatedServers.equals(servers)) {
+            return;
+        }
+
+        TreeMap<Integer, String> updated = new TreeMap<>();
+        for (String server : updatedServers) {
+            for (int i = 0; i < VirtualNodes; i++) {
+                updated.put(hash(server + "#" + i), server);
+            }
+        }
+
+        // wait for job actions processing with local lock, since the new owner will not wait for them
+        handingOver = true;
+        if (!awaitHolders()) {
+            log.error("Job actions with local lock not finished in {} ms, the rebalance is retried", HandoverTimeout);
+            requestRebalance();
+            return;
+        }
+
+        previous = ring;
+        ring = updated;
+        servers = updatedServers;
+        version = Integer.toHexString(hash(String.join(",", updatedServers)));
+        changedAt = System.currentTimeMillis();
+        epoch++;
+        handingOver = false;
+
+        writeVersion();
+        takeOverOrphanQueues(updatedServers);
+        log.info("Job owner rebalanced on server instances {}", updatedServers);
+    }
+
+    private boolean awaitHolders() {
+        long deadline = System.currentTimeMillis() + HandoverTimeout;
+
+        while (holders.get() > 0) {
+            if (System.currentTimeMillis() > deadline) {
+                return false;
+            }
+            ThreadHelper.sleep(HandoverCheckInterval);
+        }
+
+        return true;
+    }
+
+    /**
+     * Write version of server instances to node as ack of handover
+     */
+    private void writeVersion() {
+        String path = zk.makePath(zkProperties.getServerRoot(), serverId);
+        try {
+            zk.set(path, version.getBytes(StandardCharsets.UTF_8));
+        } catch (ZookeeperException e) {
+            log.warn("Unable to write server instance version {}: {}", serverId, e.getMessage());
+        }
+    }
+
+    private String readVersion(String path) {
+        try {
+            byte[] data = zk.get(path);
+            return data == null ? StringHelper.EMPTY : new String(data, StandardCharsets.UTF_8);
+        } catch (ZookeeperException e) {
+            return StringHelper.EMPTY;
+        }
+    }
+
+    /**
+     * Register job action queue of current instance, it's kept after instance stopped since the queue is durable
+     */
+    private void registerQueue() {
+        String path = zk.makePath(zkProperties.getQueueRoot(), serverId);
+        try {
+            if (!zk.exist(path)) {
+                zk.create(CreateMode.PERSISTENT, path, null);
+            }
+        } catch (ZookeeperException e) {
+            log.warn("Unable to register job action queue of {}: {}", serverId, e.getMessage());
+        }
+    }
+
+    private void unregisterQueue(String server) {
+        try {
+            zk.delete(zk.makePath(zkProperties.getQueueRoot(), server), false);
+        } catch (ZookeeperException e) {
+            log.warn("Unable to unregister job action queue of {}: {}", server, e.getMessage());
+        }
+    }
+
+    /**
+     * Take over registered queues of instances not alive and owned by current instance
+     */
+    private void takeOverOrphanQueues(Set<String> alive) {
+        List<String> registered;
+        try {
+            registered = zk.children(zkProperties.getQueueRoot());
+        } catch (ZookeeperException e) {
+            log.warn("Unable to list job action queues: {}", e.getMessage());
+            return;
+        }
+
+        for (String server : registered) {
+            if (alive.contains(server) || orphanQueues.contains(server)) {
+                continue;
+            }
+
+            if (serverId.equals(getOwner(server))) {
+                consumeOrphanQueue(server);
+            }
+        }
+    }
+
+    /**
+     * Forward job actions of dead instance to current owners, the unacked messages
+     * are requeued once the dead instance disconnected from broker
+     */
+    private void consumeOrphanQueue(String server) {
+        String queue = QueueConfig.JobActionQueuePrefix + server;
+        try {
+            jobActionQueueManager.declare(queue, true);
+            jobActionQueueManager.startConsumer(queue, false, (header, body, envelope) -> {
+                try {
+                    forward(objectMapper.readValue(body, JobActionEvent.class));
+                } catch (IOException e) {
+                    log.warn("Unable to forward job action from {}: {}", queue, e.getMessage());
+                }
+                return true;
+            }, null);
+
+            orphanQueues.add(server);
+        } catch (IOException e) {
+            log.warn("Unable to take over job action queue {}: {}", queue, e.getMessage());
+        }
+    }
+
+    private void complete(String requestId, String error) {
+        PendingAction pending = pendingActions.remove(requestId);
+        if (pending == null) {
+            return;
+        }
+
+        if (error == null) {
+            pending.future.complete(null);
+            return;
+        }
+
+        pending.future.completeExceptionally(new StatusException("Job action failed: {0}", error));
+    }
+
+    private static int hash(String key) {
+        return Hash.hashString(key, StandardCharsets.UTF_8).asInt();
+    }
+
+    @AllArgsConstructor
+    private static class PendingAction {
+
+        private final CompletableFuture<Void> future;
+
+        private final long expireAt;
+    }
+}
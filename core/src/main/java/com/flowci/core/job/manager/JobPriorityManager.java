@@ -0,0 +1,21 @@
+package com.flowci.core.job.manager;
+
+import com.flowci.core.job.domain.Job;
+
+/**
+ * Gate jobs of the same flow by build number, instead of polling the priority queue
+ */
+public interface JobPriorityManager {
+
+    /**
+     * Check the job is on top priority of its flow
+     * The job will be registered as waiter if not, and it will be woken up
+     * by 'ACTION_TO_RUN' once the job before it has been removed
+     */
+    boolean isOnTop(Job job);
+
+    /**
+     * Remove job from flow priority queue and wake up the next waiter
+     */
+    void remove(Job job);
+}
@@ -0,0 +1,163 @@
+package com.flowci.core.job.manager;
+
+import com.flowci.core.common.manager.SpringEventManager;
+import com.flowci.core.job.dao.JobDao;
+import com.flowci.core.job.dao.JobPriorityDao;
+import com.flowci.core.job.domain.Job;
+import com.flowci.core.job.event.JobActionEvent;
+import com.flowci.core.job.event.JobPriorityChangedEvent;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Waiters are kept in memory of the instance which received the job from queue,
+ * the instances will be notified by JobPriorityChangedEvent over the broadcast exchange
+ * <p>
+ * Queued jobs are loaded as waiters on every instance once started, since waiters are lost on restart,
+ * the wake up action is skipped if the job is not queued anymore
+ */
+@Log4j2
+@Component
+public class JobPriorityManagerImpl implements JobPriorityManager {
+
+    // flow id : (build number : waiter)
+    private final Map<String, ConcurrentSkipListMap<Long, Waiter>> waiters = new ConcurrentHashMap<>();
+
+    @Autowired
+    private JobDao jobDao;
+
+    @Autowired
+    private JobPriorityDao jobPriorityDao;
+
+    @Autowired
+    private SpringEventManager eventManager;
+
+    @Autowired
+    private TaskExecutor appTaskExecutor;
+
+    /**
+     * Load queued jobs as waiters, and wake up the ones on top since the event might be missed
+     */
+    @EventListener(ContextRefreshedEvent.class)
+    public void loadWaiters() {
+        for (Job job : jobDao.findAllByStatusOrderByBuildNumber(Job.Status.QUEUED)) {
+            getWaiters(job.getFlowId()).putIfAbsent(job.getBuildNumber(), new Waiter(job.getId(), job.getExpireAt()));
+        }
+
+        waiters.forEach((flowId, map) -> {
+            long top = jobPriorityDao.findMinBuildNumber(flowId);
+            Iterator<Map.Entry<Long, Waiter>> iter = map.headMap(top, true).entrySet().iterator();
+
+            while (iter.hasNext()) {
+                Waiter waiter = iter.next().getValue();
+                iter.remove();
+                wakeUp(waiter.getJobId(), JobActionEvent.ACTION_TO_RUN);
+            }
+        });
+    }
+
+    @Override
+    public boolean isOnTop(Job job) {
+        String flowId = job.getFlowId();
+        Long buildNumber = job.getBuildNumber();
+
+        // register before checking, to not miss the event that sent in between
+        getWaiters(flowId).put(buildNumber, new Waiter(job.getId(), job.getExpireAt()));
+
+        long top = jobPriorityDao.findMinBuildNumber(flowId);
+        if (buildNumber <= top) {
+            removeWaiter(flowId, buildNumber);
+            return true;
+        }
+
+        return false;
+    }
+
+    @Override
+    public void remove(Job job) {
+        String flowId = job.getFlowId();
+        Long buildNumber = job.getBuildNumber();
+
+        jobPriorityDao.removeJob(flowId, buildNumber);
+        long top = jobPriorityDao.findMinBuildNumber(flowId);
+
+        eventManager.publish(new JobPriorityChangedEvent(this, flowId, buildNumber, top));
+    }
+
+    @EventListener
+    public void onPriorityChanged(JobPriorityChangedEvent event) {
+        String flowId = event.getFlowId();
+        removeWaiter(flowId, event.getBuildNumber());
+
+        Waiter next = removeWaiter(flowId, event.getTopBuildNumber());
+        if (next != null) {
+            log.debug("Wake up job {} since it's on top priority", next.getJobId());
+            wakeUp(next.getJobId(), JobActionEvent.ACTION_TO_RUN);
+        }
+    }
+
+    @Scheduled(fixedDelay = 1000 * 10)
+    public void timeoutExpiredWaiters() {
+        Date now = new Date();
+
+        waiters.forEach((flowId, map) -> {
+            Iterator<Map.Entry<Long, Waiter>> iter = map.entrySet().iterator();
+            while (iter.hasNext()) {
+                Waiter waiter = iter.next().getValue();
+                if (waiter.isExpired(now)) {
+                    iter.remove();
+                    wakeUp(waiter.getJobId(), JobActionEvent.ACTION_TO_TIMEOUT);
+                }
+            }
+        });
+    }
+
+    private void wakeUp(String jobId, String action) {
+        JobActionEvent event = new JobActionEvent(this, jobId, action);
+        event.setExpected(Job.Status.QUEUED);
+        appTaskExecutor.execute(() -> eventManager.publish(event));
+    }
+
+    private ConcurrentSkipListMap<Long, Waiter> getWaiters(String flowId) {
+        return waiters.computeIfAbsent(flowId, k -> new ConcurrentSkipListMap<>());
+    }
+
+    private Waiter removeWaiter(String flowId, Long buildNumber) {
+        if (buildNumber == null) {
+            return null;
+        }
+
+        ConcurrentSkipListMap<Long, Waiter> map = waiters.get(flowId);
+        if (map == null) {
+            return null;
+        }
+
+        return map.remove(buildNumber);
+    }
+
+    @Getter
+    @AllArgsConstructor
+    private static class Waiter {
+
+        private final String jobId;
+
+        private final Date expireAt;
+
+        boolean isExpired(Date now) {
+            return expireAt != null && now.after(expireAt);
+        }
+    }
+}
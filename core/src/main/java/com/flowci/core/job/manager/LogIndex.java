@@ -0,0 +1,39 @@
+package com.flowci.core.job.manager;
+
+import com.flowci.core.job.domain.LogHit;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * Inverted index of terms to lines of persisted step logs, only the logs of recent days are kept
+ * <p>
+ * The index is local to server instance, logs are indexed on every instance which is able to read
+ * the saved log file, so that with shared storage (minio) all instances are able to search,
+ * otherwise the logs are only searchable on the instance which received the log file
+ */
+public interface LogIndex {
+
+    /**
+     * Index log of step line by line, it's searchable once returned
+     */
+    void add(String flowId, long buildNumber, String stepId, InputStream log) throws IOException;
+
+    /**
+     * Steps of flow that have line contains all terms of text, sorted by build number desc
+     *
+     * @param since only the logs indexed after the timestamp in millis
+     */
+    List<LogHit> search(String flowId, String text, long since, int limit);
+
+    /**
+     * Write indexed logs in memory to segments, merge segments of similar size and remove logs out of retention
+     */
+    void flush();
+
+    /**
+     * Remove logs of flow from index
+     */
+    void delete(String flowId) throws IOException;
+}
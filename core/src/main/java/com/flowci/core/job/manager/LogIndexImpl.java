@@ -0,0 +1,830 @@
+package com.flowci.core.job.manager;
+
+import com.flowci.core.job.domain.LogHit;
+import com.google.common.primitives.UnsignedBytes;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Index is a list of immutable segments partitioned by the day of docs (step logs) added
+ * - a segment in memory is created for each step log added
+ * - segments in memory are merged by day and written to {day}_{seq}.seg by the scheduled flush
+ * - segments of a day in the same size tier are merged once there are merge factor of them,
+ *   and segments over max merged bytes are not merged anymore
+ * - segments out of retention are deleted, docs of deleted flows are removed on merge
+ * - the dir must be written by one instance only, since seq is not shared between instances
+ * <p>
+ * Segment file is memory mapped and read in place, the layout is
+ * - header: [magic][version][min time][max time][num of docs][num of terms]
+ * - offsets of docs, then offsets of terms sorted by utf8 bytes
+ * - doc: [flow id][build number][step id][time]
+ * - term: [term][postings length][postings as (doc delta, line or line delta) varints]
+ */
+@Log4j2
+public class LogIndexImpl implements LogIndex {
+
+    private static final String SegmentSuffix = ".seg";
+
+    private static final String DeletedFlowsFile = "deleted";
+
+    private static final int Magic = 0x464C5347;
+
+    private static final int Version = 2;
+
+    private static final int HeaderSize = 4 + 1 + 8 + 8 + 4 + 4;
+
+    private static final int MinTermLength = 2;
+
+    private static final int MaxTermLength = 64;
+
+    private static final int MaxLinesPerHit = 10;
+
+    private static final int MergeFactor = 4;
+
+    private static final int MinTierBytes = 64 * 1024;
+
+    private static final int MaxMergedBytes = 64 * 1024 * 1024;
+
+    private final Path dir;
+
+    private final long retentionMillis;
+
+    private final AtomicLong seq = new AtomicLong();
+
+    // flow id : deleted at
+    private final Map<String, Long> deletedFlows = new ConcurrentHashMap<>();
+
+    private final Object flushLock = new Object();
+
+    // persisted segments by day and seq, then segments in memory
+    private volatile List<Segment> segments;
+
+    public LogIndexImpl(Path dir, int retentionDays) throws IOException {
+        this.dir = dir;
+        this.retentionMillis = TimeUnit.DAYS.toMillis(retentionDays);
+        this.segments = Collections.unmodifiableList(load());
+    }
+
+    @Override
+    public void add(String flowId, long buildNumber, String stepId, InputStream log) throws IOException {
+        long now = System.currentTimeMillis();
+
+        SegmentBuilder builder = new SegmentBuilder();
+        int doc = builder.addDoc(new Doc(flowId, buildNumber, stepId, now));
+
+        List<String> terms = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(log, StandardCharsets.UTF_8))) {
+            String line;
+            int lineNumber = 0;
+
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                tokenize(line, terms);
+                for (String term : terms) {
+                    builder.add(term, doc, lineNumber);
+                }
+            }
+        }
+
+        Segment segment = new Segment(toDay(now), 0, ByteBuffer.wrap(builder.build()));
+        synchronized (this) {
+            List<Segment> list = new ArrayList<>(segments);
+            list.add(segment);
+            segments = Collections.unmodifiableList(list);
+        }
+    }
+
+    @Override
+    public List<LogHit> search(String flowId, String text, long since, int limit) {
+        List<String> terms = new ArrayList<>();
+        tokenize(text, terms);
+
+        if (terms.isEmpty() || deletedFlows.containsKey(flowId)) {
+            return Collections.emptyList();
+        }
+
+        byte[] flow = flowId.getBytes(StandardCharsets.UTF_8);
+        List<byte[]> distinct = new ArrayList<>();
+        for (String term : new LinkedHashSet<>(terms)) {
+            distinct.add(term.getBytes(StandardCharsets.UTF_8));
+        }
+
+        List<LogHit> hits = new ArrayList<>();
+
+        for (Segment segment : segments) {
+            if (segment.maxTime < since) {
+                continue;
+            }
+
+            BitSet candidates = segment.select(flow, since);
+            if (candidates.isEmpty()) {
+                continue;
+            }
+
+            long[] matched = null;
+            for (byte[] term : distinct) {
+                int index = segment.find(term);
+                if (index < 0) {
+                    matched = new long[0];
+                    break;
+                }
+
+                long[] lines = decode(segment.postings(index), candidates);
+                matched = matched == null ? lines : intersect(matched, lines);
+
+                if (matched.length == 0) {
+                    break;
+                }
+            }
+
+            collect(segment, matched, hits);
+        }
+
+        hits.sort(Comparator.comparingLong(LogHit::getBuildNumber).reversed());
+        return hits.size() > limit ? new ArrayList<>(hits.subList(0, limit)) : hits;
+    }
+
+    @Override
+    @PreDestroy
+    @Scheduled(fixedDelay = 1000 * 10)
+    public void flush() {
+        synchronized (flushLock) {
+            long cutoff = System.currentTimeMillis() - retentionMillis;
+
+            try {
+                expire(cutoff);
+                persist();
+
+                List<Segment> inputs;
+                while (!(inputs = nextMerge()).isEmpty()) {
+                    merge(inputs);
+                }
+
+                // docs of flows deleted before the cutoff are expired
+                if (deletedFlows.values().removeIf(deletedAt -> deletedAt < cutoff)) {
+                    writeDeletedFlows();
+                }
+            } catch (IOException e) {
+                log.warn("Unable to flush log index: {}", e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void delete(String flowId) throws IOException {
+        deletedFlows.put(flowId, System.currentTimeMillis());
+        writeDeletedFlows();
+    }
+
+    /**
+     * Remove segments with all docs added before the cutoff
+     */
+    private void expire(long cutoff) throws IOException {
+        List<Segment> expired = new ArrayList<>();
+        for (Segment segment : segments) {
+            if (segment.maxTime < cutoff) {
+                expired.add(segment);
+            }
+        }
+
+        if (expired.isEmpty()) {
+            return;
+        }
+
+        replace(expired, null);
+        for (Segment segment : expired) {
+            delete(segment);
+        }
+    }
+
+    /**
+     * Write segments in memory to a segment per day
+     */
+    private void persist() throws IOException {
+        Map<Long, List<Segment>> days = new TreeMap<>();
+        for (Segment segment : segments) {
+            if (segment.seq == 0) {
+                days.computeIfAbsent(segment.day, k -> new ArrayList<>()).add(segment);
+            }
+        }
+
+        for (List<Segment> inputs : days.values()) {
+            merge(inputs);
+        }
+    }
+
+    /**
+     * Persisted segments of the same day and size tier, once there are merge factor of them
+     */
+    private List<Segment> nextMerge() {
+        Map<String, List<Segment>> tiers = new HashMap<>();
+
+        for (Segment segment : segments) {
+            if (segment.seq == 0 || segment.size() > MaxMergedBytes) {
+                continue;
+            }
+
+            String key = segment.day + "_" + tier(segment.size());
+            List<Segment> tier = tiers.computeIfAbsent(key, k -> new ArrayList<>());
+            tier.add(segment);
+
+            if (tier.size() == MergeFactor) {
+                return tier;
+            }
+        }
+
+        return Collections.emptyList();
+    }
+
+    private void merge(List<Segment> inputs) throws IOException {
+        Set<String> dropped = new LinkedHashSet<>(deletedFlows.keySet());
+        Segment merged = write(inputs.get(0).day, merge(inputs, dropped));
+        replace(inputs, merged);
+
+        for (Segment input : inputs) {
+            delete(input);
+        }
+    }
+
+    /**
+     * Replace inputs by the merged segment at the position of the first input, or remove them if merged is null
+     */
+    private synchronized void replace(List<Segment> inputs, Segment merged) {
+        Set<Segment> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+        removed.addAll(inputs);
+
+        List<Segment> list = new ArrayList<>(segments.size());
+        boolean inserted = merged == null;
+
+        for (Segment segment : segments) {
+            if (!removed.contains(segment)) {
+                list.add(segment);
+                continue;
+            }
+
+            if (!inserted) {
+                list.add(merged);
+                inserted = true;
+            }
+        }
+
+        segments = Collections.unmodifiableList(list);
+    }
+
+    private List<Segment> load() throws IOException {
+        Files.createDirectories(dir);
+
+        Path deleted = dir.resolve(DeletedFlowsFile);
+        if (Files.exists(deleted)) {
+            for (String line : Files.readAllLines(deleted, StandardCharsets.UTF_8)) {
+                String[] fields = line.split("\t");
+                long deletedAt = fields.length > 1 ? Long.parseLong(fields[1]) : System.currentTimeMillis();
+                deletedFlows.put(fields[0], deletedAt);
+            }
+        }
+
+        List<long[]> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*" + SegmentSuffix)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                String[] fields = name.substring(0, name.length() - SegmentSuffix.length()).split("_");
+
+                try {
+                    files.add(new long[]{Long.parseLong(fields[0]), Long.parseLong(fields[1])});
+                } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                    log.warn("Invalid log index segment {} is deleted", name);
+                    Files.delete(file);
+                }
+            }
+        }
+
+        files.sort(Comparator.<long[]>comparingLong(f -> f[0]).thenComparingLong(f -> f[1]));
+
+        List<Segment> list = new ArrayList<>(files.size());
+        for (long[] file : files) {
+            Path path = segmentPath(file[0], file[1]);
+
+            try {
+                list.add(new Segment(file[0], file[1], map(path)));
+                seq.set(Math.max(seq.get(), file[1]));
+            } catch (IOException e) {
+                log.warn("Invalid log index segment {} is deleted: {}", path.getFileName(), e.getMessage());
+                Files.delete(path);
+            }
+        }
+        return list;
+    }
+
+    private Path segmentPath(long day, long seq) {
+        return dir.resolve(day + "_" + seq + SegmentSuffix);
+    }
+
+    private void delete(Segment segment) throws IOException {
+        if (segment.seq > 0) {
+            Files.deleteIfExists(segmentPath(segment.day, segment.seq));
+        }
+    }
+
+    private void writeDeletedFlows() throws IOException {
+        List<String> lines = new ArrayList<>(deletedFlows.size());
+        deletedFlows.forEach((flowId, deletedAt) -> lines.add(flowId + "\t" + deletedAt));
+
+        Path tmp = dir.resolve(DeletedFlowsFile + ".tmp");
+        Files.write(tmp, lines, StandardCharsets.UTF_8);
+        Files.move(tmp, dir.resolve(DeletedFlowsFile), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private Segment write(long day, byte[] bytes) throws IOException {
+        long s = seq.incrementAndGet();
+        Path file = segmentPath(day, s);
+        Path tmp = dir.resolve(file.getFileName() + ".tmp");
+
+        Files.write(tmp, bytes);
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        return new Segment(day, s, map(file));
+    }
+
+    private static ByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * Merge segments in order, docs of dropped flows are removed
+     */
+    private static byte[] merge(List<Segment> inputs, Set<String> droppedFlows) throws IOException {
+        SegmentBuilder builder = new SegmentBuilder();
+
+        for (Segment segment : inputs) {
+            int[] docMap = new int[segment.numOfDocs];
+            for (int i = 0; i < docMap.length; i++) {
+                Doc doc = segment.doc(i);
+                docMap[i] = droppedFlows.contains(doc.flowId) ? -1 : builder.addDoc(doc);
+            }
+
+            for (int i = 0; i < segment.numOfTerms; i++) {
+                String term = segment.term(i);
+                PostingsReader reader = segment.postings(i);
+
+                while (reader.next()) {
+                    int doc = docMap[reader.doc];
+                    if (doc >= 0) {
+                        builder.add(term, doc, reader.line);
+                    }
+                }
+            }
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Size tier of segment, 0 for segment under min tier bytes
+     */
+    private static int tier(int size) {
+        int tier = 0;
+        for (long bound = MinTierBytes; size >= bound; bound *= MergeFactor) {
+            tier++;
+        }
+        return tier;
+    }
+
+    private static long toDay(long millis) {
+        return TimeUnit.MILLISECONDS.toDays(millis);
+    }
+
+    /**
+     * Sorted [doc << 32 | line] of postings in candidate docs
+     */
+    private static long[] decode(PostingsReader reader, BitSet candidates) {
+        long[] lines = new long[16];
+        int size = 0;
+
+        while (reader.next()) {
+            if (!candidates.get(reader.doc)) {
+                continue;
+            }
+
+            if (size == lines.length) {
+                lines = Arrays.copyOf(lines, size * 2);
+            }
+            lines[size++] = ((long) reader.doc << 32) | reader.line;
+        }
+
+        return Arrays.copyOf(lines, size);
+    }
+
+    private static long[] intersect(long[] a, long[] b) {
+        long[] result = new long[Math.min(a.length, b.length)];
+        int size = 0;
+
+        for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+            if (a[i] == b[j]) {
+                result[size++] = a[i];
+                i++;
+                j++;
+            } else if (a[i] < b[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+
+        return Arrays.copyOf(result, size);
+    }
+
+    private static void collect(Segment segment, long[] matched, List<LogHit> hits) {
+        int current = -1;
+        List<Integer> lines = null;
+
+        for (long value : matched) {
+            int doc = (int) (value >>> 32);
+
+            if (doc != current) {
+                Doc d = segment.doc(doc);
+                lines = new ArrayList<>();
+                hits.add(new LogHit(d.flowId, d.buildNumber, d.stepId, lines));
+                current = doc;
+            }
+
+            if (lines.size() < MaxLinesPerHit) {
+                lines.add((int) value);
+            }
+        }
+    }
+
+    /**
+     * Lower case words of letters, digits and '_'
+     */
+    private static void tokenize(String line, List<String> terms) {
+        terms.clear();
+        int start = -1;
+
+        for (int i = 0; i <= line.length(); i++) {
+            if (i < line.length()) {
+                char c = line.charAt(i);
+                if (Character.isLetterOrDigit(c) || c == '_') {
+                    if (start < 0) {
+                        start = i;
+                    }
+                    continue;
+                }
+            }
+
+            if (start >= 0) {
+                int length = i - start;
+                if (length >= MinTermLength && length <= MaxTermLength) {
+                    terms.add(line.substring(start, i).toLowerCase());
+                }
+                start = -1;
+            }
+        }
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static final class Doc {
+
+        private final String flowId;
+
+        private final long buildNumber;
+
+        private final String stepId;
+
+        private final long time;
+
+        Doc(String flowId, long buildNumber, String stepId, long time) {
+            this.flowId = flowId;
+            this.buildNumber = buildNumber;
+            this.stepId = stepId;
+            this.time = time;
+        }
+    }
+
+    /**
+     * Read in place by absolute positions, since the buffer is shared by concurrent searches
+     */
+    private static final class Segment {
+
+        private final long day;
+
+        // file seq, 0 if not persisted
+        private final long seq;
+
+        private final ByteBuffer buffer;
+
+        private final long minTime;
+
+        private final long maxTime;
+
+        private final int numOfDocs;
+
+        private final int numOfTerms;
+
+        Segment(long day, long seq, ByteBuffer buffer) throws IOException {
+            if (buffer.capacity() < HeaderSize || buffer.getInt(0) != Magic || buffer.get(4) != Version) {
+                throw new IOException("Invalid log index segment");
+            }
+
+            this.day = day;
+            this.seq = seq;
+            this.buffer = buffer;
+            this.minTime = buffer.getLong(5);
+            this.maxTime = buffer.getLong(13);
+            this.numOfDocs = buffer.getInt(21);
+            this.numOfTerms = buffer.getInt(25);
+        }
+
+        int size() {
+            return buffer.capacity();
+        }
+
+        BitSet select(byte[] flowId, long since) {
+            BitSet selected = new BitSet(numOfDocs);
+            boolean all = minTime >= since;
+
+            for (int i = 0; i < numOfDocs; i++) {
+                int offset = docOffset(i);
+                int flowLength = buffer.getShort(offset);
+
+                if (compare(offset + 2, flowLength, flowId) != 0) {
+                    continue;
+                }
+
+                if (all || time(offset + 2 + flowLength + 8) >= since) {
+                    selected.set(i);
+                }
+            }
+            return selected;
+        }
+
+        Doc doc(int index) {
+            int offset = docOffset(index);
+            int flowLength = buffer.getShort(offset);
+            String flowId = string(offset + 2, flowLength);
+
+            offset += 2 + flowLength;
+            long buildNumber = buffer.getLong(offset);
+
+            offset += 8;
+            String stepId = string(offset + 2, buffer.getShort(offset));
+            return new Doc(flowId, buildNumber, stepId, time(offset));
+        }
+
+        /**
+         * Binary search index of term, negative if not found
+         */
+        int find(byte[] term) {
+            int low = 0;
+            int high = numOfTerms - 1;
+
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int offset = termOffset(mid);
+                int c = compare(offset + 2, buffer.getShort(offset), term);
+
+                if (c < 0) {
+                    low = mid + 1;
+                } else if (c > 0) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -1;
+        }
+
+        String term(int index) {
+            int offset = termOffset(index);
+            return string(offset + 2, buffer.getShort(offset));
+        }
+
+        PostingsReader postings(int index) {
+            int offset = termOffset(index);
+            offset += 2 + buffer.getShort(offset);
+            return new PostingsReader(buffer, offset + 4, buffer.getInt(offset));
+        }
+
+        private int docOffset(int index) {
+            return buffer.getInt(HeaderSize + index * 4);
+        }
+
+        private int termOffset(int index) {
+            return buffer.getInt(HeaderSize + numOfDocs * 4 + index * 4);
+        }
+
+        /**
+         * Time of doc from the offset of step id
+         */
+        private long time(int stepOffset) {
+            return buffer.getLong(stepOffset + 2 + buffer.getShort(stepOffset));
+        }
+
+        private int compare(int offset, int length, byte[] value) {
+            int min = Math.min(length, value.length);
+            for (int i = 0; i < min; i++) {
+                int c = UnsignedBytes.compare(buffer.get(offset + i), value[i]);
+                if (c != 0) {
+                    return c;
+                }
+            }
+            return length - value.length;
+        }
+
+        private String string(int offset, int length) {
+            byte[] bytes = new byte[length];
+            for (int i = 0; i < length; i++) {
+                bytes[i] = buffer.get(offset + i);
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static final class SegmentBuilder {
+
+        private final List<Doc> docs = new ArrayList<>();
+
+        private final Map<String, PostingsWriter> postings = new HashMap<>();
+
+        int addDoc(Doc doc) {
+            docs.add(doc);
+            return docs.size() - 1;
+        }
+
+        void add(String term, int doc, int line) {
+            postings.computeIfAbsent(term, k -> new PostingsWriter()).add(doc, line);
+        }
+
+        byte[] build() throws IOException {
+            // sorted by utf8 bytes as compared on search
+            Map<byte[], PostingsWriter> terms = new TreeMap<>(UnsignedBytes.lexicographicalComparator());
+            postings.forEach((term, writer) -> terms.put(term.getBytes(StandardCharsets.UTF_8), writer));
+
+            int dataStart = HeaderSize + (docs.size() + terms.size()) * 4;
+            ByteArrayOutputStream data = new ByteArrayOutputStream();
+            DataOutputStream dataOut = new DataOutputStream(data);
+
+            long minTime = Long.MAX_VALUE;
+            long maxTime = Long.MIN_VALUE;
+
+            int[] docOffsets = new int[docs.size()];
+            for (int i = 0; i < docOffsets.length; i++) {
+                Doc doc = docs.get(i);
+                docOffsets[i] = dataStart + data.size();
+
+                writeBytes(dataOut, doc.flowId.getBytes(StandardCharsets.UTF_8));
+                dataOut.writeLong(doc.buildNumber);
+                writeBytes(dataOut, doc.stepId.getBytes(StandardCharsets.UTF_8));
+                dataOut.writeLong(doc.time);
+
+                minTime = Math.min(minTime, doc.time);
+                maxTime = Math.max(maxTime, doc.time);
+            }
+
+            int[] termOffsets = new int[terms.size()];
+            int i = 0;
+            for (Map.Entry<byte[], PostingsWriter> entry : terms.entrySet()) {
+                ByteArrayOutputStream bytes = entry.getValue().out;
+                termOffsets[i++] = dataStart + data.size();
+
+                writeBytes(dataOut, entry.getKey());
+                dataOut.writeInt(bytes.size());
+                bytes.writeTo(dataOut);
+            }
+
+            ByteArrayOutputStream segment = new ByteArrayOutputStream(dataStart + data.size());
+            DataOutputStream out = new DataOutputStream(segment);
+            out.writeInt(Magic);
+            out.writeByte(Version);
+            out.writeLong(minTime);
+            out.writeLong(maxTime);
+            out.writeInt(docOffsets.length);
+            out.writeInt(termOffsets.length);
+
+            for (int offset : docOffsets) {
+                out.writeInt(offset);
+            }
+            for (int offset : termOffsets) {
+                out.writeInt(offset);
+            }
+
+            data.writeTo(out);
+            return segment.toByteArray();
+        }
+    }
+
+    /**
+     * Postings must be added in order of doc and line
+     */
+    private static final class PostingsWriter {
+
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream(16);
+
+        private int doc;
+
+        private int line;
+
+        void add(int doc, int line) {
+            if (out.size() > 0 && doc == this.doc && line == this.line) {
+                return;
+            }
+
+            writeVarint(out, doc - this.doc);
+            writeVarint(out, doc == this.doc ? line - this.line : line);
+
+            this.doc = doc;
+            this.line = line;
+        }
+    }
+
+    private static final class PostingsReader {
+
+        private final ByteBuffer buffer;
+
+        private final int end;
+
+        private int position;
+
+        private int doc;
+
+        private int line;
+
+        PostingsReader(ByteBuffer buffer, int offset, int length) {
+            this.buffer = buffer;
+            this.position = offset;
+            this.end = offset + length;
+        }
+
+        boolean next() {
+            if (position >= end) {
+                return false;
+            }
+
+            int docDelta = readVarint();
+            int value = readVarint();
+
+            doc += docDelta;
+            line = docDelta == 0 ? line + value : value;
+            return true;
+        }
+
+        private int readVarint() {
+            int value = 0;
+            int shift = 0;
+
+            while (true) {
+                byte b = buffer.get(position++);
+                value |= (b & 0x7F) << shift;
+
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+                shift += 7;
+            }
+        }
+    }
+}
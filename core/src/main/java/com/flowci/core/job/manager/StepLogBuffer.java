@@ -0,0 +1,36 @@
+package com.flowci.core.job.manager;
+
+import com.flowci.core.job.domain.StepLogChunk;
+
+import java.util.Collection;
+
+/**
+ * Byte bounded in memory buffer of live step logs
+ */
+public interface StepLogBuffer {
+
+    /**
+     * Create empty buffers for steps of job
+     */
+    void init(String jobId, Collection<String> stepIds);
+
+    /**
+     * Append log item to step, ignored if step buffer not created
+     */
+    void append(String stepId, byte[] item);
+
+    /**
+     * Read log items from offset, max bytes is soft limit that at least one item returned if available
+     */
+    StepLogChunk read(String stepId, long fromOffset, int maxBytes);
+
+    /**
+     * Release buffers of steps of job
+     */
+    void release(String jobId);
+
+    /**
+     * Bytes of allocated segments
+     */
+    long usedBytes();
+}
@@ -0,0 +1,286 @@
+package com.flowci.core.job.manager;
+
+import com.flowci.core.job.domain.StepLogChunk;
+import lombok.extern.log4j.Log4j2;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Log items of step are framed as [length][bytes] in direct byte buffer segments
+ * - item is not split across segments, the segment starts with an item
+ * - offset is the logical position of bytes written to the step
+ * - the oldest segment of step is dropped when step over the limit
+ * - the oldest segment of all steps is dropped when total bytes over the limit
+ */
+@Log4j2
+public class StepLogBufferImpl implements StepLogBuffer {
+
+    private static final int SegmentSize = 64 * 1024;
+
+    private static final int FrameHeaderSize = 4;
+
+    private final long maxBytes;
+
+    private final long maxBytesPerStep;
+
+    private final AtomicLong usedBytes = new AtomicLong();
+
+    // step id : buffer
+    private final Map<String, Buffer> buffers = new ConcurrentHashMap<>();
+
+    // job id : step ids
+    private final Map<String, Collection<String>> jobs = new ConcurrentHashMap<>();
+
+    // segments of all steps in allocation order
+    private final Queue<Segment> segments = new ConcurrentLinkedQueue<>();
+
+    // released segments in standard size for reuse
+    private final Queue<ByteBuffer> pool = new ConcurrentLinkedQueue<>();
+
+    public StepLogBufferImpl(long maxBytes, long maxBytesPerStep) {
+        this.maxBytes = maxBytes;
+        this.maxBytesPerStep = Math.max(maxBytesPerStep, SegmentSize);
+    }
+
+    @Override
+    public void init(String jobId, Collection<String> stepIds) {
+        for (String stepId : stepIds) {
+            buffers.put(stepId, new Buffer());
+        }
+        jobs.put(jobId, new ArrayList<>(stepIds));
+    }
+
+    @Override
+    public void append(String stepId, byte[] item) {
+        Buffer buffer = buffers.get(stepId);
+        if (buffer == null) {
+            return;
+        }
+
+        int frameSize = FrameHeaderSize + item.length;
+
+        synchronized (buffer) {
+            if (buffer.write(item)) {
+                return;
+            }
+        }
+
+        // allocate new segment without lock of buffer, since other buffers may be evicted
+        int size = Math.max(SegmentSize, frameSize);
+        reserve(size);
+        Segment segment = new Segment(buffer, allocate(size));
+
+        synchronized (buffer) {
+            if (buffer.released) {
+                free(segment);
+                return;
+            }
+
+            buffer.add(segment);
+            segments.add(segment);
+            buffer.write(item);
+
+            while (buffer.bytes > maxBytesPerStep && buffer.segments.size() > 1) {
+                free(buffer.segments.peekFirst());
+            }
+        }
+    }
+
+    @Override
+    public StepLogChunk read(String stepId, long fromOffset, int maxBytes) {
+        Buffer buffer = buffers.get(stepId);
+        if (buffer == null) {
+            return new StepLogChunk(fromOffset, fromOffset, Collections.emptyList());
+        }
+
+        synchronized (buffer) {
+            return buffer.read(fromOffset, maxBytes);
+        }
+    }
+
+    @Override
+    public void release(String jobId) {
+        Collection<String> stepIds = jobs.remove(jobId);
+        if (stepIds == null) {
+            return;
+        }
+
+        for (String stepId : stepIds) {
+            Buffer buffer = buffers.remove(stepId);
+            if (buffer == null) {
+                continue;
+            }
+
+            synchronized (buffer) {
+                buffer.released = true;
+                while (!buffer.segments.isEmpty()) {
+                    free(buffer.segments.peekFirst());
+                }
+            }
+        }
+    }
+
+    @Override
+    public long usedBytes() {
+        return usedBytes.get();
+    }
+
+    /**
+     * Drop the oldest segments of all steps until enough bytes for size
+     */
+    private void reserve(int size) {
+        while (usedBytes.get() + size > maxBytes) {
+            Segment oldest = segments.poll();
+            if (oldest == null) {
+                break;
+            }
+
+            synchronized (oldest.owner) {
+                free(oldest);
+            }
+        }
+    }
+
+    private ByteBuffer allocate(int size) {
+        usedBytes.addAndGet(size);
+
+        if (size == SegmentSize) {
+            ByteBuffer reused = pool.poll();
+            if (reused != null) {
+                reused.clear();
+                return reused;
+            }
+        }
+
+        return ByteBuffer.allocateDirect(size);
+    }
+
+    /**
+     * Remove segment from owner and recycle its memory, must be called within lock of owner
+     */
+    private void free(Segment segment) {
+        if (segment.freed) {
+            return;
+        }
+
+        segment.freed = true;
+        segment.owner.remove(segment);
+        segments.remove(segment);
+        usedBytes.addAndGet(-segment.data.capacity());
+
+        // pooled segments are bounded by max bytes since they were allocated within the limit
+        if (segment.data.capacity() == SegmentSize) {
+            pool.add(segment.data);
+        }
+    }
+
+    private static final class Segment {
+
+        private final Buffer owner;
+
+        private final ByteBuffer data;
+
+        // logical offset of the first byte
+        private long base;
+
+        private boolean freed;
+
+        Segment(Buffer owner, ByteBuffer data) {
+            this.owner = owner;
+            this.data = data;
+        }
+
+        long end() {
+            return base + data.position();
+        }
+    }
+
+    private static final class Buffer {
+
+        private final Deque<Segment> segments = new ArrayDeque<>();
+
+        // capacity of segments
+        private long bytes;
+
+        // logical offset of end
+        private long end;
+
+        private boolean released;
+
+        void add(Segment segment) {
+            segment.base = end;
+            segments.addLast(segment);
+            bytes += segment.data.capacity();
+        }
+
+        void remove(Segment segment) {
+            if (segments.remove(segment)) {
+                bytes -= segment.data.capacity();
+            }
+        }
+
+        /**
+         * Write item to the last segment
+         *
+         * @return false if no space
+         */
+        boolean write(byte[] item) {
+            Segment last = segments.peekLast();
+            if (last == null || last.data.remaining() < FrameHeaderSize + item.length) {
+                return false;
+            }
+
+            last.data.putInt(item.length);
+            last.data.put(item);
+            end = last.end();
+            return true;
+        }
+
+        StepLogChunk read(long fromOffset, int maxBytes) {
+            long start = segments.isEmpty() ? end : Math.max(fromOffset, segments.peekFirst().base);
+            start = Math.min(start, end);
+
+            List<byte[]> items = new ArrayList<>();
+            long offset = start;
+            long numOfBytes = 0;
+
+            for (Segment segment : segments) {
+                if (segment.end() <= offset) {
+                    continue;
+                }
+
+                ByteBuffer data = segment.data.duplicate();
+                data.flip();
+                data.position((int) (offset - segment.base));
+
+                while (data.remaining() >= FrameHeaderSize) {
+                    int length = data.getInt();
+                    if (length < 0 || length > data.remaining()) {
+                        log.warn("Invalid log offset {}", fromOffset);
+                        return new StepLogChunk(start, end, items);
+                    }
+
+                    if (!items.isEmpty() && numOfBytes + length > maxBytes) {
+                        return new StepLogChunk(start, offset, items);
+                    }
+
+                    byte[] item = new byte[length];
+                    data.get(item);
+                    items.add(item);
+
+                    numOfBytes += length;
+                    offset = segment.base + data.position();
+                }
+
+                // move to next segment since space at the end of segment not used
+                offset = segment.end();
+            }
+
+            return new StepLogChunk(start, offset, items);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.flowci.core.job.manager;
+
+import com.flowci.core.job.domain.StepLogItem;
+
+/**
+ * Coalesce live step logs of job into batched frame to client
+ * frame: repeated [4 bytes length][StepLogItem frame]
+ */
+public interface StepLogPusher {
+
+    /**
+     * Add log to the batch of job, the batch will be pushed when it's over max bytes
+     */
+    void push(String jobId, StepLogItem item);
+
+    /**
+     * Push pending batches of all jobs
+     */
+    void flush();
+
+    /**
+     * Push pending batch of job and remove it
+     */
+    void flush(String jobId);
+}
@@ -0,0 +1,154 @@
+package com.flowci.core.job.manager;
+
+import com.flowci.core.common.manager.SocketPushManager;
+import com.flowci.core.job.domain.StepLogItem;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Batch is pushed when it's over max bytes on push, or by the scheduled flush
+ * Frames are drained in order under the batch lock, and pushed out of the lock by one thread at a time
+ */
+public class StepLogPusherImpl implements StepLogPusher {
+
+    private static final int InitBatchSize = 4 * 1024;
+
+    private final Map<String, Batch> batches = new ConcurrentHashMap<>();
+
+    private final SocketPushManager socketPushManager;
+
+    private final String topic;
+
+    private final int maxBytes;
+
+    public StepLogPusherImpl(SocketPushManager socketPushManager, String topic, int maxBytes) {
+        this.socketPushManager = socketPushManager;
+        this.topic = topic;
+        this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public void push(String jobId, StepLogItem item) {
+        while (true) {
+            Batch batch = batches.computeIfAbsent(jobId, Batch::new);
+
+            synchronized (batch) {
+                // removed by flush, retry on new batch
+                if (batch.closed) {
+                    continue;
+                }
+
+                batch.append(item);
+                if (batch.size() >= maxBytes) {
+                    batch.drain();
+                }
+            }
+
+            send(batch);
+            return;
+        }
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${app.job.log-push-interval-millis}")
+    public void flush() {
+        for (Batch batch : batches.values()) {
+            synchronized (batch) {
+                if (batch.size() > 0) {
+                    batch.drain();
+                } else {
+                    // remove batch idle for an interval
+                    batch.closed = true;
+                    batches.remove(batch.jobId, batch);
+                }
+            }
+
+            send(batch);
+        }
+    }
+
+    @Override
+    public void flush(String jobId) {
+        Batch batch = batches.remove(jobId);
+        if (batch == null) {
+            return;
+        }
+
+        synchronized (batch) {
+            batch.closed = true;
+            if (batch.size() > 0) {
+                batch.drain();
+            }
+        }
+
+        send(batch);
+    }
+
+    /**
+     * Push drained frames if no other thread is pushing the batch, otherwise they will be pushed by that thread
+     */
+    private void send(Batch batch) {
+        while (!batch.frames.isEmpty() && batch.sending.compareAndSet(false, true)) {
+            try {
+                byte[] frame;
+                while ((frame = batch.frames.poll()) != null) {
+                    socketPushManager.push(topic + "/" + batch.jobId, frame);
+                }
+            } finally {
+                batch.sending.set(false);
+            }
+        }
+    }
+
+    private static class Batch {
+
+        private final String jobId;
+
+        private final Queue<byte[]> frames = new ConcurrentLinkedQueue<>();
+
+        private final AtomicBoolean sending = new AtomicBoolean(false);
+
+        private ByteBuffer buffer = ByteBuffer.allocate(InitBatchSize);
+
+        private boolean closed;
+
+        Batch(String jobId) {
+            this.jobId = jobId;
+        }
+
+        int size() {
+            return buffer.position();
+        }
+
+        void append(StepLogItem item) {
+            int length = item.size();
+            ensure(4 + length);
+            buffer.putInt(length);
+            item.writeTo(buffer);
+        }
+
+        void drain() {
+            frames.add(Arrays.copyOf(buffer.array(), buffer.position()));
+            buffer.clear();
+        }
+
+        private void ensure(int length) {
+            if (buffer.remaining() >= length) {
+                return;
+            }
+
+            int capacity = Math.max(buffer.capacity() * 2, buffer.position() + length);
+            ByteBuffer bigger = ByteBuffer.allocate(capacity);
+            buffer.flip();
+            bigger.put(buffer);
+            buffer = bigger;
+        }
+    }
+}
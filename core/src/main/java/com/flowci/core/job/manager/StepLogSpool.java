@@ -0,0 +1,58 @@
+package com.flowci.core.job.manager;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Append only, block compressed step log files on local disk
+ */
+public interface StepLogSpool {
+
+    /**
+     * Register step to be spooled under the flow dir, files are created on the first block written
+     */
+    void open(String flowId, String stepId);
+
+    /**
+     * Append log to step
+     *
+     * @return false if step not opened
+     */
+    boolean append(String stepId, byte[] content);
+
+    /**
+     * Write pending log of step and unregister it
+     */
+    void close(String stepId);
+
+    /**
+     * Write pending logs of all steps, release files of steps without log for a while,
+     * and close steps without log for a long time
+     */
+    void flush();
+
+    /**
+     * Write pending logs and close all steps
+     */
+    void closeAll();
+
+    /**
+     * Uncompressed length of step log, -1 if not spooled
+     */
+    long length(String flowId, String stepId) throws IOException;
+
+    /**
+     * Uncompressed log of step from offset with length
+     */
+    InputStream read(String flowId, String stepId, long from, long length) throws IOException;
+
+    /**
+     * Unregister step without writing pending log and delete its files
+     */
+    void delete(String flowId, String stepId) throws IOException;
+
+    /**
+     * Delete spooled logs of flow
+     */
+    void delete(String flowId) throws IOException;
+}
@@ -0,0 +1,458 @@
+package com.flowci.core.job.manager;
+
+import com.google.common.io.ByteStreams;
+import lombok.AllArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.util.FileSystemUtils;
+
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Each step has two files in the flow dir
+ * - {step id}.log.gz: gzip member per block, the file itself is a valid multi member gzip file
+ * - {step id}.log.idx: [8 bytes raw end][8 bytes data end] per block
+ * <p>
+ * Data is written before index, the data after the last indexed block will be truncated on reopen
+ * <p>
+ * The pending log not written as block yet is read from memory, so that reading does not write small blocks
+ */
+@Log4j2
+public class StepLogSpoolImpl implements StepLogSpool {
+
+    private static final String DataSuffix = ".log.gz";
+
+    private static final String IndexSuffix = ".log.idx";
+
+    private static final int IndexEntrySize = 16;
+
+    private static final long IdleMillis = 60 * 1000;
+
+    private static final long ExpireMillis = 10 * 60 * 1000;
+
+    private final Map<String, Writer> writers = new ConcurrentHashMap<>();
+
+    private final Path dir;
+
+    private final int blockSize;
+
+    public StepLogSpoolImpl(Path dir, int blockSize) {
+        this.dir = dir;
+        this.blockSize = blockSize;
+    }
+
+    @Override
+    public void open(String flowId, String stepId) {
+        writers.computeIfAbsent(stepId, k -> new Writer(flowDir(flowId), stepId));
+    }
+
+    @Override
+    public boolean append(String stepId, byte[] content) {
+        Writer writer = writers.get(stepId);
+        if (writer == null) {
+            return false;
+        }
+
+        try {
+            return writer.append(content);
+        } catch (IOException e) {
+            log.warn("Unable to spool log of step {}: {}", stepId, e.getMessage());
+            return true;
+        }
+    }
+
+    @Override
+    public void close(String stepId) {
+        Writer writer = writers.remove(stepId);
+        if (writer != null) {
+            writer.close();
+        }
+    }
+
+    @Override
+    @Scheduled(fixedDelay = 1000 * 5)
+    public void flush() {
+        long now = System.currentTimeMillis();
+
+        for (Writer writer : writers.values()) {
+            long idle = now - writer.lastAppendAt;
+
+            if (idle > ExpireMillis) {
+                writers.remove(writer.stepId, writer);
+                writer.close();
+                continue;
+            }
+
+            try {
+                if (idle > IdleMillis) {
+                    writer.release();
+                    continue;
+                }
+
+                writer.flush();
+            } catch (IOException e) {
+                log.warn("Unable to spool log of step {}: {}", writer.stepId, e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    @PreDestroy
+    public void closeAll() {
+        for (Writer writer : writers.values()) {
+            writers.remove(writer.stepId, writer);
+            writer.close();
+        }
+    }
+
+    @Override
+    public long length(String flowId, String stepId) throws IOException {
+        Tail tail = tailOf(stepId);
+        Path index = flowDir(flowId).resolve(stepId + IndexSuffix);
+
+        if (!Files.exists(index)) {
+            return tail == null || tail.pending.length == 0 ? -1 : tail.pending.length;
+        }
+
+        long[] entries = readIndex(index);
+        return blocksEnd(entries, tail) + (tail == null ? 0 : tail.pending.length);
+    }
+
+    @Override
+    public InputStream read(String flowId, String stepId, long from, long length) throws IOException {
+        Tail tail = tailOf(stepId);
+        byte[] pending = tail == null ? new byte[0] : tail.pending;
+
+        Path flowDir = flowDir(flowId);
+        Path index = flowDir.resolve(stepId + IndexSuffix);
+        long[] entries = Files.exists(index) ? readIndex(index) : new long[0];
+
+        // blocks written after the tail taken are read from the pending log
+        long end = blocksEnd(entries, tail);
+        int numOfBlocks = 0;
+        while (numOfBlocks < entries.length / 2 && entries[numOfBlocks * 2] <= end) {
+            numOfBlocks++;
+        }
+
+        if (from >= end) {
+            int offset = (int) Math.min(from - end, pending.length);
+            return ByteStreams.limit(new ByteArrayInputStream(pending, offset, pending.length - offset), length);
+        }
+
+        // the first block with raw end after the offset
+        int block = 0;
+        while (entries[block * 2] <= from) {
+            block++;
+        }
+
+        FileChannel channel = FileChannel.open(flowDir.resolve(stepId + DataSuffix), StandardOpenOption.READ);
+        InputStream stream = new BlockInputStream(channel, Arrays.copyOf(entries, numOfBlocks * 2), block);
+
+        long blockRawStart = block == 0 ? 0 : entries[(block - 1) * 2];
+        ByteStreams.skipFully(stream, from - blockRawStart);
+        return ByteStreams.limit(new SequenceInputStream(stream, new ByteArrayInputStream(pending)), length);
+    }
+
+    @Override
+    public void delete(String flowId, String stepId) throws IOException {
+        Writer writer = writers.remove(stepId);
+        if (writer != null) {
+            writer.discard();
+        }
+
+        Path flowDir = flowDir(flowId);
+        Files.deleteIfExists(flowDir.resolve(stepId + DataSuffix));
+        Files.deleteIfExists(flowDir.resolve(stepId + IndexSuffix));
+    }
+
+    @Override
+    public void delete(String flowId) throws IOException {
+        FileSystemUtils.deleteRecursively(flowDir(flowId));
+    }
+
+    private Path flowDir(String flowId) {
+        return Paths.get(dir.toString(), flowId);
+    }
+
+    private Tail tailOf(String stepId) throws IOException {
+        Writer writer = writers.get(stepId);
+        return writer == null ? null : writer.tail();
+    }
+
+    /**
+     * Raw end of the written blocks, which is followed by the pending log of tail
+     */
+    private static long blocksEnd(long[] entries, Tail tail) {
+        if (tail != null) {
+            return tail.rawEnd;
+        }
+        return entries.length == 0 ? 0 : entries[entries.length - 2];
+    }
+
+    /**
+     * Index as [raw end, data end, ...] of complete entries
+     */
+    private static long[] readIndex(Path index) throws IOException {
+        byte[] bytes = Files.readAllBytes(index);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+
+        long[] entries = new long[bytes.length / IndexEntrySize * 2];
+        for (int i = 0; i < entries.length; i++) {
+            entries[i] = buffer.getLong();
+        }
+        return entries;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private class Writer {
+
+        private final Path flowDir;
+
+        private final String stepId;
+
+        private final ByteArrayOutputStream pending = new ByteArrayOutputStream(blockSize);
+
+        private final ByteArrayOutputStream compressed = new ByteArrayOutputStream(blockSize / 4);
+
+        private volatile long lastAppendAt = System.currentTimeMillis();
+
+        private FileChannel data;
+
+        private FileChannel index;
+
+        private long rawEnd;
+
+        private long dataEnd;
+
+        // raw end is loaded from index once the files opened
+        private boolean loaded;
+
+        private boolean closed;
+
+        Writer(Path flowDir, String stepId) {
+            this.flowDir = flowDir;
+            this.stepId = stepId;
+        }
+
+        synchronized boolean append(byte[] content) throws IOException {
+            if (closed) {
+                return false;
+            }
+
+            lastAppendAt = System.currentTimeMillis();
+            pending.write(content);
+
+            if (pending.size() >= blockSize) {
+                writeBlock();
+            }
+            return true;
+        }
+
+        synchronized Tail tail() throws IOException {
+            if (!loaded) {
+                Path path = flowDir.resolve(stepId + IndexSuffix);
+                long[] entries = Files.exists(path) ? readIndex(path) : new long[0];
+                return new Tail(blocksEnd(entries, null), pending.toByteArray());
+            }
+            return new Tail(rawEnd, pending.toByteArray());
+        }
+
+        synchronized void flush() throws IOException {
+            if (!closed && pending.size() > 0) {
+                writeBlock();
+            }
+        }
+
+        synchronized void close() {
+            if (closed) {
+                return;
+            }
+
+            try {
+                flush();
+                if (data != null) {
+                    data.force(false);
+                    index.force(false);
+                }
+            } catch (IOException e) {
+                log.warn("Unable to spool log of step {}: {}", stepId, e.getMessage());
+            } finally {
+                closed = true;
+                closeChannels();
+            }
+        }
+
+        synchronized void discard() {
+            closed = true;
+            pending.reset();
+            closeChannels();
+        }
+
+        /**
+         * Write pending log and close files, the files will be reopened on the next block
+         */
+        synchronized void release() throws IOException {
+            flush();
+            if (closed || data == null) {
+                return;
+            }
+
+            data.force(false);
+            index.force(false);
+            closeChannels();
+            data = null;
+            index = null;
+        }
+
+        private void writeBlock() throws IOException {
+            if (data == null) {
+                openChannels();
+            }
+
+            compressed.reset();
+            try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                pending.writeTo(gzip);
+            }
+
+            writeFully(data, ByteBuffer.wrap(compressed.toByteArray()));
+            rawEnd += pending.size();
+            dataEnd += compressed.size();
+            pending.reset();
+
+            ByteBuffer entry = ByteBuffer.allocate(IndexEntrySize);
+            entry.putLong(rawEnd).putLong(dataEnd).flip();
+            writeFully(index, entry);
+        }
+
+        private void openChannels() throws IOException {
+            Files.createDirectories(flowDir);
+
+            data = FileChannel.open(flowDir.resolve(stepId + DataSuffix),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            index = FileChannel.open(flowDir.resolve(stepId + IndexSuffix),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.READ);
+
+            // continue from the last complete block if reopened
+            long indexSize = index.size() / IndexEntrySize * IndexEntrySize;
+            if (indexSize > 0) {
+                ByteBuffer last = ByteBuffer.allocate(IndexEntrySize);
+                index.read(last, indexSize - IndexEntrySize);
+                last.flip();
+                rawEnd = last.getLong();
+                dataEnd = last.getLong();
+            }
+
+            index.truncate(indexSize).position(indexSize);
+            data.truncate(dataEnd).position(dataEnd);
+            loaded = true;
+        }
+
+        private void closeChannels() {
+            try {
+                if (data != null) {
+                    data.close();
+                    index.close();
+                }
+            } catch (IOException ignore) {
+            }
+        }
+    }
+
+    /**
+     * Pending log of writer and the raw end of written blocks before it
+     */
+    @AllArgsConstructor
+    private static class Tail {
+
+        private final long rawEnd;
+
+        private final byte[] pending;
+    }
+
+    /**
+     * Decompress blocks one by one from the start block to the last indexed block
+     */
+    private static class BlockInputStream extends InputStream {
+
+        private final FileChannel channel;
+
+        private final long[] entries;
+
+        private int next;
+
+        private InputStream current = new ByteArrayInputStream(new byte[0]);
+
+        BlockInputStream(FileChannel channel, long[] entries, int start) {
+            this.channel = channel;
+            this.entries = entries;
+            this.next = start;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int n = read(single, 0, 1);
+            return n == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            while (true) {
+                int n = current.read(b, off, len);
+                if (n != -1) {
+                    return n;
+                }
+
+                if (!nextBlock()) {
+                    return -1;
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+
+        private boolean nextBlock() throws IOException {
+            if (next * 2 >= entries.length) {
+                return false;
+            }
+
+            long start = next == 0 ? 0 : entries[(next - 1) * 2 + 1];
+            long end = entries[next * 2 + 1];
+            next++;
+
+            ByteBuffer buffer = ByteBuffer.allocate((int) (end - start));
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, start + buffer.position()) == -1) {
+                    throw new IOException("Unexpected end of spooled log");
+                }
+            }
+
+            current = new GZIPInputStream(new ByteArrayInputStream(buffer.array()));
+            return true;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.flowci.core.job.manager;
+
+import com.flowci.core.agent.domain.Agent;
+import com.flowci.core.job.domain.WaitingStep;
+
+import java.util.Optional;
+
+/**
+ * Index of steps waiting for agent, grouped by selector and ordered by job priority and build number
+ */
+public interface WaitingStepQueue {
+
+    /**
+     * Add step to queue of all instances
+     */
+    void add(WaitingStep step);
+
+    /**
+     * Remove step from queue of all instances
+     */
+    void remove(String jobId, String nodePath);
+
+    /**
+     * Find the top step that can be run by the agent from local queue
+     */
+    Optional<WaitingStep> peek(Agent agent);
+
+    /**
+     * Find and remove the top step that can be run by the agent from local queue
+     */
+    Optional<WaitingStep> poll(Agent agent);
+
+    /**
+     * Put the polled step back to local queue if it cannot be dispatched
+     */
+    void putBack(WaitingStep step);
+
+    int size();
+}
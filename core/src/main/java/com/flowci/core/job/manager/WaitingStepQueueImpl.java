@@ -0,0 +1,113 @@
+package com.flowci.core.job.manager;
+
+import com.flowci.core.agent.domain.Agent;
+import com.flowci.core.common.manager.SpringEventManager;
+import com.flowci.core.job.domain.WaitingStep;
+import com.flowci.core.job.event.WaitingStepEvent;
+import com.flowci.tree.Selector;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeSet;
+
+@Log4j2
+@Component
+public class WaitingStepQueueImpl implements WaitingStepQueue {
+
+    // selector : steps ordered by priority
+    private final Map<Selector, TreeSet<WaitingStep>> queues = new HashMap<>();
+
+    // step (job id and node path) : step in queue
+    private final Map<WaitingStep, WaitingStep> index = new HashMap<>();
+
+    @Autowired
+    private SpringEventManager eventManager;
+
+    @Override
+    public void add(WaitingStep step) {
+        eventManager.publish(new WaitingStepEvent(this, step, true));
+    }
+
+    @Override
+    public void remove(String jobId, String nodePath) {
+        WaitingStep step = new WaitingStep();
+        step.setJobId(jobId);
+        step.setNodePath(nodePath);
+        eventManager.publish(new WaitingStepEvent(this, step, false));
+    }
+
+    @Override
+    public synchronized Optional<WaitingStep> peek(Agent agent) {
+        TreeSet<WaitingStep> top = top(agent);
+        return top == null ? Optional.empty() : Optional.of(top.first());
+    }
+
+    @Override
+    public synchronized Optional<WaitingStep> poll(Agent agent) {
+        TreeSet<WaitingStep> top = top(agent);
+        if (top == null) {
+            return Optional.empty();
+        }
+
+        WaitingStep step = top.pollFirst();
+        index.remove(step);
+        return Optional.of(step);
+    }
+
+    @Override
+    public synchronized void putBack(WaitingStep step) {
+        removeLocal(step);
+        queues.computeIfAbsent(step.getSelector(), s -> new TreeSet<>()).add(step);
+        index.put(step, step);
+    }
+
+    @Override
+    public synchronized int size() {
+        return index.size();
+    }
+
+    @EventListener
+    public void onWaitingStepChanged(WaitingStepEvent event) {
+        WaitingStep step = event.getStep();
+
+        if (event.isAdded()) {
+            putBack(step);
+            log.debug("Step {} of job {} is waiting for agent", step.getNodePath(), step.getJobId());
+            return;
+        }
+
+        removeLocal(step);
+    }
+
+    /**
+     * Queue of selector matched by the agent with the top step
+     */
+    private TreeSet<WaitingStep> top(Agent agent) {
+        TreeSet<WaitingStep> top = null;
+
+        for (Map.Entry<Selector, TreeSet<WaitingStep>> entry : queues.entrySet()) {
+            TreeSet<WaitingStep> queue = entry.getValue();
+            if (queue.isEmpty() || !agent.match(entry.getKey())) {
+                continue;
+            }
+
+            if (top == null || queue.first().compareTo(top.first()) < 0) {
+                top = queue;
+            }
+        }
+
+        return top;
+    }
+
+    private synchronized void removeLocal(WaitingStep step) {
+        WaitingStep existed = index.remove(step);
+        if (existed != null) {
+            queues.get(existed.getSelector()).remove(existed);
+        }
+    }
+}
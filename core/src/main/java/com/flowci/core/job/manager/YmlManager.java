@@ -26,8 +26,15 @@ import com.flowci.tree.NodeTree;
  */
 public interface YmlManager {
 
+    /**
+     * Parse yml to root node, the node is shared for the same yml content, DO NOT modify it
+     */
     FlowNode parse(String yml);
 
+    /**
+     * Parse yml to node tree, the tree is shared for the same yml content, DO NOT modify it
+     */
+    NodeTree parseTree(String yml);
 
     JobYml get(Job job);
 
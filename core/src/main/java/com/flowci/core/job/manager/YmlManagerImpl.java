@@ -22,12 +22,15 @@ import com.flowci.core.job.domain.JobYml;
 import com.flowci.exception.NotFoundException;
 import com.flowci.tree.FlowNode;
 import com.flowci.tree.NodeTree;
+import com.flowci.tree.NodeTreeCodec;
 import com.flowci.tree.YmlParser;
 import com.github.benmanes.caffeine.cache.Cache;
+import com.google.common.hash.Hashing;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Optional;
 
 /**
@@ -40,12 +43,21 @@ public class YmlManagerImpl implements YmlManager {
     @Autowired
     private Cache<String, NodeTree> jobTreeCache;
 
+    @Autowired
+    private Cache<String, NodeTree> ymlTreeCache;
+
     @Autowired
     private JobYmlDao jobYmlDao;
 
     @Override
     public FlowNode parse(String yml) {
-        return YmlParser.load(yml);
+        return parseTree(yml).getRoot();
+    }
+
+    @Override
+    public NodeTree parseTree(String yml) {
+        String hash = Hashing.sha256().hashString(yml, StandardCharsets.UTF_8).toString();
+        return ymlTreeCache.get(hash, key -> NodeTree.create(YmlParser.load(yml)));
     }
 
     @Override
@@ -62,6 +74,7 @@ public class YmlManagerImpl implements YmlManager {
     @Override
     public JobYml create(Job job, String yml) {
         JobYml jobYml = new JobYml(job.getId(), job.getFlowName(), yml);
+        jobYml.setTree(NodeTreeCodec.encode(parseTree(yml)));
         return jobYmlDao.insert(jobYml);
     }
 
@@ -75,8 +88,16 @@ public class YmlManagerImpl implements YmlManager {
         return jobTreeCache.get(jobId, s -> {
             log.debug("Cache tree for job: {}", jobId);
             JobYml yml = jobYmlDao.findById(jobId).get();
-            FlowNode root = YmlParser.load(yml.getRaw());
-            return NodeTree.create(root);
+
+            if (yml.hasTree()) {
+                try {
+                    return NodeTreeCodec.decode(yml.getTree());
+                } catch (RuntimeException e) {
+                    log.warn("Unable to decode tree for job {}, parse from yml: {}", jobId, e.getMessage());
+                }
+            }
+
+            return parseTree(yml.getRaw());
         });
     }
 
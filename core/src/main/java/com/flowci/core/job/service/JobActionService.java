@@ -3,19 +3,21 @@ package com.flowci.core.job.service;
 import com.flowci.core.agent.domain.ShellOut;
 import com.flowci.exception.CIException;
 
+import java.util.concurrent.CompletableFuture;
+
 public interface JobActionService {
 
-    void toLoading(String jobId);
+    CompletableFuture<Void> toLoading(String jobId);
 
-    void toCreated(String jobId, String yml);
+    CompletableFuture<Void> toCreated(String jobId, String yml);
 
-    void toStart(String jobId);
+    CompletableFuture<Void> toStart(String jobId);
 
-    void toRun(String jobId);
+    CompletableFuture<Void> toRun(String jobId);
 
-    void toContinue(String jobId, ShellOut shellOut);
+    CompletableFuture<Void> toContinue(String jobId, ShellOut shellOut);
 
-    void toCancelled(String jobId, CIException exception);
+    CompletableFuture<Void> toCancelled(String jobId, CIException exception);
 
-    void toTimeout(String jobId);
+    CompletableFuture<Void> toTimeout(String jobId);
 }
@@ -19,9 +19,10 @@ package com.flowci.core.job.service;
 import com.flowci.core.agent.domain.*;
 import com.flowci.core.agent.event.IdleAgentEvent;
 import com.flowci.core.agent.service.AgentService;
+import com.flowci.core.common.config.AppProperties;
 import com.flowci.core.common.domain.Variables;
 import com.flowci.core.common.git.GitClient;
-import com.flowci.core.common.helper.ThreadHelper;
+import com.flowci.core.common.helper.CacheHelper;
 import com.flowci.core.common.manager.ConditionManager;
 import com.flowci.core.common.manager.SpringEventManager;
 import com.flowci.core.common.rabbit.RabbitOperations;
@@ -29,15 +30,20 @@ import com.flowci.core.job.dao.JobAgentDao;
 import com.flowci.core.job.dao.JobDao;
 import com.flowci.core.job.dao.JobPriorityDao;
 import com.flowci.core.job.domain.*;
+import com.flowci.core.job.event.JobActionEvent;
 import com.flowci.core.job.event.JobReceivedEvent;
 import com.flowci.core.job.event.JobStatusChangeEvent;
 import com.flowci.core.job.manager.CmdManager;
+import com.flowci.core.job.manager.JobOwnerManager;
+import com.flowci.core.job.manager.JobPriorityManager;
+import com.flowci.core.job.manager.WaitingStepQueue;
 import com.flowci.core.job.manager.YmlManager;
 import com.flowci.core.job.util.Errors;
 import com.flowci.core.job.util.StatusHelper;
 import com.flowci.core.secret.domain.Secret;
 import com.flowci.core.secret.service.SecretService;
 import com.flowci.domain.SimpleSecret;
+import com.flowci.domain.LayeredVars;
 import com.flowci.domain.Vars;
 import com.flowci.exception.CIException;
 import com.flowci.exception.NotAvailableException;
@@ -47,6 +53,7 @@ import com.flowci.tree.*;
 import com.flowci.util.ObjectsHelper;
 import com.flowci.util.StringHelper;
 import com.flowci.zookeeper.InterLock;
+import com.github.benmanes.caffeine.cache.Cache;
 import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
@@ -62,6 +69,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Consumer;
 
 import static com.flowci.core.job.domain.Executed.Status.RUNNING;
@@ -113,7 +121,8 @@ public class JobActionServiceImpl implements JobActionService {
     // cancelling
     private static final Transition CancellingToCancelled = new Transition(Cancelling, Cancelled);
 
-    private static final long RetryInterval = 10 * 1000; // 10 seconds
+    // job id : owner epoch when the runtime state loaded
+    private final Cache<String, Long> stateEpochs = CacheHelper.createLocalCache(1000, 3600);
 
     @Autowired
     private Path repoDir;
@@ -121,12 +130,24 @@ public class JobActionServiceImpl implements JobActionService {
     @Autowired
     private Path tmpDir;
 
+    @Autowired
+    private AppProperties.Job jobProperties;
+
     @Autowired
     private JobDao jobDao;
 
     @Autowired
     private JobPriorityDao jobPriorityDao;
 
+    @Autowired
+    private JobPriorityManager jobPriorityManager;
+
+    @Autowired
+    private WaitingStepQueue waitingStepQueue;
+
+    @Autowired
+    private JobOwnerManager jobOwnerManager;
+
     @Autowired
     private JobAgentDao jobAgentDao;
 
@@ -178,109 +199,282 @@ public class JobActionServiceImpl implements JobActionService {
         }
     }
 
+    /**
+     * Load steps waiting for agent to local waiting step queue
+     */
+    @PostConstruct
+    public void loadWaitingSteps() {
+        for (Step step : stepService.list(WAITING_AGENT)) {
+            try {
+                Optional<Job> optional = jobDao.findById(step.getJobId());
+                if (!optional.isPresent() || !optional.get().isRunning()) {
+                    continue;
+                }
+
+                Job job = optional.get();
+                NodeTree tree = ymlManager.getTree(job);
+                Selector selector = tree.get(step.getNodePath()).getParent(FlowNode.class).fetchSelector();
+                waitingStepQueue.putBack(new WaitingStep(job, step, selector));
+            } catch (Exception e) {
+                log.warn("Unable to load waiting step {}: {}", step.getId(), e.getMessage());
+            }
+        }
+    }
+
     @EventListener
     public void onIdleAgent(IdleAgentEvent event) {
         String agentId = event.getAgentId();
         event.setFetched(true);
 
-        List<JobKey> keys = jobPriorityDao.findAllMinBuildNumber();
-        // TODO: flow priority
+        Agent agent = agentService.get(agentId);
+        Optional<WaitingStep> next;
 
-        for (JobKey key : keys) {
-            if (key.getBuildNumber() == null) {
-                continue;
+        while ((next = waitingStepQueue.peek(agent)).isPresent()) {
+            WaitingStep waiting = next.get();
+
+            // the owner assigns the agent to the top step, and pushes the agent back if not used
+            if (!jobOwnerManager.isOwner(waiting.getJobId())) {
+                forwardIdleAgent(agentId, waiting.getJobId());
+                event.setFetched(false);
+                return;
             }
 
-            Optional<Job> optional = jobDao.findByKey(key.toString());
-            if (!optional.isPresent()) {
-                continue;
+            next = waitingStepQueue.poll(agent);
+            if (!next.isPresent()) {
+                return;
             }
 
-            Job job = optional.get();
-            if (!job.isRunning()) {
+            waiting = next.get();
+            if (!jobOwnerManager.isOwner(waiting.getJobId())) {
+                waitingStepQueue.putBack(waiting);
                 continue;
             }
 
-            Optional<InterLock> lock = jobService.lock(job.getId());
-            if (!lock.isPresent()) {
-                toFailureStatus(job, new CIException("Fail to lock job"));
-                continue;
+            if (assignIdleAgent(event, waiting)) {
+                return;
             }
+        }
+    }
 
-            try {
-                NodeTree tree = ymlManager.getTree(job);
-                boolean isAssigned = assignAgentToWaitingStep(agentId, job, tree, true);
+    /**
+     * Send idle agent to the owner of job, the agent is pushed back if failed
+     */
+    private void forwardIdleAgent(String agentId, String jobId) {
+        JobActionEvent action = new JobActionEvent(this, jobId, JobActionEvent.ACTION_ASSIGN_AGENT);
+        action.setAgentId(agentId);
+
+        jobOwnerManager.forward(action).whenComplete((ignore, e) -> {
+            if (e != null) {
+                log.warn("Unable to assign idle agent {} on owner of job {}: {}", agentId, jobId, e.getMessage());
+                agentService.pushBackIdle(agentId);
+            }
+        });
+    }
 
-                if (isAssigned) {
-                    event.setFetched(false); // set to false since agent has been assigned
-                    return;
-                }
-            } catch (Exception e) {
-                toFailureStatus(job, new CIException(e.getMessage()));
-            } finally {
-                jobService.unlock(lock.get(), job.getId());
+    /**
+     * Try to assign idle agent to waiting step
+     *
+     * @return true if no more waiting step should be polled for the agent
+     */
+    private boolean assignIdleAgent(IdleAgentEvent event, WaitingStep waiting) {
+        String agentId = event.getAgentId();
+
+        Optional<Job> optional = jobDao.findById(waiting.getJobId());
+        if (!optional.isPresent()) {
+            return false;
+        }
+
+        Job job = optional.get();
+        if (!job.isRunning()) {
+            return false;
+        }
+
+        Optional<InterLock> lock = jobService.lock(job.getId());
+        if (!lock.isPresent()) {
+            toFailureStatus(job, new CIException("Fail to lock job"));
+            return false;
+        }
+
+        try {
+            JobRuntimeState state = reloadStateIfChanged(job);
+            Step step = state.get(waiting.getNodePath());
+            if (step.getStatus() != WAITING_AGENT) {
+                return false;
+            }
+
+            NodeTree tree = ymlManager.getTree(job);
+            if (assignAgentToStep(agentId, job, tree, step, true)) {
+                event.setFetched(false); // set to false since agent has been assigned
+                return true;
             }
+
+            // agent cannot be acquired anymore
+            waitingStepQueue.putBack(waiting);
+            return true;
+        } catch (Exception e) {
+            toFailureStatus(job, new CIException(e.getMessage()));
+            return false;
+        } finally {
+            jobService.unlock(lock.get(), job.getId());
+        }
+    }
+
+    @EventListener
+    public void onJobAction(JobActionEvent event) {
+        CompletableFuture<Void> future;
+        try {
+            future = route(event);
+        } catch (RuntimeException e) {
+            future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+        }
+
+        if (event.isForwarded()) {
+            future.whenComplete((ignore, e) -> jobOwnerManager.reply(event, e));
         }
     }
 
     @Override
-    public void toLoading(String jobId) {
-        onTransition(jobId, Loading, null);
+    public CompletableFuture<Void> toLoading(String jobId) {
+        return route(new JobActionEvent(this, jobId, JobActionEvent.ACTION_TO_LOADING));
     }
 
     @Override
-    public void toCreated(String jobId, String yml) {
-        onTransition(jobId, Created, context -> {
-            context.setYml(yml);
-        });
+    public CompletableFuture<Void> toCreated(String jobId, String yml) {
+        JobActionEvent event = new JobActionEvent(this, jobId, JobActionEvent.ACTION_TO_CREATED);
+        event.setYml(yml);
+        return route(event);
     }
 
     @Override
-    public void toStart(String jobId) {
-        onTransition(jobId, Queued, null);
+    public CompletableFuture<Void> toStart(String jobId) {
+        return route(new JobActionEvent(this, jobId, JobActionEvent.ACTION_TO_START));
     }
 
     @Override
-    public void toRun(String jobId) {
-        onTransition(jobId, Running, null);
+    public CompletableFuture<Void> toRun(String jobId) {
+        return route(new JobActionEvent(this, jobId, JobActionEvent.ACTION_TO_RUN));
     }
 
     @Override
-    public void toContinue(String jobId, ShellOut so) {
-        onTransition(jobId, Running, c -> {
-            Step step = stepService.get(so.getId());
-            step.setFrom(so);
-            stepService.resultUpdate(step);
-            log.info("[Callback]: {}-{} = {}", step.getJobId(), step.getNodePath(), step.getStatus());
-
-            c.setStep(step);
-            Job job = c.getJob();
-            log.debug("---- Job Status {} {} {} {}", job.isOnPostSteps(), step.getNodePath(), job.getStatus(), job.getStatusFromContext());
-
-            if (job.isCancelling()) {
-                c.setTo(Cancelled);
-            }
-        });
+    public CompletableFuture<Void> toContinue(String jobId, ShellOut so) {
+        JobActionEvent event = new JobActionEvent(this, jobId, JobActionEvent.ACTION_TO_CONTINUE);
+        event.setShellOut(so);
+        return route(event);
     }
 
     @Override
-    public void toCancelled(String jobId, CIException exception) {
-        onTransition(jobId, Cancelled, context -> {
-            context.setError(exception);
+    public CompletableFuture<Void> toCancelled(String jobId, CIException exception) {
+        JobActionEvent event = new JobActionEvent(this, jobId, JobActionEvent.ACTION_TO_CANCEL);
+        ObjectsHelper.ifNotNull(exception, e -> event.setError(e.getMessage()));
+        return route(event);
+    }
 
-            Job job = context.getJob();
-            Set<String> currentPath = job.getCurrentPath();
+    @Override
+    public CompletableFuture<Void> toTimeout(String jobId) {
+        return route(new JobActionEvent(this, jobId, JobActionEvent.ACTION_TO_TIMEOUT));
+    }
 
-            if (!currentPath.isEmpty()) {
-                String nodePath = currentPath.iterator().next();
-                context.setStep(stepService.get(job.getId(), nodePath));
-            }
-        });
+    /**
+     * Execute action if job owned by current instance, otherwise forward to the owner
+     * and complete once the owner replied
+     */
+    private CompletableFuture<Void> route(JobActionEvent event) {
+        if (!event.isForwarded() && !jobOwnerManager.isOwner(event.getJobId())) {
+            return jobOwnerManager.forward(event);
+        }
+
+        return execute(event);
     }
 
-    @Override
-    public void toTimeout(String jobId) {
-        onTransition(jobId, Timeout, null);
+    private CompletableFuture<Void> execute(JobActionEvent event) {
+        String jobId = event.getJobId();
+
+        switch (event.getAction()) {
+            case JobActionEvent.ACTION_TO_LOADING:
+                return onTransition(jobId, Loading, null);
+
+            case JobActionEvent.ACTION_TO_CREATED:
+                return onTransition(jobId, Created, context -> {
+                    context.setYml(event.getYml());
+                });
+
+            case JobActionEvent.ACTION_TO_START:
+                return onTransition(jobId, Queued, null);
+
+            case JobActionEvent.ACTION_TO_RUN:
+                return onTransition(jobId, Running, context -> skipIfUnexpected(context, event));
+
+            case JobActionEvent.ACTION_TO_CONTINUE:
+                return onTransition(jobId, Running, c -> {
+                    ShellOut so = event.getShellOut();
+                    Step step = stepService.get(so.getId());
+                    step.setFrom(so);
+                    stepService.resultUpdate(step);
+                    log.info("[Callback]: {}-{} = {}", step.getJobId(), step.getNodePath(), step.getStatus());
+
+                    c.setStep(step);
+                    Job job = c.getJob();
+                    log.debug("---- Job Status {} {} {} {}", job.isOnPostSteps(), step.getNodePath(), job.getStatus(), job.getStatusFromContext());
+
+                    if (job.isCancelling()) {
+                        c.setTo(Cancelled);
+                    }
+                });
+
+            case JobActionEvent.ACTION_TO_CANCEL:
+                return onTransition(jobId, Cancelled, context -> {
+                    context.setError(toCancelError(event.getError()));
+
+                    Job job = context.getJob();
+                    Set<String> currentPath = job.getCurrentPath();
+
+                    if (!currentPath.isEmpty()) {
+                        String nodePath = currentPath.iterator().next();
+                        context.setStep(stepService.getState(job).get(nodePath));
+                    }
+                });
+
+            case JobActionEvent.ACTION_TO_TIMEOUT:
+                return onTransition(jobId, Timeout, context -> skipIfUnexpected(context, event));
+
+            case JobActionEvent.ACTION_ASSIGN_AGENT:
+                IdleAgentEvent idle = new IdleAgentEvent(this, event.getAgentId());
+                onIdleAgent(idle);
+                if (idle.getFetched()) {
+                    agentService.pushBackIdle(event.getAgentId());
+                }
+                return CompletableFuture.completedFuture(null);
+
+            default:
+                log.warn("Unsupported job action {} of {}", event.getAction(), jobId);
+                return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    /**
+     * Skip the action if job is not in the expected status of action
+     */
+    private static void skipIfUnexpected(JobSmContext context, JobActionEvent event) {
+        Job.Status expected = event.getExpected();
+        if (expected != null && context.getJob().getStatus() != expected) {
+            context.setSkip(true);
+        }
+    }
+
+    /**
+     * Error of cancel action is transferred as message, keep the AgentOffline instance since it's checked by reference
+     */
+    private static CIException toCancelError(String message) {
+        if (message == null) {
+            return null;
+        }
+
+        if (message.equals(Errors.AgentOffline.getMessage())) {
+            return Errors.AgentOffline;
+        }
+
+        return new StatusException(message);
     }
 
     private void fromPending() {
@@ -407,7 +601,7 @@ public class JobActionServiceImpl implements JobActionService {
                 eventManager.publish(new JobReceivedEvent(this, job));
 
                 jobPriorityDao.addJob(job.getFlowId(), job.getBuildNumber());
-                if (!waitIfJobNotOnTopPriority(context)) {
+                if (!isJobOnTopPriority(context)) {
                     return;
                 }
 
@@ -443,8 +637,9 @@ public class JobActionServiceImpl implements JobActionService {
                 Job job = context.getJob();
 
                 // set current step to exception
+                JobRuntimeState state = stepService.getState(job);
                 for (String path : job.getCurrentPath()) {
-                    Step step = stepService.get(job.getId(), path);
+                    Step step = state.get(path);
                     stepService.toStatus(step, Step.Status.EXCEPTION, null, false);
                 }
             }
@@ -549,11 +744,10 @@ public class JobActionServiceImpl implements JobActionService {
             public void accept(JobSmContext context) throws ScriptException {
                 Job job = context.getJob();
 
-                List<Step> steps = stepService.list(job, Sets.newHashSet(WAITING_AGENT));
-                stepService.toStatus(steps, Step.Status.SKIPPED, null);
+                skipWaitingForAgentSteps(job);
 
                 JobAgent jobAgent = getJobAgent(job.getId());
-                steps = stepService.list(job, Sets.newHashSet(RUNNING));
+                List<Step> steps = stepService.list(job, Sets.newHashSet(RUNNING));
 
                 // no busy agents, run post steps directly if needed
                 if (getBusyAgents(jobAgent, steps).isEmpty()) {
@@ -604,29 +798,29 @@ public class JobActionServiceImpl implements JobActionService {
         return false;
     }
 
-    private boolean waitIfJobNotOnTopPriority(JobSmContext context) {
+    /**
+     * Check job is on top priority of flow, otherwise it will be woken up from JobPriorityManager
+     * when the job before it finished
+     */
+    private boolean isJobOnTopPriority(JobSmContext context) {
         Job job = context.getJob();
 
-        while (true) {
-            if (job.isExpired()) {
-                context.setError(new Exception("time out while queueing"));
-                sm.execute(context.getCurrent(), Timeout, context);
-                return false;
-            }
-
-            if (job.isCancelling() || job.isDone()) {
-                return false;
-            }
+        if (job.isExpired()) {
+            context.setError(new Exception("time out while queueing"));
+            sm.execute(context.getCurrent(), Timeout, context);
+            return false;
+        }
 
-            long topPriorityBuildNumber = jobPriorityDao.findMinBuildNumber(job.getFlowId());
-            if (job.getBuildNumber() <= topPriorityBuildNumber) {
-                return true;
-            }
+        if (job.isCancelling() || job.isDone()) {
+            return false;
+        }
 
-            ThreadHelper.sleep(RetryInterval);
-            job = getJob(job.getId());
-            log.debug("Job {}/{} wait since not on top priority", job.getFlowName(), job.getBuildNumber());
+        if (jobPriorityManager.isOnTop(job)) {
+            return true;
         }
+
+        log.debug("Job {}/{} wait since not on top priority", job.getFlowName(), job.getBuildNumber());
+        return false;
     }
 
     /**
@@ -713,19 +907,7 @@ public class JobActionServiceImpl implements JobActionService {
                 continue;
             }
 
-            Node n = tree.get(waitingForAgentStep.getNodePath());
-            FlowNode f = n.getParent(FlowNode.class);
-            Selector s = f.fetchSelector();
-
-            Optional<Agent> acquired = agentService.acquire(job.getId(), s, agentId, shouldIdle);
-            if (acquired.isPresent()) {
-                Agent agent = acquired.get();
-                AgentProfile profile = agentService.getProfile(agent.getToken());
-                job.addAgentSnapshot(agent, profile);
-                setJobStatusAndSave(job, job.getStatus(), null);
-
-                jobAgentDao.addFlowToAgent(job.getId(), agent.getId(), f.getPathAsString());
-                dispatch(job, n, waitingForAgentStep, agent);
+            if (assignAgentToStep(agentId, job, tree, waitingForAgentStep, shouldIdle)) {
                 return true;
             }
         }
@@ -733,6 +915,26 @@ public class JobActionServiceImpl implements JobActionService {
         return false;
     }
 
+    private boolean assignAgentToStep(String agentId, Job job, NodeTree tree, Step step, boolean shouldIdle) {
+        Node n = tree.get(step.getNodePath());
+        FlowNode f = n.getParent(FlowNode.class);
+        Selector s = f.fetchSelector();
+
+        Optional<Agent> acquired = agentService.acquire(job.getId(), s, agentId, shouldIdle);
+        if (!acquired.isPresent()) {
+            return false;
+        }
+
+        Agent agent = acquired.get();
+        AgentProfile profile = agentService.getProfile(agent.getToken());
+        job.addAgentSnapshot(agent, profile);
+        setJobStatusAndSave(job, job.getStatus(), null);
+
+        jobAgentDao.addFlowToAgent(job.getId(), agent.getId(), f.getPathAsString());
+        dispatch(job, n, step, agent);
+        return true;
+    }
+
     private String releaseAgentFromJob(Job job, Node node, Step step) {
         String agentId = step.getAgentId();
         FlowNode flow = node.getParent(FlowNode.class);
@@ -787,11 +989,19 @@ public class JobActionServiceImpl implements JobActionService {
         job.getContext().merge(root.getEnvironments(), false);
     }
 
-    private void killOngoingSteps(Job job, boolean includePost) {
+    private void skipWaitingForAgentSteps(Job job) {
         List<Step> steps = stepService.list(job, Sets.newHashSet(WAITING_AGENT));
         stepService.toStatus(steps, Step.Status.SKIPPED, null);
 
-        steps = stepService.list(job, Sets.newHashSet(RUNNING));
+        for (Step step : steps) {
+            waitingStepQueue.remove(job.getId(), step.getNodePath());
+        }
+    }
+
+    private void killOngoingSteps(Job job, boolean includePost) {
+        skipWaitingForAgentSteps(job);
+
+        List<Step> steps = stepService.list(job, Sets.newHashSet(RUNNING));
         Iterator<Step> iter = steps.iterator();
 
         while (iter.hasNext()) {
@@ -815,17 +1025,39 @@ public class JobActionServiceImpl implements JobActionService {
         stepService.toStatus(steps, Step.Status.KILLING, null);
     }
 
-    private void onTransition(String jobId, Status to, Consumer<JobSmContext> onContext) {
+    private CompletableFuture<Void> onTransition(String jobId, Status to, Consumer<JobSmContext> onContext) {
+        if (jobProperties.isAsyncTransition()) {
+            CompletableFuture<Void> future = sm.executeAsync(jobId, () -> createContext(jobId, to, onContext));
+            future.whenComplete((ignore, e) -> {
+                if (e != null) {
+                    log.warn("Unable to switch job {} to {}: {}", jobId, to.getName(), e.getMessage());
+                }
+            });
+            return future;
+        }
+
+        JobSmContext context = createContext(jobId, to, onContext);
+        if (context != null) {
+            sm.execute(context);
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Lock job and create state machine context, return null if unable to lock or skipped
+     */
+    private JobSmContext createContext(String jobId, Status to, Consumer<JobSmContext> onContext) {
         Optional<InterLock> lock = jobService.lock(jobId);
 
         if (!lock.isPresent()) {
             Job job = getJob(jobId);
             toFailureStatus(job, new CIException("Fail to lock job"));
-            return;
+            return null;
         }
 
         log.debug("Job {} is locked", jobId);
         Job job = getJob(jobId);
+        reloadStateIfChanged(job);
 
         JobSmContext context = new JobSmContext(jobId);
         context.setLock(lock.get());
@@ -837,7 +1069,30 @@ public class JobActionServiceImpl implements JobActionService {
             onContext.accept(context);
         }
 
-        sm.execute(context);
+        if (context.isSkip()) {
+            log.debug("Job {} to {} is skipped", jobId, to.getName());
+            jobService.unlock(lock.get(), jobId);
+            return null;
+        }
+
+        return context;
+    }
+
+    /**
+     * Steps might be updated from other instance if instances not stable or the owner changed
+     * since last loaded, otherwise the cached state is kept current by step updates on this instance
+     */
+    private JobRuntimeState reloadStateIfChanged(Job job) {
+        long epoch = jobOwnerManager.epoch();
+        Long loaded = stateEpochs.getIfPresent(job.getId());
+
+        if (jobOwnerManager.isStable() && Objects.equals(loaded, epoch)) {
+            return stepService.getState(job);
+        }
+
+        JobRuntimeState state = stepService.reloadState(job);
+        stateEpochs.put(job.getId(), epoch);
+        return state;
     }
 
     private String fetchYamlFromGit(Job job) {
@@ -897,31 +1152,31 @@ public class JobActionServiceImpl implements JobActionService {
      */
     private boolean toNextStep(Job job, Step step) throws ScriptException {
         NodeTree tree = ymlManager.getTree(job);
-        Node node = tree.get(NodePath.create(step.getNodePath())); // current node
+        Node node = tree.get(step.getNodePath()); // current node
 
         List<Node> next = node.getNext();
         if (job.isOnPostSteps()) {
             next = tree.post(step.getNodePath());
         }
 
+        JobRuntimeState state = stepService.getState(job);
+
         if (next.isEmpty()) {
             Collection<Node> ends = Sets.newHashSet(tree.ends());
             ends.remove(node); // do not check current node
 
-            Set<Executed.Status> status = getStepsStatus(job, ends);
-            return !Collections.disjoint(status, Executed.OngoingStatus);
+            return state.any(state.select(ends), Executed.OngoingStatus);
         }
 
         // check prev steps status
-        Collection<Node> prevs = tree.prevs(next, job.isOnPostSteps());
-        Set<Executed.Status> previous = getStepsStatus(job, prevs);
-        boolean hasFailure = !Collections.disjoint(previous, Executed.FailureStatus);
+        BitSet previous = state.select(tree.prevs(next, job.isOnPostSteps()));
+        boolean hasFailure = state.anyFailure(previous);
         if (hasFailure) {
             return false;
         }
 
-        boolean hasOngoing = !Collections.disjoint(previous, Executed.OngoingStatus);
-        boolean hasWaiting = !Collections.disjoint(previous, Executed.WaitingStatus);
+        boolean hasOngoing = state.any(previous, Executed.OngoingStatus);
+        boolean hasWaiting = state.any(previous, Executed.WaitingStatus);
 
         // do not execute next
         if (hasOngoing || hasWaiting) {
@@ -932,34 +1187,15 @@ public class JobActionServiceImpl implements JobActionService {
         return true;
     }
 
-    /**
-     * Get status set from nodes
-     *
-     * @param job
-     * @param nodes
-     * @return
-     */
-    private Set<Executed.Status> getStepsStatus(Job job, Collection<Node> nodes) {
-        Set<Executed.Status> status = new HashSet<>(nodes.size());
-        for (Node node : nodes) {
-            Step step = stepService.get(job.getId(), node.getPathAsString());
-            if (step.isSuccess()) {
-                status.add(Executed.Status.SUCCESS);
-                continue;
-            }
-            status.add(step.getStatus());
-        }
-        return status;
-    }
-
     private void executeJob(Job job, List<Node> nodes) throws ScriptException {
         setJobStatusAndSave(job, job.getStatus(), null);
 
         NodeTree tree = ymlManager.getTree(job);
+        JobRuntimeState state = stepService.getState(job);
 
         for (Node node : nodes) {
             boolean condition = runCondition(job, node);
-            Step step = stepService.get(job.getId(), node.getPathAsString());
+            Step step = state.get(node.getPathAsString());
 
             if (!condition) {
                 setSkipStatusToStep(step);
@@ -978,7 +1214,7 @@ public class JobActionServiceImpl implements JobActionService {
 
             // add dispatchable step
             job.addToCurrentPath(step);
-            jobDao.save(job);
+            jobDao.update(job);
 
             Optional<Agent> optionalFromJob = fetchAgentFromJob(job, node);
             if (optionalFromJob.isPresent()) {
@@ -994,6 +1230,9 @@ public class JobActionServiceImpl implements JobActionService {
             }
 
             stepService.toStatus(step, WAITING_AGENT, null, false);
+
+            Selector selector = node.getParent(FlowNode.class).fetchSelector();
+            waitingStepQueue.add(new WaitingStep(job, step, selector));
         }
     }
 
@@ -1013,11 +1252,15 @@ public class JobActionServiceImpl implements JobActionService {
             return true;
         }
 
-        Vars<String> inputs = node.fetchEnvs().merge(job.getContext());
+        Vars<String> inputs = new LayeredVars(job.getContext(), node.fetchEnvs());
         return conditionManager.run(node.getCondition(), inputs);
     }
 
     private void dispatch(Job job, Node node, Step step, Agent agent) {
+        if (step.getStatus() == WAITING_AGENT) {
+            waitingStepQueue.remove(job.getId(), step.getNodePath());
+        }
+
         step.setAgentId(agent.getId());
         stepService.toStatus(step, RUNNING, null, false);
 
@@ -1063,16 +1306,17 @@ public class JobActionServiceImpl implements JobActionService {
         }
 
         NodeTree tree = ymlManager.getTree(job);
-        List<Node> nextPostSteps = tree.post(step.getNodePath());
+        List<Node> nextPostSteps = new ArrayList<>(tree.post(step.getNodePath()));
         if (nextPostSteps.isEmpty()) {
             return false;
         }
 
         // remove running or finished post steps
+        JobRuntimeState state = stepService.getState(job);
         Iterator<Node> iterator = nextPostSteps.iterator();
         while(iterator.hasNext()) {
             Node postNode = iterator.next();
-            Step postStep = stepService.get(job.getId(), postNode.getPathAsString());
+            Step postStep = state.get(postNode.getPathAsString());
             if (postStep.isOngoing() || postStep.isKilling() || postStep.isFinished()) {
                 iterator.remove();
             }
@@ -1109,7 +1353,7 @@ public class JobActionServiceImpl implements JobActionService {
         if (job.getStatus().getOrder() >= newStatus.getOrder()) {
             // push updated job object as well
             eventManager.publish(new JobStatusChangeEvent(this, job));
-            jobDao.save(job);
+            jobDao.update(job);
             return;
         }
 
@@ -1117,7 +1361,7 @@ public class JobActionServiceImpl implements JobActionService {
         job.setMessage(message);
         job.setStatusToContext(newStatus);
 
-        jobDao.save(job);
+        jobDao.update(job);
         eventManager.publish(new JobStatusChangeEvent(this, job));
         logInfo(job, "status = {}", job.getStatus());
     }
@@ -1174,7 +1418,7 @@ public class JobActionServiceImpl implements JobActionService {
             Throwable error = context.getError();
             String message = error == null ? "" : error.getMessage();
             setJobStatusAndSave(job, context.getTargetToJobStatus(), message);
-            jobPriorityDao.removeJob(job.getFlowId(), job.getBuildNumber());
+            jobPriorityManager.remove(job);
 
             JobAgent agents = getJobAgent(job.getId());
             agentService.release(agents.all());
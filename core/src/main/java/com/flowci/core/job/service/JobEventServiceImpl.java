@@ -28,10 +28,11 @@ import com.flowci.core.common.manager.SpringEventManager;
 import com.flowci.core.flow.event.FlowDeletedEvent;
 import com.flowci.core.job.domain.Job;
 import com.flowci.core.job.event.CreateNewJobEvent;
-import com.flowci.core.job.event.JobActionEvent;
 import com.flowci.core.job.event.TtyStatusUpdateEvent;
 import com.flowci.core.job.manager.YmlManager;
 import com.flowci.core.job.util.Errors;
+import com.flowci.domain.StringVars;
+import com.flowci.domain.Vars;
 import com.flowci.tree.FlowNode;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -75,18 +76,6 @@ public class JobEventServiceImpl implements JobEventService {
         jobService.delete(event.getFlow());
     }
 
-    @EventListener
-    public void onJobAction(JobActionEvent event) {
-        if (event.isToRun()) {
-            jobActionService.toRun(event.getJobId());
-            return;
-        }
-
-        if (event.isToTimeOut()) {
-            jobActionService.toTimeout(event.getJobId());
-        }
-    }
-
     @EventListener
     public void startNewJob(CreateNewJobEvent event) {
         appTaskExecutor.execute(() -> {
@@ -95,8 +84,9 @@ public class JobEventServiceImpl implements JobEventService {
                 boolean canCreateJob = true;
 
                 if (root.hasCondition()) {
-                    root.getEnvironments().merge(event.getInput());
-                    canCreateJob = conditionManager.run(root.getCondition(), root.getEnvironments());
+                    // root node is shared, do not modify it
+                    Vars<String> envs = new StringVars(root.getEnvironments()).merge(event.getInput());
+                    canCreateJob = conditionManager.run(root.getCondition(), envs);
                 }
 
                 if (!canCreateJob) {
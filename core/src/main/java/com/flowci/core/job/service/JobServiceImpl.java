@@ -26,6 +26,7 @@ import com.flowci.core.job.domain.*;
 import com.flowci.core.job.domain.Job.Trigger;
 import com.flowci.core.job.event.JobCreatedEvent;
 import com.flowci.core.job.event.JobDeletedEvent;
+import com.flowci.core.job.manager.JobOwnerManager;
 import com.flowci.core.job.manager.YmlManager;
 import com.flowci.core.user.domain.User;
 import com.flowci.domain.StringVars;
@@ -38,8 +39,11 @@ import com.flowci.tree.FlowNode;
 import com.flowci.util.StringHelper;
 import com.flowci.zookeeper.InterLock;
 import com.flowci.zookeeper.ZookeeperClient;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.google.common.collect.Maps;
 import lombok.extern.log4j.Log4j2;
+import org.apache.curator.framework.recipes.locks.InterProcessLock;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.core.task.TaskExecutor;
@@ -54,6 +58,8 @@ import java.time.Instant;
 import java.util.Date;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
 import static com.flowci.core.trigger.domain.Variables.GIT_AUTHOR;
 import static com.flowci.core.trigger.domain.Variables.GIT_COMMIT_ID;
@@ -69,6 +75,9 @@ public class JobServiceImpl implements JobService {
 
     private static final int DefaultJobLockTimeout = 20; // seconds
 
+    // job id : lock, entry removed when lock not referenced
+    private final Cache<String, ReentrantLock> localLocks = Caffeine.newBuilder().weakValues().build();
+
     //====================================================================
     //        %% Spring injection
     //====================================================================
@@ -119,6 +128,9 @@ public class JobServiceImpl implements JobService {
     @Autowired
     private SettingService settingService;
 
+    @Autowired
+    private JobOwnerManager jobOwnerManager;
+
     @Autowired
     private ZookeeperClient zk;
 
@@ -193,7 +205,8 @@ public class JobServiceImpl implements JobService {
             throw new ArgumentException("YAML config is required to start a job");
         }
 
-        jobActionService.toCreated(job.getId(), yml);
+        // wait for yaml parsed since job returned with created status
+        jobActionService.toCreated(job.getId(), yml).join();
         return get(job.getId());
     }
 
@@ -239,7 +252,7 @@ public class JobServiceImpl implements JobService {
         context.put(GIT_COMMIT_ID, lastCommitId);
         context.put(Variables.Job.TriggerBy, sessionManager.get().getEmail());
         context.merge(root.getEnvironments(), false);
-        jobDao.save(job);
+        jobDao.update(job);
 
         // reset job agent
         jobAgentDao.save(new JobAgent(job.getId(), flow.getId()));
@@ -249,7 +262,7 @@ public class JobServiceImpl implements JobService {
         localTaskService.delete(job);
         ymlManager.delete(job);
 
-        jobActionService.toCreated(job.getId(), yml.getRaw());
+        jobActionService.toCreated(job.getId(), yml.getRaw()).join();
         jobActionService.toStart(job.getId());
         return get(job.getId());
     }
@@ -309,6 +322,29 @@ public class JobServiceImpl implements JobService {
     @Override
     public Optional<InterLock> lock(String jobId) {
         String path = zk.makePath("/job-locks", jobId);
+
+        // job actions only processed on owner instance, lock in memory if instances not changed recently
+        // the ownership is held until unlock, so the job will not be handed over while locked
+        if (jobOwnerManager.enter(jobId)) {
+            LocalLock local = new LocalLock(localLocks.get(jobId, k -> new ReentrantLock()), jobOwnerManager);
+            long start = System.nanoTime();
+            boolean acquired = local.acquire(DefaultJobLockTimeout, TimeUnit.SECONDS);
+            zk.getLockMetrics().recordWait(path, start, acquired);
+
+            if (acquired) {
+                log.debug("Lock: {} (local)", jobId);
+                return Optional.of(new InterLock(path, local));
+            }
+
+            jobOwnerManager.leave();
+            return Optional.empty();
+        }
+
+        // the previous owner might still process the job with local lock
+        if (!jobOwnerManager.awaitHandover(jobId)) {
+            return Optional.empty();
+        }
+
         Optional<InterLock> lock = zk.lock(path, DefaultJobLockTimeout);
         lock.ifPresent(interLock -> log.debug("Lock: {}", jobId));
         return lock;
@@ -408,4 +444,42 @@ public class JobServiceImpl implements JobService {
 
         job.getContext().merge(context);
     }
+
+    private static class LocalLock implements InterProcessLock {
+
+        private final ReentrantLock lock;
+
+        private final JobOwnerManager owner;
+
+        LocalLock(ReentrantLock lock, JobOwnerManager owner) {
+            this.lock = lock;
+            this.owner = owner;
+        }
+
+        @Override
+        public void acquire() {
+            lock.lock();
+        }
+
+        @Override
+        public boolean acquire(long time, TimeUnit unit) {
+            try {
+                return lock.tryLock(time, unit);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        @Override
+        public void release() {
+            lock.unlock();
+            owner.leave();
+        }
+
+        @Override
+        public boolean isAcquiredInThisProcess() {
+            return lock.isLocked();
+        }
+    }
 }
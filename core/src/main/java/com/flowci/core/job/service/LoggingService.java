@@ -16,11 +16,16 @@
 
 package com.flowci.core.job.service;
 
+import com.flowci.core.flow.domain.Flow;
+import com.flowci.core.job.domain.LogHit;
+import com.flowci.core.job.domain.Step;
+import com.flowci.core.job.domain.StepLogChunk;
 import org.springframework.core.io.Resource;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Collection;
+import java.util.List;
 
 /**
  * @author yang
@@ -44,7 +49,27 @@ public interface LoggingService {
     Resource get(String stepId);
 
     /**
-     * Read cached log from step id
+     * Read all cached log from step id
      */
     Collection<byte[]> read(String stepId);
+
+    /**
+     * Read cached log from offset of step, the next offset is in the chunk
+     */
+    StepLogChunk read(String stepId, long fromOffset, int maxBytes);
+
+    /**
+     * Length of log of step, from the uploaded log file or the spooled log if not uploaded, -1 if neither
+     */
+    long length(Step step);
+
+    /**
+     * Read log of step from offset with length, from the uploaded log file or the spooled log if not uploaded
+     */
+    InputStream read(Step step, long from, long length);
+
+    /**
+     * Search step logs of flow in recent days, the line must contains all words of text
+     */
+    List<LogHit> search(Flow flow, String text, int days);
 }
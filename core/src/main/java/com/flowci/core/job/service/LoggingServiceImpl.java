@@ -16,39 +16,54 @@
 
 package com.flowci.core.job.service;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.flowci.core.agent.event.OnShellLogEvent;
 import com.flowci.core.agent.event.OnTTYLogEvent;
-import com.flowci.core.common.helper.CacheHelper;
 import com.flowci.core.common.manager.SocketPushManager;
 import com.flowci.core.common.manager.SpringEventManager;
+import com.flowci.core.common.helper.CacheHelper;
 import com.flowci.core.flow.domain.Flow;
+import com.flowci.core.job.dao.JobDao;
 import com.flowci.core.job.domain.Job;
+import com.flowci.core.job.domain.LogHit;
 import com.flowci.core.job.domain.Step;
+import com.flowci.core.job.domain.StepLogChunk;
 import com.flowci.core.job.domain.StepLogItem;
-import com.flowci.core.job.event.CacheShellLogEvent;
+import com.flowci.core.job.event.JobDeletedEvent;
 import com.flowci.core.job.event.JobStatusChangeEvent;
+import com.flowci.core.job.event.StepLogSavedEvent;
+import com.flowci.core.job.manager.LogIndex;
+import com.flowci.core.job.manager.StepLogBuffer;
+import com.flowci.core.job.manager.StepLogPusher;
+import com.flowci.core.job.manager.StepLogSpool;
 import com.flowci.exception.NotFoundException;
 import com.flowci.store.FileManager;
 import com.flowci.store.Pathable;
 import com.flowci.util.FileHelper;
 import com.github.benmanes.caffeine.cache.Cache;
 import com.google.common.collect.ImmutableList;
+import lombok.AllArgsConstructor;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.event.EventListener;
 import org.springframework.core.io.InputStreamResource;
 import org.springframework.core.io.Resource;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.*;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * @author yang
@@ -67,8 +82,15 @@ public class LoggingServiceImpl implements LoggingService {
 
     private static final Pathable LogPath = () -> "logs";
 
-    // cache current job log
-    private final Cache<String, Map<String, Queue<byte[]>>> logCache = CacheHelper.createLocalCache(50, 3600);
+    private static final int MaxSearchHits = 100;
+
+    // job id : flow id, to open spool without loading step
+    private final Cache<String, String> flowIdOfJob = CacheHelper.createLocalCache(1000, 3600);
+
+    // logs received from agents on this instance, spooled in order by one task at a time
+    private final Queue<PendingLog> pendingLogs = new ConcurrentLinkedQueue<>();
+
+    private final AtomicBoolean spooling = new AtomicBoolean(false);
 
     @Autowired
     private String topicForTtyLogs;
@@ -76,9 +98,6 @@ public class LoggingServiceImpl implements LoggingService {
     @Autowired
     private String topicForLogs;
 
-    @Autowired
-    private ObjectMapper objectMapper;
-
     @Autowired
     private SocketPushManager socketPushManager;
 
@@ -88,15 +107,34 @@ public class LoggingServiceImpl implements LoggingService {
     @Autowired
     private FileManager fileManager;
 
+    @Autowired
+    private JobDao jobDao;
+
     @Autowired
     private StepService stepService;
 
-    @EventListener
-    public void cacheShellLog(CacheShellLogEvent event) {
-        Map<String, Queue<byte[]>> cache = logCache.getIfPresent(event.getJobId());
-        if (cache != null) {
-            cache.get(event.getStepId()).add(event.getBody());
-        }
+    @Autowired
+    private StepLogBuffer stepLogBuffer;
+
+    @Autowired
+    private StepLogPusher stepLogPusher;
+
+    @Autowired
+    private StepLogSpool stepLogSpool;
+
+    @Autowired
+    private LogIndex logIndex;
+
+    @Autowired
+    private TaskExecutor appTaskExecutor;
+
+    /**
+     * Buffer logs from the batched frame pushed to client, which is received on every instance
+     */
+    @PostConstruct
+    public void subscribeShellLog() {
+        String prefix = topicForLogs + "/";
+        socketPushManager.subscribe(prefix, (topic, frame) -> cacheShellLog(topic.substring(prefix.length()), frame));
     }
 
     @EventListener
@@ -109,15 +147,14 @@ public class LoggingServiceImpl implements LoggingService {
     public void sendShellLogToClient(OnShellLogEvent event) {
         String jobId = event.getJobId();
         String stepId = event.getStepId();
-        String b64Log = event.getB64Log();
+        byte[] content = event.getLog();
 
-        try {
-            byte[] bytes = objectMapper.writeValueAsBytes(new StepLogItem(stepId, b64Log));
+        stepLogPusher.push(jobId, new StepLogItem(stepId, content));
 
-            eventManager.publish(new CacheShellLogEvent(this, jobId, stepId, bytes));
-            socketPushManager.push(topicForLogs + "/" + jobId, bytes);
-        } catch (JsonProcessingException e) {
-            log.warn(e);
+        // spool on the instance received the log from agent only, so the file has single writer
+        pendingLogs.add(new PendingLog(jobId, stepId, content));
+        if (!spooling.get()) {
+            appTaskExecutor.execute(this::spool);
         }
     }
 
@@ -126,25 +163,73 @@ public class LoggingServiceImpl implements LoggingService {
         Job job = event.getJob();
 
         if (job.getStatus() == Job.Status.CREATED) {
+            flowIdOfJob.put(job.getId(), job.getFlowId());
+
             List<Step> steps = stepService.list(job);
-            Map<String, Queue<byte[]>> cache = new HashMap<>(steps.size());
+            List<String> stepIds = new ArrayList<>(steps.size());
             for (Step step : steps) {
-                cache.put(step.getId(), new ConcurrentLinkedQueue<>());
+                stepIds.add(step.getId());
+                stepLogSpool.open(job.getFlowId(), step.getId());
             }
-            logCache.put(job.getId(), cache);
+            stepLogBuffer.init(job.getId(), stepIds);
             return;
         }
 
         if (job.isDone()) {
-            logCache.invalidate(job.getId());
+            stepLogPusher.flush(job.getId());
+            stepLogBuffer.release(job.getId());
+            flowIdOfJob.invalidate(job.getId());
+
+            for (Step step : stepService.list(job)) {
+                stepLogSpool.close(step.getId());
+            }
+        }
+    }
+
+    /**
+     * Index saved log on every instance which is able to read it, since the index is local,
+     * and delete the spooled log since the saved log file is served instead
+     */
+    @EventListener
+    public void indexLog(StepLogSavedEvent event) {
+        appTaskExecutor.execute(() -> {
+            Step step = stepService.get(event.getStepId());
+            String fileName = getLogFile(step.getId());
+            Pathable[] logDir = getLogDir(step);
+
+            if (!fileManager.exist(fileName, logDir)) {
+                return;
+            }
+
+            index(step, fileName, logDir);
+
+            try {
+                stepLogSpool.delete(step.getFlowId(), step.getId());
+            } catch (IOException e) {
+                log.warn("Unable to delete spooled log of step {}: {}", step.getId(), e.getMessage());
+            }
+        });
+    }
+
+    @EventListener
+    public void deleteLogs(JobDeletedEvent event) {
+        try {
+            stepLogSpool.delete(event.getFlow().getId());
+            logIndex.delete(event.getFlow().getId());
+        } catch (IOException e) {
+            log.warn("Unable to delete logs of flow {}: {}", event.getFlow().getName(), e.getMessage());
         }
     }
 
     @Override
     public String save(String fileName, InputStream stream) throws IOException {
         String cmdId = FileHelper.getName(fileName);
-        Pathable[] logDir = getLogDir(cmdId);
-        return fileManager.save(fileName, stream, logDir);
+        Step step = stepService.get(cmdId);
+        Pathable[] logDir = getLogDir(step);
+
+        String path = fileManager.save(fileName, stream, logDir);
+        eventManager.publish(new StepLogSavedEvent(this, step.getId()));
+        return path;
     }
 
     @Override
@@ -160,19 +245,108 @@ public class LoggingServiceImpl implements LoggingService {
 
     @Override
     public Collection<byte[]> read(String stepId) {
-        Step step = stepService.get(stepId);
-        Map<String, Queue<byte[]>> cached = logCache.getIfPresent(step.getJobId());
+        return stepLogBuffer.read(stepId, 0, Integer.MAX_VALUE).getItems();
+    }
+
+    @Override
+    public StepLogChunk read(String stepId, long fromOffset, int maxBytes) {
+        return stepLogBuffer.read(stepId, fromOffset, maxBytes);
+    }
 
-        if (Objects.isNull(cached)) {
-            return Collections.emptyList();
+    @Override
+    public long length(Step step) {
+        String fileName = getLogFile(step.getId());
+        Pathable[] logDir = getLogDir(step);
+
+        try {
+            if (fileManager.exist(fileName, logDir)) {
+                return fileManager.size(fileName, logDir);
+            }
+            return stepLogSpool.length(step.getFlowId(), step.getId());
+        } catch (IOException e) {
+            log.warn("Unable to read log of step {}: {}", step.getId(), e.getMessage());
+            return -1;
         }
+    }
 
-        return cached.get(stepId);
+    @Override
+    public InputStream read(Step step, long from, long length) {
+        String fileName = getLogFile(step.getId());
+        Pathable[] logDir = getLogDir(step);
+
+        try {
+            if (fileManager.exist(fileName, logDir)) {
+                return fileManager.read(fileName, from, length, logDir);
+            }
+            return stepLogSpool.read(step.getFlowId(), step.getId(), from, length);
+        } catch (IOException e) {
+            throw new NotFoundException("Log not available");
+        }
+    }
+
+    @Override
+    public List<LogHit> search(Flow flow, String text, int days) {
+        long since = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(days);
+        return logIndex.search(flow.getId(), text, since, MaxSearchHits);
+    }
+
+    private void cacheShellLog(String jobId, byte[] frame) {
+        ByteBuffer buffer = ByteBuffer.wrap(frame);
+
+        while (buffer.hasRemaining()) {
+            StepLogItem item = StepLogItem.read(buffer, buffer.getInt());
+            stepLogBuffer.append(item.getId(), item.getContent());
+        }
+    }
+
+    /**
+     * Write pending logs to spool if no other task is writing, otherwise they will be written by that task
+     */
+    private void spool() {
+        while (!pendingLogs.isEmpty() && spooling.compareAndSet(false, true)) {
+            try {
+                PendingLog pending;
+                while ((pending = pendingLogs.poll()) != null) {
+                    spool(pending);
+                }
+            } finally {
+                spooling.set(false);
+            }
+        }
+    }
+
+    private void spool(PendingLog pending) {
+        if (stepLogSpool.append(pending.stepId, pending.content)) {
+            return;
+        }
+
+        // open spool for step of job not created on this instance, or after restarted
+        String flowId = flowIdOfJob.get(pending.jobId, this::getFlowId);
+        if (flowId == null) {
+            return;
+        }
+
+        stepLogSpool.open(flowId, pending.stepId);
+        stepLogSpool.append(pending.stepId, pending.content);
+    }
+
+    private String getFlowId(String jobId) {
+        return jobDao.findById(jobId).map(Job::getFlowId).orElse(null);
+    }
+
+    private void index(Step step, String fileName, Pathable[] logDir) {
+        try (InputStream stream = fileManager.read(fileName, logDir)) {
+            logIndex.add(step.getFlowId(), step.getBuildNumber(), step.getId(), stream);
+        } catch (IOException e) {
+            log.warn("Unable to index log of step {}: {}", step.getId(), e.getMessage());
+        }
     }
 
     private Pathable[] getLogDir(String cmdId) {
-        Step step = stepService.get(cmdId);
+        return getLogDir(stepService.get(cmdId));
+    }
 
+    private Pathable[] getLogDir(Step step) {
         return new Pathable[]{
                 Flow.path(step.getFlowId()),
                 Job.path(step.getBuildNumber()),
@@ -183,4 +357,14 @@ public class LoggingServiceImpl implements LoggingService {
     private String getLogFile(String cmdId) {
         return cmdId + ".log";
     }
+
+    @AllArgsConstructor
+    private static class PendingLog {
+
+        private final String jobId;
+
+        private final String stepId;
+
+        private final byte[] content;
+    }
 }
@@ -19,6 +19,7 @@ package com.flowci.core.job.service;
 import com.flowci.core.flow.domain.Flow;
 import com.flowci.core.job.domain.Executed;
 import com.flowci.core.job.domain.Job;
+import com.flowci.core.job.domain.JobRuntimeState;
 import com.flowci.core.job.domain.Step;
 
 import java.util.Collection;
@@ -44,6 +45,17 @@ public interface StepService {
      */
     Step get(String id);
 
+    /**
+     * Get in memory step status table of job, load from db if not cached
+     */
+    JobRuntimeState getState(Job job);
+
+    /**
+     * Reload step status table of job from db, it should be called after job locked
+     * since steps might be updated from other instance
+     */
+    JobRuntimeState reloadState(Job job);
+
     /**
      * List step of executed cmd for job
      */
@@ -54,6 +66,11 @@ public interface StepService {
      */
     List<Step> list(Job job, Collection<Executed.Status> status);
 
+    /**
+     * List steps of all jobs by status
+     */
+    List<Step> list(Executed.Status status);
+
     /**
      * List steps by given paths
      */
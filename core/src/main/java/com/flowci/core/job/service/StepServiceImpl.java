@@ -21,6 +21,7 @@ import com.flowci.core.flow.domain.Flow;
 import com.flowci.core.job.dao.ExecutedCmdDao;
 import com.flowci.core.job.domain.Executed;
 import com.flowci.core.job.domain.Job;
+import com.flowci.core.job.domain.JobRuntimeState;
 import com.flowci.core.job.domain.Step;
 import com.flowci.core.job.event.StepUpdateEvent;
 import com.flowci.core.job.manager.YmlManager;
@@ -44,7 +45,7 @@ import java.util.*;
 public class StepServiceImpl implements StepService {
 
     @Autowired
-    private Cache<String, List<Step>> jobStepCache;
+    private Cache<String, JobRuntimeState> jobRuntimeStateCache;
 
     @Autowired
     private ExecutedCmdDao executedCmdDao;
@@ -66,6 +67,7 @@ public class StepServiceImpl implements StepService {
         });
 
         executedCmdDao.insert(steps);
+        jobRuntimeStateCache.put(job.getId(), new JobRuntimeState(job.getId(), tree, steps));
         eventManager.publish(new StepUpdateEvent(this, job.getId(), steps, true));
     }
 
@@ -91,93 +93,92 @@ public class StepServiceImpl implements StepService {
         throw new NotFoundException("Executed cmd {0} not found", id);
     }
 
+    @Override
+    public JobRuntimeState getState(Job job) {
+        return getState(job.getId(), job.getFlowId(), job.getBuildNumber());
+    }
+
+    @Override
+    public JobRuntimeState reloadState(Job job) {
+        jobRuntimeStateCache.invalidate(job.getId());
+        return getState(job);
+    }
+
     @Override
     public List<Step> list(Job job) {
-        return list(job.getId(), job.getFlowId(), job.getBuildNumber());
+        return getState(job).list();
     }
 
     @Override
     public List<Step> list(Job job, Collection<Executed.Status> status) {
-        return executedCmdDao.findAllByJobIdAndStatusIn(job.getId(), status);
+        return getState(job).list(status);
+    }
+
+    @Override
+    public List<Step> list(Executed.Status status) {
+        return executedCmdDao.findAllByStatus(status);
     }
 
     @Override
     public List<Step> listByPath(Job job, Collection<String> paths) {
-        return executedCmdDao.findAllByJobIdAndNodePathIn(job.getId(), paths);
+        return getState(job).list(paths);
     }
 
     @Override
     public String toVarString(Job job, Step current) {
-        StringBuilder builder = new StringBuilder();
-        for (Step step : list(job)) {
-            NodePath path = NodePath.create(step.getNodePath());
-            builder.append(path.name())
-                    .append("=")
-                    .append(step.getStatus().name());
-            builder.append(";");
-
-            if (step.getNodePath().equals(current.getNodePath())) {
-                break;
-            }
-        }
-        return builder.deleteCharAt(builder.length() - 1).toString();
+        return getState(job).toVarString(current.getNodePath());
     }
 
     @Override
     public Collection<Step> toStatus(Collection<Step> steps, Executed.Status status, String err) {
-        String jobId = "";
-        String flowId = "";
-        long buildNumber = 0L;
+        if (steps.isEmpty()) {
+            return steps;
+        }
 
         for (Step step : steps) {
-            jobId = step.getJobId();
-            flowId = step.getFlowId();
-            buildNumber = step.getBuildNumber();
-
             step.setStatus(status);
             step.setError(err);
         }
 
-        if (steps.isEmpty()) {
-            return steps;
-        }
-
-        executedCmdDao.saveAll(steps);
+        Step any = steps.iterator().next();
+        JobRuntimeState state = getState(any.getJobId(), any.getFlowId(), any.getBuildNumber());
 
-        jobStepCache.invalidate(jobId);
-        List<Step> list = list(jobId, flowId, buildNumber);
-        eventManager.publish(new StepUpdateEvent(this, jobId, list, false));
+        writeThrough(state, any.getJobId(), steps);
         return steps;
     }
 
     @Override
     public Step toStatus(Step entity, Executed.Status status, String err, boolean allChildren) {
-        saveStatus(entity, status, err);
+        entity.setStatus(status);
+        entity.setError(err);
+
+        // compute changed steps in memory, and write them in one bulk operation
+        String jobId = entity.getJobId();
+        JobRuntimeState state = getState(jobId, entity.getFlowId(), entity.getBuildNumber());
+
+        List<Step> changed = new LinkedList<>();
+        changed.add(entity);
 
         // update parent status if not post step
         if (!entity.isPost()) {
-            Step parent = getWithNullReturn(entity.getJobId(), entity.getParent());
-            updateAllParents(parent, entity);
+            updateAllParents(state, entity, changed);
         }
 
         if (allChildren) {
-            NodeTree tree = ymlManager.getTree(entity.getJobId());
-            NodePath path = NodePath.create(entity.getNodePath());
-            Node node = tree.get(path);
+            NodeTree tree = ymlManager.getTree(jobId);
+            Node node = tree.get(entity.getNodePath());
 
             for (Node child : node.getChildren()) {
-                Step childStep = get(entity.getJobId(), child.getPathAsString());
+                Step childStep = state.get(child.getPathAsString());
                 childStep.setStartAt(entity.getStartAt());
                 childStep.setFinishAt(entity.getFinishAt());
-                saveStatus(childStep, status, err);
+                childStep.setStatus(status);
+                childStep.setError(err);
+                changed.add(childStep);
             }
         }
 
-        String jobId = entity.getJobId();
-        jobStepCache.invalidate(jobId);
-
-        List<Step> steps = list(jobId, entity.getFlowId(), entity.getBuildNumber());
-        eventManager.publish(new StepUpdateEvent(this, jobId, steps, false));
+        writeThrough(state, jobId, changed);
         return entity;
     }
 
@@ -194,47 +195,51 @@ public class StepServiceImpl implements StepService {
 
     @Override
     public Long delete(Job job) {
+        jobRuntimeStateCache.invalidate(job.getId());
         return executedCmdDao.deleteByJobId(job.getId());
     }
 
-    private Step getWithNullReturn(String jobId, String nodePath) {
-        if (nodePath == null) {
-            return null;
-        }
-
-        Optional<Step> optional = executedCmdDao.findByJobIdAndNodePath(jobId, nodePath);
-        return optional.orElse(null);
+    private JobRuntimeState getState(String jobId, String flowId, long buildNumber) {
+        return jobRuntimeStateCache.get(jobId, key -> {
+            List<Step> steps = executedCmdDao.findAllByFlowIdAndBuildNumber(flowId, buildNumber);
+            return new JobRuntimeState(jobId, ymlManager.getTree(jobId), steps);
+        });
     }
 
-    private void updateAllParents(Step parent, Step current) {
-        if (parent == null || parent.isRoot()) {
-            return;
-        }
+    private void updateAllParents(JobRuntimeState state, Step current, List<Step> changed) {
+        Step parent = current.hasParent() ? state.get(current.getParent()) : null;
 
-        parent.setStatus(current.getStatus());
-        parent.setError(current.getError());
-        parent.setFinishAt(current.getFinishAt());
+        while (parent != null && !parent.isRoot()) {
+            parent.setStatus(current.getStatus());
+            parent.setError(current.getError());
+            parent.setFinishAt(current.getFinishAt());
 
-        if (parent.getStartAt() == null) {
-            parent.setStartAt(current.getStartAt());
-        }
-
-        executedCmdDao.save(parent);
+            if (parent.getStartAt() == null) {
+                parent.setStartAt(current.getStartAt());
+            }
 
-        Step p = getWithNullReturn(parent.getJobId(), parent.getParent());
-        updateAllParents(p, current);
+            changed.add(parent);
+            parent = state.get(parent.getParent());
+        }
     }
 
-    private Step saveStatus(Step step, Step.Status status, String error) {
-        step.setError(error);
-        step.setStatus(status);
-        executedCmdDao.save(step);
-        return step;
-    }
+    /**
+     * Write changed steps to db, then update to runtime state and publish
+     */
+    private void writeThrough(JobRuntimeState state, String jobId, Collection<Step> changed) {
+        try {
+            executedCmdDao.bulkUpdate(changed);
+        } catch (RuntimeException e) {
+            // steps in state might be changed already
+            jobRuntimeStateCache.invalidate(jobId);
+            throw e;
+        }
+
+        for (Step step : changed) {
+            state.update(step);
+        }
 
-    private List<Step> list(String jobId, String flowId, long buildNumber) {
-        return jobStepCache.get(jobId,
-                s -> executedCmdDao.findAllByFlowIdAndBuildNumber(flowId, buildNumber));
+        eventManager.publish(new StepUpdateEvent(this, jobId, state.list(), false));
     }
 
     private static Step newInstance(Job job, Node node) {
@@ -55,4 +55,92 @@ public class AgentDaoTest extends SpringScenario {
         list = agentDao.findAll(Sets.newHashSet(), Sets.newHashSet(Agent.Status.IDLE));
         Assert.assertEquals(1, list.size());
     }
+
+    @Test
+    public void should_acquire_idle_agent_only_once() {
+        Agent agent = new Agent("hello", Sets.newHashSet("ios"));
+        agent.setToken("123");
+        agent.setStatus(Agent.Status.IDLE);
+        agentDao.insert(agent);
+
+        // when: acquire by unmatched tags
+        Assert.assertNull(agentDao.acquire(Sets.newHashSet("android"), "job-1"));
+
+        // then: acquired by matched tags, value before update returned
+        Agent acquired = agentDao.acquire(Sets.newHashSet("ios"), "job-1");
+        Assert.assertNotNull(acquired);
+        Assert.assertEquals(Agent.Status.IDLE, acquired.getStatus());
+
+        Agent updated = agentDao.findById(agent.getId()).get();
+        Assert.assertEquals(Agent.Status.BUSY, updated.getStatus());
+        Assert.assertEquals("job-1", updated.getJobId());
+
+        // then: cannot be acquired again since it's busy
+        Assert.assertNull(agentDao.acquire(Sets.newHashSet("ios"), "job-2"));
+        Assert.assertNull(agentDao.acquire(agent.getId(), Sets.newHashSet("ios"), true, "job-2"));
+        Assert.assertNotNull(agentDao.acquire(agent.getId(), Sets.newHashSet("ios"), false, "job-1"));
+    }
+
+    @Test
+    public void should_release_busy_agent() {
+        Agent agent = new Agent("hello");
+        agent.setToken("123");
+        agent.setJobId("job-1");
+        agent.setStatus(Agent.Status.BUSY);
+        agentDao.insert(agent);
+
+        Assert.assertNotNull(agentDao.release(agent.getId()));
+        Assert.assertNull(agentDao.release(agent.getId()));
+
+        Agent released = agentDao.findById(agent.getId()).get();
+        Assert.assertEquals(Agent.Status.IDLE, released.getStatus());
+        Assert.assertNull(released.getJobId());
+    }
+
+    @Test
+    public void should_update_status_only_if_expected() {
+        Agent agent = new Agent("hello", Sets.newHashSet("ios"));
+        agent.setToken("123");
+        agent.setStatus(Agent.Status.IDLE);
+        agentDao.insert(agent);
+
+        // given: acquired after status read
+        Assert.assertNotNull(agentDao.acquire(Sets.newHashSet("ios"), "job-1"));
+
+        // when: update status from the status read
+        Assert.assertNull(agentDao.updateStatus(agent.getId(), Agent.Status.IDLE, Agent.Status.OFFLINE));
+
+        // then: the acquired agent not changed
+        Agent acquired = agentDao.findById(agent.getId()).get();
+        Assert.assertEquals(Agent.Status.BUSY, acquired.getStatus());
+        Assert.assertEquals("job-1", acquired.getJobId());
+
+        // when: update status in any status
+        Agent before = agentDao.updateStatus(agent.getId(), null, Agent.Status.OFFLINE);
+        Assert.assertEquals(Agent.Status.BUSY, before.getStatus());
+
+        // then: only status is changed
+        Agent updated = agentDao.findById(agent.getId()).get();
+        Assert.assertEquals(Agent.Status.OFFLINE, updated.getStatus());
+        Assert.assertEquals("job-1", updated.getJobId());
+    }
+
+    @Test
+    public void should_update_connection_without_status() {
+        Agent agent = new Agent("hello");
+        agent.setToken("123");
+        agentDao.insert(agent);
+
+        Assert.assertNotNull(agentDao.acquire(agent.getId(), Sets.newHashSet(), false, "job-1"));
+
+        agent.setUrl("http://127.0.0.1:8080");
+        agent.setDocker(true);
+        agentDao.updateConnection(agent);
+
+        Agent updated = agentDao.findById(agent.getId()).get();
+        Assert.assertEquals("http://127.0.0.1:8080", updated.getUrl());
+        Assert.assertTrue(updated.isDocker());
+        Assert.assertEquals(Agent.Status.BUSY, updated.getStatus());
+        Assert.assertEquals("job-1", updated.getJobId());
+    }
 }
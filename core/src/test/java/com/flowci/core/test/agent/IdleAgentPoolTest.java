@@ -0,0 +1,88 @@
+/*
+ *   Copyright (c) 2019 flow.ci
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+
+package com.flowci.core.test.agent;
+
+import com.flowci.core.agent.manager.IdleAgentPool;
+import com.flowci.tree.Selector;
+import com.google.common.collect.ImmutableSet;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Optional;
+
+public class IdleAgentPoolTest {
+
+    private final IdleAgentPool pool = new IdleAgentPool();
+
+    @Test
+    public void should_poll_idle_agent_by_selector() {
+        pool.put("a1", ImmutableSet.of("linux"));
+        pool.put("a2", ImmutableSet.of("mac", "ios"));
+        pool.put("a3", Collections.emptySet());
+        Assert.assertEquals(3, pool.size());
+
+        Assert.assertEquals(Optional.of("a2"), pool.poll(new Selector("ios")));
+        Assert.assertFalse(pool.poll(new Selector("ios")).isPresent());
+
+        Assert.assertEquals(Optional.of("a3"), pool.poll(Selector.EMPTY));
+        Assert.assertFalse(pool.poll(Selector.EMPTY).isPresent());
+
+        Assert.assertFalse(pool.poll(new Selector("windows")).isPresent());
+        Assert.assertEquals(Optional.of("a1"), pool.poll(new Selector("windows", "linux")));
+        Assert.assertEquals(0, pool.size());
+    }
+
+    @Test
+    public void should_update_tags_and_remove_agent() {
+        pool.put("a1", ImmutableSet.of("linux"));
+        pool.put("a1", ImmutableSet.of("mac"));
+        Assert.assertFalse(pool.poll(new Selector("linux")).isPresent());
+        Assert.assertTrue(pool.contains("a1"));
+
+        pool.remove("a1");
+        Assert.assertFalse(pool.contains("a1"));
+        Assert.assertFalse(pool.poll(new Selector("mac")).isPresent());
+
+        pool.put("a1", Collections.emptySet());
+        Assert.assertFalse(pool.poll(new Selector("mac")).isPresent());
+        Assert.assertEquals(Optional.of("a1"), pool.poll(Selector.EMPTY));
+    }
+
+    @Test
+    public void should_reuse_released_ordinal_and_tag() {
+        pool.put("a1", ImmutableSet.of("mac"));
+        pool.put("a2", ImmutableSet.of("linux"));
+        Assert.assertEquals(Optional.of("a1"), pool.poll(new Selector("mac")));
+        pool.remove("a2");
+
+        // released ordinal and tag id should not keep the tags of previous agent
+        pool.put("a3", ImmutableSet.of("windows"));
+        pool.put("a4", Collections.emptySet());
+        Assert.assertEquals(2, pool.size());
+        Assert.assertFalse(pool.poll(new Selector("mac")).isPresent());
+        Assert.assertFalse(pool.poll(new Selector("linux")).isPresent());
+        Assert.assertFalse(pool.contains("a1"));
+
+        pool.put("a1", ImmutableSet.of("linux"));
+        Assert.assertEquals(Optional.of("a1"), pool.poll(new Selector("linux")));
+        Assert.assertEquals(Optional.of("a3"), pool.poll(new Selector("windows")));
+        Assert.assertEquals(Optional.of("a4"), pool.poll(Selector.EMPTY));
+        Assert.assertEquals(0, pool.size());
+    }
+}
@@ -0,0 +1,42 @@
+package com.flowci.core.test.agent;
+
+import com.flowci.core.agent.domain.ShellLogFrame;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+public class ShellLogFrameTest {
+
+    @Test
+    public void should_encode_and_decode_frame() {
+        byte[] log = "hello\nworld\n".getBytes(StandardCharsets.UTF_8);
+        byte[] frame = new ShellLogFrame("job-id", "step-id", log).encode();
+
+        // decode after event header as agent message
+        byte[] message = new byte[11 + frame.length];
+        System.arraycopy(frame, 0, message, 11, frame.length);
+
+        ByteBuffer buffer = ByteBuffer.wrap(message);
+        buffer.position(11);
+
+        ShellLogFrame decoded = ShellLogFrame.decode(buffer);
+        Assert.assertEquals("job-id", decoded.getJobId());
+        Assert.assertEquals("step-id", decoded.getStepId());
+        Assert.assertArrayEquals(log, decoded.getLog());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void should_throw_exception_if_version_not_supported() {
+        byte[] frame = new ShellLogFrame("job-id", "step-id", new byte[0]).encode();
+        frame[0] = 2;
+        ShellLogFrame.decode(ByteBuffer.wrap(frame));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void should_throw_exception_if_frame_incomplete() {
+        byte[] frame = new ShellLogFrame("job-id", "step-id", new byte[0]).encode();
+        ShellLogFrame.decode(ByteBuffer.wrap(frame, 0, 5));
+    }
+}
@@ -0,0 +1,114 @@
+package com.flowci.core.test.common;
+
+import com.flowci.core.common.expression.Expression;
+import com.flowci.core.common.expression.ExpressionParser;
+import com.flowci.core.common.expression.ExpressionTimeoutException;
+import com.flowci.core.common.expression.UnsupportedExpressionException;
+import com.flowci.domain.StringVars;
+import com.flowci.domain.Vars;
+import groovy.lang.Binding;
+import groovy.lang.GroovyShell;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ExpressionParserTest {
+
+    private final Vars<String> vars = new StringVars();
+
+    {
+        vars.put("FLOWCI_GIT_BRANCH", "master");
+        vars.put("FLOWCI_GIT_SOURCE", "GITHUB");
+        vars.put("FLOWCI_GIT_COMMIT_MESSAGE", "fix: release/1.0 [ci skip]");
+        vars.put("EMPTY", "");
+    }
+
+    @Test
+    public void should_evaluate_as_groovy() {
+        String[] conditions = {
+                "return true",
+                "false;",
+                "return FLOWCI_GIT_BRANCH == \"develop\" || FLOWCI_GIT_BRANCH == \"master\";",
+                "FLOWCI_GIT_BRANCH != 'master' && FLOWCI_GIT_SOURCE == 'GITHUB'",
+                "!(FLOWCI_GIT_BRANCH == 'master')",
+                "!EMPTY",
+                "!!FLOWCI_GIT_SOURCE",
+                "FLOWCI_GIT_BRANCH in ['master', 'develop']",
+                "FLOWCI_GIT_BRANCH in ['feature'] || FLOWCI_GIT_SOURCE in []",
+                "FLOWCI_GIT_COMMIT_MESSAGE =~ /\\[ci skip\\]/ && true",
+                "!(FLOWCI_GIT_COMMIT_MESSAGE =~ 'not found')",
+                "FLOWCI_GIT_BRANCH ==~ /mas.*/",
+                "FLOWCI_GIT_COMMIT_MESSAGE ==~ 'fix'",
+                "FLOWCI_GIT_COMMIT_MESSAGE =~ /release\\/1\\.0/ ? true : false",
+                "FLOWCI_GIT_COMMIT_MESSAGE.startsWith('fix:') && !FLOWCI_GIT_BRANCH.endsWith('x')",
+                "FLOWCI_GIT_SOURCE.toLowerCase() == 'github'",
+                "FLOWCI_GIT_SOURCE.toLowerCase().contains('hub')",
+                "EMPTY.isEmpty() && EMPTY == ''",
+                "null == null",
+                "FLOWCI_GIT_BRANCH == null",
+        };
+
+        for (String condition : conditions) {
+            Object expected = new GroovyShell(binding()).evaluate(condition);
+
+            try {
+                Expression expression = ExpressionParser.parse(condition);
+                Assert.assertEquals(condition, expected, expression.eval(vars));
+            } catch (UnsupportedExpressionException e) {
+                // ternary operator is not supported
+                Assert.assertTrue(condition, condition.contains("?"));
+            }
+        }
+    }
+
+    @Test
+    public void should_not_support_other_syntax() {
+        String[] conditions = {
+                "println(FLOW_WORKSPACE)\ntrue",
+                "return \"$FLOWCI_GIT_BRANCH\" == 'master'",
+                "def a = 1; return a == 1",
+                "FLOWCI_GIT_BRANCH",
+                "FLOWCI_GIT_BRANCH =~ 'master'",
+                "FLOWCI_GIT_BRANCH.size() == 1",
+                "FLOWCI_GIT_BRANCH == 'a' == true",
+                "FLOWCI_GIT_BRANCH in FLOWCI_GIT_SOURCE",
+                "FLOWCI_GIT_BRANCH =~ /[/",
+                "// comment\ntrue",
+        };
+
+        for (String condition : conditions) {
+            try {
+                ExpressionParser.parse(condition);
+                Assert.fail(condition);
+            } catch (UnsupportedExpressionException ignore) {
+            }
+        }
+    }
+
+    @Test(expected = ExpressionTimeoutException.class)
+    public void should_throw_exception_if_regex_timeout() {
+        vars.put("INPUT", "aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa!");
+        ExpressionParser.parse("INPUT ==~ /(a|aa)+/").eval(vars);
+    }
+
+    @Test(expected = ExpressionTimeoutException.class)
+    public void should_throw_exception_if_regex_of_matches_timeout() {
+        vars.put("INPUT", "aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa!");
+        ExpressionParser.parse("INPUT.matches('(a|aa)+')").eval(vars);
+    }
+
+    @Test(expected = UnsupportedExpressionException.class)
+    public void should_throw_exception_for_unexpected_operator() {
+        ExpressionParser.parse("FLOWCI_GIT_BRANCH == )");
+    }
+
+    @Test(expected = UnsupportedExpressionException.class)
+    public void should_throw_exception_if_variable_not_found() {
+        ExpressionParser.parse("$FLOWCI_GIT_BRANCH == 'master'").eval(vars);
+    }
+
+    private Binding binding() {
+        Binding binding = new Binding();
+        vars.forEach(binding::setVariable);
+        return binding;
+    }
+}
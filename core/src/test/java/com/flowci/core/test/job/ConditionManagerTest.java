@@ -30,6 +30,18 @@ public class ConditionManagerTest extends SpringScenario {
         Assert.assertTrue(conditionManager.run(groovy, vars));
     }
 
+    @Test
+    public void should_run_compiled_condition_with_different_vars() throws ScriptException {
+        String groovy = "return foo == \"1\";";
+
+        StringVars vars = new StringVars();
+        vars.put("foo", "1");
+        Assert.assertTrue(conditionManager.run(groovy, vars));
+
+        vars.put("foo", "2");
+        Assert.assertFalse(conditionManager.run(groovy, vars));
+    }
+
     @Test(expected = ScriptException.class)
     public void should_throw_exception_if_wrong_return_type() throws ScriptException {
         StringVars vars = new StringVars();
@@ -0,0 +1,61 @@
+package com.flowci.core.test.job;
+
+import com.flowci.core.job.dao.ExecutedCmdDao;
+import com.flowci.core.job.domain.Executed;
+import com.flowci.core.job.domain.Step;
+import com.flowci.core.test.SpringScenario;
+import com.google.common.collect.ImmutableList;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.Date;
+
+public class ExecutedCmdDaoTest extends SpringScenario {
+
+    @Autowired
+    private ExecutedCmdDao executedCmdDao;
+
+    @Test
+    public void should_bulk_update_steps() {
+        // init:
+        Step first = new Step()
+                .setJobId("job")
+                .setFlowId("flow")
+                .setBuildNumber(1L)
+                .setNodePath("root/step-1")
+                .setError("previous error");
+
+        Step second = new Step()
+                .setJobId("job")
+                .setFlowId("flow")
+                .setBuildNumber(1L)
+                .setNodePath("root/step-2");
+
+        executedCmdDao.saveAll(ImmutableList.of(first, second));
+
+        // when:
+        first.setStatus(Executed.Status.SUCCESS);
+        first.setStartAt(new Date());
+        first.setError(null);
+        first.getOutput().put("OUTPUT_A", "a");
+
+        second.setStatus(Executed.Status.RUNNING);
+        second.setAgentId("agent");
+
+        executedCmdDao.bulkUpdate(ImmutableList.of(first, second));
+
+        // then: fields are set and null fields are removed
+        Step updatedFirst = executedCmdDao.findById(first.getId()).get();
+        Assert.assertEquals(Executed.Status.SUCCESS, updatedFirst.getStatus());
+        Assert.assertNotNull(updatedFirst.getStartAt());
+        Assert.assertNull(updatedFirst.getError());
+        Assert.assertEquals("a", updatedFirst.getOutput().get("OUTPUT_A"));
+        Assert.assertEquals("root/step-1", updatedFirst.getNodePath());
+
+        Step updatedSecond = executedCmdDao.findById(second.getId()).get();
+        Assert.assertEquals(Executed.Status.RUNNING, updatedSecond.getStatus());
+        Assert.assertEquals("agent", updatedSecond.getAgentId());
+        Assert.assertEquals("job", updatedSecond.getJobId());
+    }
+}
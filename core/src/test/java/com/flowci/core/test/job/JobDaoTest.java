@@ -0,0 +1,79 @@
+package com.flowci.core.test.job;
+
+import com.flowci.core.job.dao.JobDao;
+import com.flowci.core.job.domain.Job;
+import com.flowci.core.job.domain.Step;
+import com.flowci.core.test.SpringScenario;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+public class JobDaoTest extends SpringScenario {
+
+    @Autowired
+    private JobDao jobDao;
+
+    @Test
+    public void should_update_changed_fields_only() {
+        // init:
+        Job job = new Job();
+        job.setKey("flowA-1");
+        job.setFlowId("flowA");
+        job.setBuildNumber(1L);
+        job.getContext().put("A", "1");
+        job.getContext().put("B", "2");
+        jobDao.save(job);
+
+        // when: update fields from loaded job
+        Job loaded = jobDao.findById(job.getId()).get();
+        Assert.assertNotNull(loaded.getPersisted());
+
+        loaded.setStatus(Job.Status.RUNNING);
+        loaded.getContext().put("A", "10");
+        loaded.getContext().remove("B");
+        loaded.addToCurrentPath(new Step().setNodePath("root/step-1"));
+
+        jobDao.increaseNumOfArtifact(job.getId());
+        jobDao.update(loaded);
+
+        // then: fields updated and num of artifact not overwritten
+        Job updated = jobDao.findById(job.getId()).get();
+        Assert.assertEquals(Job.Status.RUNNING, updated.getStatus());
+        Assert.assertEquals("10", updated.getContext().get("A"));
+        Assert.assertFalse(updated.getContext().containsKey("B"));
+        Assert.assertTrue(updated.getCurrentPath().contains("root/step-1"));
+        Assert.assertEquals(1, updated.getNumOfArtifact());
+        Assert.assertEquals(1L, (long) updated.getVersion());
+
+        // when: add to context without version changed
+        jobDao.addToContext(job.getId(), ImmutableMap.of("C", "3"));
+        loaded.removeFromCurrentPath(new Step().setNodePath("root/step-1"));
+        jobDao.update(loaded);
+
+        // then:
+        updated = jobDao.findById(job.getId()).get();
+        Assert.assertEquals("3", updated.getContext().get("C"));
+        Assert.assertTrue(updated.getCurrentPath().isEmpty());
+        Assert.assertEquals(2L, (long) updated.getVersion());
+    }
+
+    @Test(expected = OptimisticLockingFailureException.class)
+    public void should_throw_exception_if_job_modified_by_others() {
+        Job job = new Job();
+        job.setKey("flowA-2");
+        job.setFlowId("flowA");
+        job.setBuildNumber(2L);
+        jobDao.save(job);
+
+        Job first = jobDao.findById(job.getId()).get();
+        Job second = jobDao.findById(job.getId()).get();
+
+        first.setMessage("first");
+        jobDao.update(first);
+
+        second.setMessage("second");
+        jobDao.update(second);
+    }
+}
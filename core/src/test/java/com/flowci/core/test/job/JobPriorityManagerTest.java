@@ -0,0 +1,112 @@
+package com.flowci.core.test.job;
+
+import com.flowci.core.job.dao.JobDao;
+import com.flowci.core.job.dao.JobPriorityDao;
+import com.flowci.core.job.domain.Job;
+import com.flowci.core.job.domain.JobKey;
+import com.flowci.core.job.domain.JobPriority;
+import com.flowci.core.job.event.JobActionEvent;
+import com.flowci.core.job.manager.JobPriorityManager;
+import com.flowci.core.job.manager.JobPriorityManagerImpl;
+import com.flowci.core.test.SpringScenario;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationListener;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class JobPriorityManagerTest extends SpringScenario {
+
+    @Autowired
+    private JobDao jobDao;
+
+    @Autowired
+    private JobPriorityDao jobPriorityDao;
+
+    @Autowired
+    private JobPriorityManager jobPriorityManager;
+
+    @Test
+    public void should_wake_up_next_job_when_top_job_removed() throws InterruptedException {
+        String flowId = "flowA";
+
+        // init:
+        JobPriority p = new JobPriority();
+        p.setFlowId(flowId);
+        jobPriorityDao.insert(p);
+
+        Job first = newJob(flowId, 1L);
+        Job second = newJob(flowId, 2L);
+
+        jobPriorityDao.addJob(flowId, first.getBuildNumber());
+        jobPriorityDao.addJob(flowId, second.getBuildNumber());
+
+        // when: check job priority
+        Assert.assertTrue(jobPriorityManager.isOnTop(first));
+        Assert.assertFalse(jobPriorityManager.isOnTop(second));
+
+        CountDownLatch counter = new CountDownLatch(1);
+        AtomicReference<JobActionEvent> woken = new AtomicReference<>();
+        addEventListener((ApplicationListener<JobActionEvent>) event -> {
+            woken.set(event);
+            counter.countDown();
+        });
+
+        // then: second job should be woken up to run when first job removed
+        jobPriorityManager.remove(first);
+
+        Assert.assertTrue(counter.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(second.getId(), woken.get().getJobId());
+        Assert.assertTrue(woken.get().isToRun());
+        Assert.assertTrue(jobPriorityManager.isOnTop(second));
+    }
+
+    @Test
+    public void should_wake_up_loaded_queued_job_on_top() throws InterruptedException {
+        String flowId = "flowB";
+
+        // init: jobs queued before restart
+        JobPriority p = new JobPriority();
+        p.setFlowId(flowId);
+        jobPriorityDao.insert(p);
+
+        Job first = newJob(flowId, 1L);
+        Job second = newJob(flowId, 2L);
+
+        for (Job job : new Job[]{first, second}) {
+            job.setKey(JobKey.of(flowId, job.getBuildNumber()).toString());
+            job.setStatus(Job.Status.QUEUED);
+            jobDao.insert(job);
+            jobPriorityDao.addJob(flowId, job.getBuildNumber());
+        }
+
+        CountDownLatch counter = new CountDownLatch(1);
+        AtomicReference<JobActionEvent> woken = new AtomicReference<>();
+        addEventListener((ApplicationListener<JobActionEvent>) event -> {
+            if (event.getJobId().equals(first.getId())) {
+                woken.set(event);
+                counter.countDown();
+            }
+        });
+
+        // when: load waiters
+        ((JobPriorityManagerImpl) jobPriorityManager).loadWaiters();
+
+        // then: the job on top should be woken up only if it's still queued
+        Assert.assertTrue(counter.await(10, TimeUnit.SECONDS));
+        Assert.assertTrue(woken.get().isToRun());
+        Assert.assertEquals(Job.Status.QUEUED, woken.get().getExpected());
+    }
+
+    private static Job newJob(String flowId, Long buildNumber) {
+        Job job = new Job();
+        job.setId(flowId + "-" + buildNumber);
+        job.setFlowId(flowId);
+        job.setBuildNumber(buildNumber);
+        job.setExpire(1800);
+        return job;
+    }
+}
@@ -0,0 +1,100 @@
+package com.flowci.core.test.job;
+
+import com.flowci.core.job.domain.Executed;
+import com.flowci.core.job.domain.JobRuntimeState;
+import com.flowci.core.job.domain.Step;
+import com.flowci.tree.FlowNode;
+import com.flowci.tree.NodeTree;
+import com.flowci.tree.RegularStepNode;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.BitSet;
+
+public class JobRuntimeStateTest {
+
+    private final FlowNode root = new FlowNode("root");
+
+    private final RegularStepNode step1 = new RegularStepNode("step-1", root);
+
+    private final RegularStepNode step2 = new RegularStepNode("step-2", root);
+
+    private NodeTree tree;
+
+    @Before
+    public void init() {
+        root.getChildren().add(step1);
+        root.getChildren().add(step2);
+        tree = NodeTree.create(root);
+    }
+
+    @Test
+    public void should_query_status_by_bitset() {
+        Step s1 = create(step1, Executed.Status.RUNNING);
+        Step s2 = create(step2, Executed.Status.PENDING);
+        JobRuntimeState state = new JobRuntimeState("job", tree, ImmutableList.of(s1, s2));
+
+        BitSet all = state.select(ImmutableList.of(step1, step2));
+        Assert.assertEquals(2, all.cardinality());
+        Assert.assertTrue(state.any(all, Executed.OngoingStatus));
+        Assert.assertTrue(state.any(all, Executed.WaitingStatus));
+        Assert.assertFalse(state.anyFailure(all));
+
+        // step instance changed before update
+        s1.setStatus(Executed.Status.EXCEPTION);
+        state.update(s1);
+        Assert.assertTrue(state.anyFailure(all));
+        Assert.assertFalse(state.any(state.select(ImmutableList.of(step1)), Executed.OngoingStatus));
+        Assert.assertEquals(ImmutableList.of(s2), state.list(ImmutableSet.of(Executed.Status.PENDING)));
+
+        // failure is allowed
+        s1.setAllowFailure(true);
+        state.update(s1);
+        Assert.assertFalse(state.anyFailure(all));
+        Assert.assertSame(s1, state.get(step1.getPathAsString()));
+    }
+
+    @Test
+    public void should_build_var_string_incrementally() {
+        Step s1 = create(step1, Executed.Status.PENDING);
+        Step s2 = create(step2, Executed.Status.PENDING);
+        JobRuntimeState state = new JobRuntimeState("job", tree, ImmutableList.of(s1, s2));
+
+        Assert.assertEquals("step-1=PENDING", state.toVarString(s1.getNodePath()));
+        Assert.assertEquals("step-1=PENDING;step-2=PENDING", state.toVarString("not-existed"));
+
+        s1.setStatus(Executed.Status.SUCCESS);
+        state.update(s1);
+        Assert.assertEquals("step-1=SUCCESS", state.toVarString(s1.getNodePath()));
+
+        s2.setStatus(Executed.Status.WAITING_AGENT);
+        state.update(s2);
+        Assert.assertEquals("step-1=SUCCESS;step-2=WAITING_AGENT", state.toVarString(s2.getNodePath()));
+
+        s2.setStatus(Executed.Status.RUNNING);
+        state.update(s2);
+        Assert.assertEquals("step-1=SUCCESS;step-2=RUNNING", state.toVarString(s2.getNodePath()));
+        Assert.assertEquals("step-1=SUCCESS", state.toVarString(s1.getNodePath()));
+    }
+
+    @Test
+    public void should_order_var_string_by_node_tree() {
+        Step s1 = create(step1, Executed.Status.SUCCESS);
+        Step s2 = create(step2, Executed.Status.RUNNING);
+
+        // steps loaded from db in any order
+        JobRuntimeState state = new JobRuntimeState("job", tree, ImmutableList.of(s2, s1));
+        Assert.assertEquals("step-1=SUCCESS;step-2=RUNNING", state.toVarString(s2.getNodePath()));
+        Assert.assertEquals(ImmutableList.of(s1, s2), state.list());
+    }
+
+    private static Step create(RegularStepNode node, Executed.Status status) {
+        Step step = new Step();
+        step.setNodePath(node.getPathAsString());
+        step.setStatus(status);
+        return step;
+    }
+}
@@ -63,6 +63,7 @@ import org.springframework.context.ApplicationListener;
 import java.io.IOException;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
@@ -97,9 +98,6 @@ public class JobServiceTest extends ZookeeperScenario {
     @Autowired
     private YmlService ymlService;
 
-    @Autowired
-    private JobEventService jobEventService;
-
     @Autowired
     private JobService jobService;
 
@@ -197,7 +195,7 @@ public class JobServiceTest extends ZookeeperScenario {
         Assert.assertEquals(Status.CREATED, job.getStatus());
         Assert.assertTrue(job.getCurrentPath().isEmpty());
 
-        jobActionService.toStart(job.getId());
+        waitFor(jobActionService.toStart(job.getId()));
         job = jobService.get(job.getId());
         Assert.assertEquals(Status.QUEUED, job.getStatus());
 
@@ -309,7 +307,7 @@ public class JobServiceTest extends ZookeeperScenario {
         firstStep.setFinishAt(new Date());
 
         executedCmdDao.save(firstStep);
-        jobEventService.handleCallback(getShellOutFromStep(firstStep));
+        handleCallback(getShellOutFromStep(firstStep));
 
         // then: verify step 2 agent
         Assert.assertTrue(counterForStep2.await(10, TimeUnit.SECONDS));
@@ -334,7 +332,7 @@ public class JobServiceTest extends ZookeeperScenario {
         secondStep.setFinishAt(new Date());
 
         executedCmdDao.save(secondStep);
-        jobEventService.handleCallback(getShellOutFromStep(secondStep));
+        handleCallback(getShellOutFromStep(secondStep));
 
         // // then: should job with SUCCESS status and sent notification task
         Assert.assertEquals(Status.SUCCESS, jobService.get(job.getId()).getStatus());
@@ -359,7 +357,7 @@ public class JobServiceTest extends ZookeeperScenario {
         firstStep.setOutput(output);
 
         executedCmdDao.save(firstStep);
-        jobEventService.handleCallback(getShellOutFromStep(firstStep));
+        handleCallback(getShellOutFromStep(firstStep));
 
         // then: job context should be updated
         job = jobDao.findById(job.getId()).get();
@@ -376,7 +374,7 @@ public class JobServiceTest extends ZookeeperScenario {
         secondStep.setStatus(Step.Status.SUCCESS);
         secondStep.setOutput(output);
         executedCmdDao.save(secondStep);
-        jobEventService.handleCallback(getShellOutFromStep(secondStep));
+        handleCallback(getShellOutFromStep(secondStep));
 
         // then: job context should be updated
         job = jobDao.findById(job.getId()).get();
@@ -400,7 +398,7 @@ public class JobServiceTest extends ZookeeperScenario {
         // when: cmd of first node with failure
         firstStep.setStatus(Step.Status.EXCEPTION);
         executedCmdDao.save(firstStep);
-        jobEventService.handleCallback(getShellOutFromStep(firstStep));
+        handleCallback(getShellOutFromStep(firstStep));
 
         // then: job should be failure
         job = jobDao.findById(job.getId()).get();
@@ -427,7 +425,7 @@ public class JobServiceTest extends ZookeeperScenario {
         firstStep.setStatus(Step.Status.EXCEPTION);
         firstStep.setOutput(output);
         executedCmdDao.save(firstStep);
-        jobEventService.handleCallback(getShellOutFromStep(firstStep));
+        handleCallback(getShellOutFromStep(firstStep));
 
         // then: job status should be running and current path should be change to second node
         job = jobDao.findById(job.getId()).get();
@@ -445,7 +443,7 @@ public class JobServiceTest extends ZookeeperScenario {
         secondCmd.setStatus(Step.Status.TIMEOUT);
         secondCmd.setOutput(output);
         executedCmdDao.save(secondCmd);
-        jobEventService.handleCallback(getShellOutFromStep(secondCmd));
+        handleCallback(getShellOutFromStep(secondCmd));
 
         // then: job should be timeout with error message
         job = jobDao.findById(job.getId()).get();
@@ -544,7 +542,23 @@ public class JobServiceTest extends ZookeeperScenario {
         return jobDao.save(job);
     }
 
-    private ShellOut getShellOutFromStep(Step step) {
+    /**
+     * Handle callback and wait for the transition, which is executed in the job mailbox if async transition enabled
+     */
+    private void handleCallback(ShellOut so) {
+        String jobId = stepService.get(so.getId()).getJobId();
+        waitFor(jobActionService.toContinue(jobId, so));
+    }
+
+    private static void waitFor(CompletableFuture<Void> future) {
+        try {
+            future.get(10, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            throw new AssertionError(e);
+        }
+    }
+
+        private ShellOut getShellOutFromStep(Step step) {
         return new ShellOut()
                 .setId(step.getId())
                 .setStatus(step.getStatus())
@@ -0,0 +1,137 @@
+package com.flowci.core.test.job;
+
+import com.flowci.core.job.domain.LogHit;
+import com.flowci.core.job.manager.LogIndexImpl;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+public class LogIndexTest {
+
+    private Path dir;
+
+    private LogIndexImpl index;
+
+    @Before
+    public void init() throws IOException {
+        dir = Files.createTempDirectory("log-index");
+        index = new LogIndexImpl(dir, 30);
+    }
+
+    @After
+    public void clean() throws IOException {
+        FileSystemUtils.deleteRecursively(dir);
+    }
+
+    @Test
+    public void should_search_lines_contains_all_terms() throws IOException {
+        index.add("flow-a", 1, "step-1", log("npm install", "done"));
+        index.add("flow-a", 2, "step-2", log("npm install", "java.lang.OutOfMemoryError: Java heap space"));
+        index.add("flow-b", 1, "step-3", log("java.lang.OutOfMemoryError: Java heap space"));
+
+        List<LogHit> hits = index.search("flow-a", "outofmemoryerror", 0, 10);
+        Assert.assertEquals(1, hits.size());
+        Assert.assertEquals(2, hits.get(0).getBuildNumber());
+        Assert.assertEquals("step-2", hits.get(0).getStepId());
+        Assert.assertEquals(2, (int) hits.get(0).getLines().get(0));
+
+        // terms in the same line
+        Assert.assertEquals(1, index.search("flow-a", "Java heap", 0, 10).size());
+        Assert.assertEquals(0, index.search("flow-a", "install heap", 0, 10).size());
+
+        // sorted by build number desc
+        hits = index.search("flow-a", "npm install", 0, 10);
+        Assert.assertEquals(2, hits.size());
+        Assert.assertEquals(2, hits.get(0).getBuildNumber());
+        Assert.assertEquals(1, hits.get(1).getBuildNumber());
+
+        // since
+        Assert.assertEquals(0, index.search("flow-a", "npm", System.currentTimeMillis() + 1000, 10).size());
+    }
+
+    @Test
+    public void should_load_and_merge_segments() throws IOException {
+        for (int i = 1; i <= 5; i++) {
+            index.add("flow", i, "step-" + i, log("build_" + i, "OutOfMemoryError"));
+            index.flush();
+        }
+
+        // segments of the same tier merged once there are 4 of them
+        Assert.assertEquals(2, segments());
+        Assert.assertEquals(5, index.search("flow", "OutOfMemoryError", 0, 10).size());
+
+        LogIndexImpl reloaded = new LogIndexImpl(dir, 30);
+        List<LogHit> hits = reloaded.search("flow", "OutOfMemoryError", 0, 10);
+        Assert.assertEquals(5, hits.size());
+        Assert.assertEquals(5, hits.get(0).getBuildNumber());
+        Assert.assertEquals(1, reloaded.search("flow", "build_3", 0, 10).size());
+
+        // remove docs of flow on next flush
+        reloaded.add("other", 1, "step", log("OutOfMemoryError"));
+        reloaded.delete("flow");
+        Assert.assertTrue(reloaded.search("flow", "OutOfMemoryError", 0, 10).isEmpty());
+
+        reloaded.flush();
+        Assert.assertEquals(3, segments());
+
+        reloaded = new LogIndexImpl(dir, 30);
+        Assert.assertTrue(reloaded.search("flow", "OutOfMemoryError", 0, 10).isEmpty());
+        Assert.assertEquals(1, reloaded.search("other", "OutOfMemoryError", 0, 10).size());
+    }
+
+    @Test
+    public void should_remove_docs_of_deleted_flow_on_merge() throws IOException {
+        index.add("flow", 1, "step-1", log("OutOfMemoryError"));
+        index.flush();
+        index.delete("flow");
+
+        for (int i = 2; i <= 4; i++) {
+            index.add("other", i, "step-" + i, log("OutOfMemoryError"));
+            index.flush();
+        }
+
+        // merged without docs of deleted flow
+        Assert.assertEquals(1, segments());
+        Assert.assertEquals(3, index.search("other", "OutOfMemoryError", 0, 10).size());
+
+        try (Stream<Path> files = Files.list(dir)) {
+            Path segment = files.filter(p -> p.toString().endsWith(".seg")).findFirst().get();
+            String content = new String(Files.readAllBytes(segment), StandardCharsets.ISO_8859_1);
+            Assert.assertFalse(content.contains("step-1"));
+        }
+    }
+
+    @Test
+    public void should_remove_segments_out_of_retention() throws Exception {
+        LogIndexImpl noRetention = new LogIndexImpl(dir, 0);
+        noRetention.add("flow", 1, "step-1", log("OutOfMemoryError"));
+        noRetention.flush();
+
+        Thread.sleep(10);
+        noRetention.flush();
+
+        Assert.assertEquals(0, segments());
+        Assert.assertTrue(noRetention.search("flow", "OutOfMemoryError", 0, 10).isEmpty());
+    }
+
+    private long segments() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> p.toString().endsWith(".seg")).count();
+        }
+    }
+
+    private static InputStream log(String... lines) {
+        return new ByteArrayInputStream(String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,109 @@
+package com.flowci.core.test.job;
+
+import com.flowci.core.job.domain.StepLogChunk;
+import com.flowci.core.job.manager.StepLogBufferImpl;
+import com.google.common.collect.ImmutableList;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+public class StepLogBufferTest {
+
+    private static final int SegmentSize = 64 * 1024;
+
+    @Test
+    public void should_read_log_from_offset() {
+        StepLogBufferImpl buffer = new StepLogBufferImpl(SegmentSize * 10, SegmentSize * 2);
+        buffer.init("job", ImmutableList.of("step"));
+
+        buffer.append("step", bytes("line-1"));
+        buffer.append("step", bytes("line-2"));
+        buffer.append("step", bytes("line-3"));
+        buffer.append("not-existed", bytes("ignored"));
+
+        StepLogChunk all = buffer.read("step", 0, Integer.MAX_VALUE);
+        Assert.assertEquals(0, all.getOffset());
+        Assert.assertEquals(3, all.getItems().size());
+        Assert.assertEquals("line-3", string(all.getItems().get(2)));
+
+        // at least one item returned
+        StepLogChunk first = buffer.read("step", 0, 1);
+        Assert.assertEquals(1, first.getItems().size());
+        Assert.assertEquals("line-1", string(first.getItems().get(0)));
+
+        StepLogChunk rest = buffer.read("step", first.getNext(), Integer.MAX_VALUE);
+        Assert.assertEquals(first.getNext(), rest.getOffset());
+        Assert.assertEquals(2, rest.getItems().size());
+        Assert.assertEquals("line-2", string(rest.getItems().get(0)));
+        Assert.assertEquals(all.getNext(), rest.getNext());
+
+        // tail from the end
+        StepLogChunk tail = buffer.read("step", rest.getNext(), Integer.MAX_VALUE);
+        Assert.assertTrue(tail.getItems().isEmpty());
+        Assert.assertEquals(rest.getNext(), tail.getNext());
+
+        buffer.append("step", bytes("line-4"));
+        tail = buffer.read("step", tail.getNext(), Integer.MAX_VALUE);
+        Assert.assertEquals(1, tail.getItems().size());
+        Assert.assertEquals("line-4", string(tail.getItems().get(0)));
+    }
+
+    @Test
+    public void should_drop_oldest_log_when_over_step_limit() {
+        StepLogBufferImpl buffer = new StepLogBufferImpl(SegmentSize * 10, SegmentSize * 2);
+        buffer.init("job", ImmutableList.of("step"));
+
+        byte[] item = new byte[1020];
+        for (int i = 0; i < 64 * 4; i++) {
+            buffer.append("step", item);
+        }
+
+        Assert.assertEquals(SegmentSize * 2, buffer.usedBytes());
+
+        StepLogChunk chunk = buffer.read("step", 0, Integer.MAX_VALUE);
+        Assert.assertEquals(SegmentSize * 2, chunk.getOffset());
+        Assert.assertEquals(64 * 2, chunk.getItems().size());
+    }
+
+    @Test
+    public void should_drop_oldest_log_of_all_steps_when_over_limit() {
+        StepLogBufferImpl buffer = new StepLogBufferImpl(SegmentSize * 2, SegmentSize * 2);
+        buffer.init("job-1", ImmutableList.of("step-1"));
+        buffer.init("job-2", ImmutableList.of("step-2"));
+
+        byte[] item = new byte[1020];
+        for (int i = 0; i < 64; i++) {
+            buffer.append("step-1", item);
+            buffer.append("step-2", item);
+        }
+        Assert.assertEquals(SegmentSize * 2, buffer.usedBytes());
+
+        // new segment of step 1 drops the segment of step 1
+        buffer.append("step-1", item);
+        Assert.assertEquals(SegmentSize * 2, buffer.usedBytes());
+        Assert.assertEquals(1, buffer.read("step-1", 0, Integer.MAX_VALUE).getItems().size());
+        Assert.assertEquals(64, buffer.read("step-2", 0, Integer.MAX_VALUE).getItems().size());
+
+        // new segment of step 1 drops the segment of step 2
+        for (int i = 0; i < 64; i++) {
+            buffer.append("step-1", item);
+        }
+        Assert.assertEquals(SegmentSize * 2, buffer.usedBytes());
+        Assert.assertEquals(64, buffer.read("step-1", 0, Integer.MAX_VALUE).getItems().size() - 1);
+        Assert.assertTrue(buffer.read("step-2", 0, Integer.MAX_VALUE).getItems().isEmpty());
+
+        buffer.release("job-1");
+        buffer.release("job-2");
+        Assert.assertEquals(0, buffer.usedBytes());
+        Assert.assertTrue(buffer.read("step-1", 0, Integer.MAX_VALUE).getItems().isEmpty());
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(byte[] bytes) {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
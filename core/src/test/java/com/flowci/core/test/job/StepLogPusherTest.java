@@ -0,0 +1,128 @@
+package com.flowci.core.test.job;
+
+import com.flowci.core.common.manager.SocketPushManager;
+import com.flowci.core.job.domain.StepLogItem;
+import com.flowci.core.job.manager.StepLogPusherImpl;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class StepLogPusherTest {
+
+    private final SocketPushManager socketPushManager = Mockito.mock(SocketPushManager.class);
+
+    @Test
+    public void should_push_logs_in_batch() {
+        StepLogPusherImpl pusher = new StepLogPusherImpl(socketPushManager, "/topic/logs", 1024);
+
+        for (int i = 0; i < 100; i++) {
+            pusher.push("job", new StepLogItem("step", bytes("line-" + i)));
+        }
+
+        // 100 * (4 + 2 + 4 + 6~7) bytes over 1024 bytes
+        Mockito.verify(socketPushManager, Mockito.times(1)).push(Mockito.anyString(), Mockito.any(byte[].class));
+
+        pusher.flush();
+        Mockito.verify(socketPushManager, Mockito.times(2)).push(Mockito.anyString(), Mockito.any(byte[].class));
+
+        // nothing to push
+        pusher.flush();
+        pusher.flush("job");
+
+        ArgumentCaptor<byte[]> captor = ArgumentCaptor.forClass(byte[].class);
+        Mockito.verify(socketPushManager, Mockito.times(2)).push(Mockito.eq("/topic/logs/job"), captor.capture());
+
+        List<String> lines = new LinkedList<>();
+        for (byte[] frame : captor.getAllValues()) {
+            lines.addAll(decode(frame));
+        }
+
+        Assert.assertEquals(100, lines.size());
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals("step:line-" + i, lines.get(i));
+        }
+    }
+
+    @Test
+    public void should_push_pending_logs_when_flush_job() {
+        StepLogPusherImpl pusher = new StepLogPusherImpl(socketPushManager, "/topic/logs", 1024);
+        pusher.push("job-1", new StepLogItem("step-1", bytes("hello")));
+        pusher.push("job-2", new StepLogItem("step-2", bytes("world")));
+
+        pusher.flush("job-1");
+
+        ArgumentCaptor<byte[]> captor = ArgumentCaptor.forClass(byte[].class);
+        Mockito.verify(socketPushManager, Mockito.times(1)).push(Mockito.eq("/topic/logs/job-1"), captor.capture());
+        Assert.assertEquals("step-1:hello", decode(captor.getValue()).get(0));
+        Mockito.verify(socketPushManager, Mockito.never()).push(Mockito.eq("/topic/logs/job-2"), Mockito.any(byte[].class));
+    }
+
+    @Test
+    public void should_not_block_push_while_sending() throws Exception {
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<byte[]> frames = Collections.synchronizedList(new LinkedList<>());
+
+        Mockito.doAnswer(invocation -> {
+            sending.countDown();
+            release.await();
+            frames.add(invocation.getArgument(1));
+            return null;
+        }).when(socketPushManager).push(Mockito.anyString(), Mockito.any(byte[].class));
+
+        // push frame over max bytes, the thread is blocked by sending
+        StepLogPusherImpl pusher = new StepLogPusherImpl(socketPushManager, "/topic/logs", 8);
+        Thread first = new Thread(() -> pusher.push("job", new StepLogItem("step", bytes("line-0"))));
+        first.start();
+        Assert.assertTrue(sending.await(5, TimeUnit.SECONDS));
+
+        // then: push returns since the frames are sent by the first thread
+        for (int i = 1; i < 10; i++) {
+            pusher.push("job", new StepLogItem("step", bytes("line-" + i)));
+        }
+
+        release.countDown();
+        first.join(5000);
+
+        List<String> lines = new LinkedList<>();
+        for (byte[] frame : frames) {
+            lines.addAll(decode(frame));
+        }
+
+        Assert.assertEquals(10, lines.size());
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals("step:line-" + i, lines.get(i));
+        }
+    }
+
+    private static List<String> decode(byte[] frame) {
+        List<String> lines = new LinkedList<>();
+        ByteBuffer buffer = ByteBuffer.wrap(frame);
+
+        while (buffer.hasRemaining()) {
+            int length = buffer.getInt();
+            byte[] id = new byte[buffer.getShort()];
+            buffer.get(id);
+
+            byte[] content = new byte[length - 2 - id.length];
+            buffer.get(content);
+
+            lines.add(new String(id, StandardCharsets.UTF_8) + ":" + new String(content, StandardCharsets.UTF_8));
+        }
+
+        return lines;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
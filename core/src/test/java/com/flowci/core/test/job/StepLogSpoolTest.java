@@ -0,0 +1,136 @@
+package com.flowci.core.test.job;
+
+import com.flowci.core.job.manager.StepLogSpoolImpl;
+import com.google.common.io.ByteStreams;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPInputStream;
+
+public class StepLogSpoolTest {
+
+    private Path dir;
+
+    private StepLogSpoolImpl spool;
+
+    @Before
+    public void init() throws IOException {
+        dir = Files.createTempDirectory("step-log-spool");
+        spool = new StepLogSpoolImpl(dir, 1024);
+    }
+
+    @After
+    public void clean() throws IOException {
+        FileSystemUtils.deleteRecursively(dir);
+    }
+
+    @Test
+    public void should_spool_and_read_log_by_range() throws IOException {
+        Assert.assertFalse(spool.append("step", bytes("ignored\n")));
+        Assert.assertEquals(-1, spool.length("flow", "step"));
+
+        spool.open("flow", "step");
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            String line = "line of log " + i + "\n";
+            expected.append(line);
+            Assert.assertTrue(spool.append("step", bytes(line)));
+        }
+
+        // pending log read from memory
+        String all = expected.toString();
+        Assert.assertEquals(all.length(), spool.length("flow", "step"));
+        Assert.assertEquals(all, string(spool.read("flow", "step", 0, all.length())));
+
+        // range across blocks
+        Assert.assertEquals(all.substring(1000, 5000), string(spool.read("flow", "step", 1000, 4000)));
+        Assert.assertEquals(all.substring(all.length() - 10), string(spool.read("flow", "step", all.length() - 10, 100)));
+        Assert.assertEquals("", string(spool.read("flow", "step", all.length(), 100)));
+
+        // data file is a valid gzip file
+        spool.close("step");
+        Path data = dir.resolve("flow").resolve("step.log.gz");
+        try (InputStream gzip = new GZIPInputStream(Files.newInputStream(data))) {
+            Assert.assertEquals(all, string(gzip));
+        }
+        Assert.assertTrue(Files.size(data) < all.length() / 2);
+
+        spool.delete("flow");
+        Assert.assertFalse(Files.exists(dir.resolve("flow")));
+    }
+
+    @Test
+    public void should_continue_from_last_block_when_reopen() throws IOException {
+        spool.open("flow", "step");
+        spool.append("step", bytes("hello\n"));
+        spool.close("step");
+
+        // incomplete block written by crashed server
+        Path data = dir.resolve("flow").resolve("step.log.gz");
+        Files.write(data, new byte[]{1, 2, 3}, StandardOpenOption.APPEND);
+
+        StepLogSpoolImpl restarted = new StepLogSpoolImpl(dir, 1024);
+        restarted.open("flow", "step");
+        restarted.append("step", bytes("world\n"));
+        restarted.close("step");
+
+        Assert.assertEquals(12, restarted.length("flow", "step"));
+        Assert.assertEquals("hello\nworld\n", string(restarted.read("flow", "step", 0, 12)));
+    }
+
+    @Test
+    public void should_read_pending_log_without_writing_block() throws IOException {
+        spool.open("flow", "step");
+        spool.append("step", bytes("hello\n"));
+
+        Assert.assertEquals(6, spool.length("flow", "step"));
+        Assert.assertEquals("ello\n", string(spool.read("flow", "step", 1, 10)));
+        Assert.assertFalse(Files.exists(dir.resolve("flow").resolve("step.log.idx")));
+
+        spool.flush();
+        spool.append("step", bytes("world\n"));
+
+        Assert.assertEquals(12, spool.length("flow", "step"));
+        Assert.assertEquals("o\nwor", string(spool.read("flow", "step", 4, 5)));
+        Assert.assertEquals(16, Files.size(dir.resolve("flow").resolve("step.log.idx")));
+
+        // pending log discarded when deleted
+        spool.delete("flow", "step");
+        Assert.assertFalse(spool.append("step", bytes("ignored\n")));
+        Assert.assertEquals(-1, spool.length("flow", "step"));
+        Assert.assertFalse(Files.exists(dir.resolve("flow").resolve("step.log.gz")));
+    }
+
+    @Test
+    public void should_write_pending_log_when_close_all() throws IOException {
+        spool.open("flow", "step-1");
+        spool.open("flow", "step-2");
+        spool.append("step-1", bytes("hello\n"));
+        spool.append("step-2", bytes("world\n"));
+
+        spool.closeAll();
+
+        Assert.assertFalse(spool.append("step-1", bytes("ignored\n")));
+        Assert.assertEquals("hello\n", string(spool.read("flow", "step-1", 0, 6)));
+        Assert.assertEquals("world\n", string(spool.read("flow", "step-2", 0, 6)));
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(InputStream stream) throws IOException {
+        try (InputStream in = stream) {
+            return new String(ByteStreams.toByteArray(in), StandardCharsets.UTF_8);
+        }
+    }
+}
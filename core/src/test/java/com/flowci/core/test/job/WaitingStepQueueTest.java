@@ -0,0 +1,74 @@
+package com.flowci.core.test.job;
+
+import com.flowci.core.agent.domain.Agent;
+import com.flowci.core.job.domain.Job;
+import com.flowci.core.job.domain.Step;
+import com.flowci.core.job.domain.WaitingStep;
+import com.flowci.core.job.event.WaitingStepEvent;
+import com.flowci.core.job.manager.WaitingStepQueueImpl;
+import com.flowci.tree.Selector;
+import com.google.common.collect.ImmutableSet;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+
+public class WaitingStepQueueTest {
+
+    private final WaitingStepQueueImpl queue = new WaitingStepQueueImpl();
+
+    @Test
+    public void should_poll_matched_step_by_priority_and_build_number() {
+        WaitingStep s1 = create("job-1", 1L, Job.MinPriority, new Selector("linux"));
+        WaitingStep s2 = create("job-2", 2L, Job.MinPriority, new Selector("linux"));
+        WaitingStep s3 = create("job-3", 3L, Job.MaxPriority, new Selector("linux"));
+        WaitingStep s4 = create("job-4", 1L, Job.MaxPriority, new Selector("mac"));
+
+        queue.putBack(s2);
+        queue.putBack(s1);
+        queue.putBack(s3);
+        queue.putBack(s4);
+        Assert.assertEquals(4, queue.size());
+
+        Agent agent = new Agent("linux-agent", ImmutableSet.of("linux"));
+        Assert.assertEquals(s3, queue.peek(agent).get());
+        Assert.assertEquals(4, queue.size());
+
+        Assert.assertEquals(s3, queue.poll(agent).get());
+        Assert.assertEquals(s1, queue.poll(agent).get());
+        Assert.assertEquals(s2, queue.poll(agent).get());
+        Assert.assertFalse(queue.poll(agent).isPresent());
+
+        Agent untagged = new Agent("agent", Collections.emptySet());
+        Assert.assertFalse(queue.poll(untagged).isPresent());
+        Assert.assertEquals(1, queue.size());
+    }
+
+    @Test
+    public void should_remove_step_from_event() {
+        WaitingStep s1 = create("job-1", 1L, Job.MinPriority, Selector.EMPTY);
+        queue.onWaitingStepChanged(new WaitingStepEvent(this, s1, true));
+        Assert.assertEquals(1, queue.size());
+
+        WaitingStep removed = new WaitingStep();
+        removed.setJobId(s1.getJobId());
+        removed.setNodePath(s1.getNodePath());
+        queue.onWaitingStepChanged(new WaitingStepEvent(this, removed, false));
+
+        Assert.assertEquals(0, queue.size());
+        Assert.assertFalse(queue.poll(new Agent("agent", Collections.emptySet())).isPresent());
+    }
+
+    private static WaitingStep create(String jobId, Long buildNumber, Integer priority, Selector selector) {
+        Job job = new Job();
+        job.setId(jobId);
+        job.setFlowId("flow");
+        job.setBuildNumber(buildNumber);
+        job.setPriority(priority);
+
+        Step step = new Step();
+        step.setNodePath("flow/step");
+
+        return new WaitingStep(job, step, selector);
+    }
+}
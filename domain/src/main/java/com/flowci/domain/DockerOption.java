@@ -24,6 +24,7 @@ import lombok.Setter;
 import lombok.experimental.Accessors;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -70,4 +71,33 @@ public class DockerOption implements Serializable {
     public boolean hasName() {
         return StringHelper.hasValue(name);
     }
+
+    /**
+     * Field-wise deep copy
+     */
+    public DockerOption copy() {
+        DockerOption copy = new DockerOption();
+        copy.image = image;
+        copy.auth = auth;
+        copy.name = name;
+        copy.entrypoint = entrypoint == null ? null : new LinkedList<>(entrypoint);
+        copy.command = command == null ? null : new LinkedList<>(command);
+        copy.network = network;
+        copy.user = user;
+        copy.environment = environment == null ? null : new HashMap<>(environment);
+        copy.runtime = runtime;
+        copy.ports = ports == null ? null : new LinkedList<>(ports);
+        copy.stopContainer = stopContainer;
+        copy.deleteContainer = deleteContainer;
+        copy.containerId = containerId;
+        return copy;
+    }
+
+    public static List<DockerOption> copy(List<DockerOption> options) {
+        List<DockerOption> list = new ArrayList<>(options.size());
+        for (DockerOption option : options) {
+            list.add(option.copy());
+        }
+        return list;
+    }
 }
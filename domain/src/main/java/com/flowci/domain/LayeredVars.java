@@ -0,0 +1,239 @@
+/*
+ * Copyright 2020 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.domain;
+
+import com.fasterxml.jackson.annotation.JsonTypeName;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Copy-on-write string vars on top of read-only layers
+ * - layers are referenced, not copied, the former layer has higher priority
+ * - put writes to own entries which have the highest priority
+ * - get and containsKey look up layers without copying
+ * - layers are flattened into own entries on other operations, ex: iteration, size, remove, serialization
+ *
+ * Layers must not be changed before flattened
+ *
+ * @author yang
+ */
+@JsonTypeName(Vars.JSON_STRING_TYPE)
+public class LayeredVars extends StringVars {
+
+    private List<Map<String, String>> layers;
+
+    @SafeVarargs
+    public LayeredVars(Map<String, String>... layers) {
+        this(Arrays.asList(layers));
+    }
+
+    public LayeredVars(List<? extends Map<String, String>> layers) {
+        super();
+        this.layers = new ArrayList<>(layers.size());
+        for (Map<String, String> layer : layers) {
+            if (layer != null && !layer.isEmpty()) {
+                this.layers.add(layer);
+            }
+        }
+    }
+
+    public boolean isFlattened() {
+        return layers == null;
+    }
+
+    @Override
+    public String get(Object key) {
+        String value = super.get(key);
+        if (value != null || layers == null || super.containsKey(key)) {
+            return value;
+        }
+
+        for (Map<String, String> layer : layers) {
+            value = layer.get(key);
+            if (value != null || layer.containsKey(key)) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        if (super.containsKey(key)) {
+            return true;
+        }
+
+        if (layers != null) {
+            for (Map<String, String> layer : layers) {
+                if (layer.containsKey(key)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String getOrDefault(Object key, String defaultValue) {
+        return containsKey(key) ? get(key) : defaultValue;
+    }
+
+    @Override
+    public int size() {
+        flatten();
+        return super.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        flatten();
+        return super.isEmpty();
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        flatten();
+        return super.containsValue(value);
+    }
+
+    @Override
+    public String remove(Object key) {
+        flatten();
+        return super.remove(key);
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        flatten();
+        return super.remove(key, value);
+    }
+
+    @Override
+    public void clear() {
+        layers = null;
+        super.clear();
+    }
+
+    @Override
+    public Set<String> keySet() {
+        flatten();
+        return super.keySet();
+    }
+
+    @Override
+    public Collection<String> values() {
+        flatten();
+        return super.values();
+    }
+
+    @Override
+    public Set<Map.Entry<String, String>> entrySet() {
+        flatten();
+        return super.entrySet();
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super String, ? super String> action) {
+        flatten();
+        super.forEach(action);
+    }
+
+    @Override
+    public void replaceAll(BiFunction<? super String, ? super String, ? extends String> function) {
+        flatten();
+        super.replaceAll(function);
+    }
+
+    @Override
+    public String putIfAbsent(String key, String value) {
+        flatten();
+        return super.putIfAbsent(key, value);
+    }
+
+    @Override
+    public boolean replace(String key, String oldValue, String newValue) {
+        flatten();
+        return super.replace(key, oldValue, newValue);
+    }
+
+    @Override
+    public String replace(String key, String value) {
+        flatten();
+        return super.replace(key, value);
+    }
+
+    @Override
+    public String computeIfAbsent(String key, Function<? super String, ? extends String> mappingFunction) {
+        flatten();
+        return super.computeIfAbsent(key, mappingFunction);
+    }
+
+    @Override
+    public String computeIfPresent(String key, BiFunction<? super String, ? super String, ? extends String> remappingFunction) {
+        flatten();
+        return super.computeIfPresent(key, remappingFunction);
+    }
+
+    @Override
+    public String compute(String key, BiFunction<? super String, ? super String, ? extends String> remappingFunction) {
+        flatten();
+        return super.compute(key, remappingFunction);
+    }
+
+    @Override
+    public String merge(String key, String value, BiFunction<? super String, ? super String, ? extends String> remappingFunction) {
+        flatten();
+        return super.merge(key, value, remappingFunction);
+    }
+
+    @Override
+    public Object clone() {
+        flatten();
+        return super.clone();
+    }
+
+    /**
+     * Serialize as flattened StringVars
+     */
+    protected Object writeReplace() {
+        return new StringVars(this);
+    }
+
+    /**
+     * Copy entries of layers which are not in own entries, from the lowest layer
+     * to keep the insertion order as merging layers one by one
+     */
+    private void flatten() {
+        if (layers == null) {
+            return;
+        }
+
+        List<Map<String, String>> list = layers;
+        layers = null;
+
+        Map<String, String> own = new LinkedHashMap<>(this);
+        super.clear();
+
+        for (int i = list.size() - 1; i >= 0; i--) {
+            super.putAll(list.get(i));
+        }
+        super.putAll(own);
+    }
+}
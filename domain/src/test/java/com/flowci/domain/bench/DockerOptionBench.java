@@ -0,0 +1,79 @@
+/*
+ * Copyright 2020 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.domain.bench;
+
+import com.flowci.domain.DockerOption;
+import com.flowci.util.ObjectsHelper;
+import com.google.common.collect.Lists;
+
+import java.util.List;
+
+/**
+ * Compare time of copying docker options field-wise and by serialization, it is not a unit test and not run by surefire
+ * <p>
+ * Run from the domain module after mvn test-compile:
+ * java -cp target/classes:target/test-classes:{dependencies} com.flowci.domain.bench.DockerOptionBench [options] [rounds]
+ */
+public final class DockerOptionBench {
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+
+        List<DockerOption> options = Lists.newArrayListWithCapacity(size);
+        for (int i = 0; i < size; i++) {
+            options.add(createOption(i));
+        }
+
+        // warm up
+        for (int i = 0; i < rounds; i++) {
+            DockerOption.copy(options);
+            ObjectsHelper.copy(options);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            ObjectsHelper.copy(options);
+        }
+        long serializationTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            DockerOption.copy(options);
+        }
+        long copyTime = System.nanoTime() - start;
+
+        System.out.printf("copy %d docker options: serialization %.2f us, field-wise %.2f us%n",
+                size, serializationTime / 1e3 / rounds, copyTime / 1e3 / rounds);
+    }
+
+    private static DockerOption createOption(int index) {
+        DockerOption option = new DockerOption();
+        option.setImage("mysql:5.6");
+        option.setName("mysql-container-" + index);
+        option.setEntrypoint(Lists.newArrayList("/bin/sh"));
+        option.setCommand(Lists.newArrayList("mysqld", "--user=mysql"));
+        option.setNetwork("host");
+        option.getEnvironment().put("MYSQL_ROOT_PASSWORD", "12345");
+        option.getPorts().add("3306:3306");
+        option.setRuntime(true);
+        return option;
+    }
+
+    private DockerOptionBench() {
+    }
+}
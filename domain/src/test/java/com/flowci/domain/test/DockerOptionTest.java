@@ -0,0 +1,93 @@
+/*
+ * Copyright 2020 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.domain.test;
+
+import com.flowci.domain.DockerOption;
+import com.google.common.collect.Lists;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+/**
+ * @author yang
+ */
+public class DockerOptionTest {
+
+    @Test
+    public void should_copy_all_fields() {
+        DockerOption option = createOption();
+        DockerOption copy = option.copy();
+
+        Assert.assertNotSame(option, copy);
+        Assert.assertEquals(option.getImage(), copy.getImage());
+        Assert.assertEquals(option.getAuth(), copy.getAuth());
+        Assert.assertEquals(option.getName(), copy.getName());
+        Assert.assertEquals(option.getEntrypoint(), copy.getEntrypoint());
+        Assert.assertEquals(option.getCommand(), copy.getCommand());
+        Assert.assertEquals(option.getNetwork(), copy.getNetwork());
+        Assert.assertEquals(option.getUser(), copy.getUser());
+        Assert.assertEquals(option.getEnvironment(), copy.getEnvironment());
+        Assert.assertEquals(option.getPorts(), copy.getPorts());
+        Assert.assertEquals(option.isRuntime(), copy.isRuntime());
+        Assert.assertEquals(option.isStopContainer(), copy.isStopContainer());
+        Assert.assertEquals(option.isDeleteContainer(), copy.isDeleteContainer());
+        Assert.assertEquals(option.getContainerId(), copy.getContainerId());
+
+        // modify copy should not change the source
+        copy.setName("changed");
+        copy.getEntrypoint().add("-c");
+        copy.getEnvironment().put("NEW", "value");
+        copy.getPorts().clear();
+
+        Assert.assertEquals("mysql-container", option.getName());
+        Assert.assertEquals(1, option.getEntrypoint().size());
+        Assert.assertFalse(option.getEnvironment().containsKey("NEW"));
+        Assert.assertEquals(1, option.getPorts().size());
+    }
+
+    @Test
+    public void should_copy_list_of_options() {
+        List<DockerOption> options = Lists.newArrayList(createOption(), createOption());
+        options.get(1).setName("redis-container");
+
+        List<DockerOption> copies = DockerOption.copy(options);
+        Assert.assertEquals(options.size(), copies.size());
+
+        for (int i = 0; i < options.size(); i++) {
+            Assert.assertNotSame(options.get(i), copies.get(i));
+            Assert.assertEquals(options.get(i).getName(), copies.get(i).getName());
+            Assert.assertEquals(options.get(i).getEnvironment(), copies.get(i).getEnvironment());
+        }
+
+        copies.get(0).getEnvironment().clear();
+        Assert.assertEquals(1, options.get(0).getEnvironment().size());
+    }
+
+    private static DockerOption createOption() {
+        DockerOption option = new DockerOption();
+        option.setImage("mysql:5.6");
+        option.setName("mysql-container");
+        option.setEntrypoint(Lists.newArrayList("/bin/sh"));
+        option.setCommand(Lists.newArrayList("mysqld", "--user=mysql"));
+        option.setNetwork("host");
+        option.getEnvironment().put("MYSQL_ROOT_PASSWORD", "12345");
+        option.getPorts().add("3306:3306");
+        option.setRuntime(true);
+        return option;
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2020 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.domain.test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.flowci.domain.LayeredVars;
+import com.flowci.domain.StringVars;
+import com.flowci.domain.Vars;
+import com.flowci.util.ObjectsHelper;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+
+/**
+ * @author yang
+ */
+public class LayeredVarsTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    public void should_get_value_from_layers_without_flatten() {
+        StringVars step = new StringVars();
+        step.put("A", "step");
+
+        StringVars context = new StringVars();
+        context.put("A", "context");
+        context.put("B", "context");
+
+        LayeredVars vars = new LayeredVars(step, context);
+        vars.put("C", "own");
+
+        Assert.assertEquals("step", vars.get("A"));
+        Assert.assertEquals("context", vars.get("B"));
+        Assert.assertEquals("own", vars.get("C"));
+        Assert.assertEquals("default", vars.get("D", "default"));
+        Assert.assertTrue(vars.containsKey("B"));
+        Assert.assertFalse(vars.containsKey("D"));
+        Assert.assertFalse(vars.isFlattened());
+
+        // own entry has the highest priority
+        vars.put("A", "own");
+        Assert.assertEquals("own", vars.get("A"));
+
+        // layers not changed
+        Assert.assertEquals("step", step.get("A"));
+        Assert.assertEquals(1, step.size());
+        Assert.assertEquals(2, context.size());
+    }
+
+    @Test
+    public void should_flatten_on_iteration_and_remove() {
+        StringVars step = new StringVars();
+        step.put("A", "step");
+
+        StringVars context = new StringVars();
+        context.put("A", "context");
+        context.put("B", "context");
+
+        LayeredVars vars = new LayeredVars(step, context);
+        Assert.assertEquals(2, vars.size());
+        Assert.assertTrue(vars.isFlattened());
+        Assert.assertEquals("step", vars.get("A"));
+
+        vars.remove("B");
+        Assert.assertNull(vars.get("B"));
+        Assert.assertEquals("context", context.get("B"));
+
+        // merge works as StringVars
+        StringVars merged = new StringVars();
+        merged.merge(new LayeredVars(step, context));
+        Assert.assertEquals(2, merged.size());
+        Assert.assertEquals("step", merged.get("A"));
+    }
+
+    @Test
+    public void should_serialize_as_string_vars() throws IOException {
+        StringVars step = new StringVars();
+        step.put("A", "step");
+
+        StringVars context = new StringVars();
+        context.put("B", "context");
+
+        Vars<String> vars = new LayeredVars(step, context).putAndReturn("C", "own");
+
+        String json = mapper.writeValueAsString(vars);
+        Assert.assertTrue(json.contains("\"" + Vars.JSON_TYPE_FIELD + "\":\"" + Vars.JSON_STRING_TYPE + "\""));
+
+        StringVars fromJson = mapper.readValue(json, StringVars.class);
+        Assert.assertEquals(vars, fromJson);
+
+        Vars<String> copied = ObjectsHelper.copy(new LayeredVars(step, context));
+        Assert.assertEquals(StringVars.class, copied.getClass());
+        Assert.assertEquals("step", copied.get("A"));
+        Assert.assertEquals("context", copied.get("B"));
+    }
+}
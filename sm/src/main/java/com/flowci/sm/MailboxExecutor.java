@@ -0,0 +1,87 @@
+package com.flowci.sm;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Run tasks in a serial mailbox per key, like an actor for each key
+ * - tasks with the same key are executed one by one in submit order
+ * - tasks with different keys are executed in parallel on the executor
+ * - the mailbox is removed once it's empty
+ * - the mailbox is drained on the caller thread if the executor rejected it
+ */
+public class MailboxExecutor {
+
+    private final Executor executor;
+
+    // key : pending tasks, the key is present only if its mailbox is running
+    private final Map<String, Queue<Runnable>> mailboxes = new ConcurrentHashMap<>();
+
+    public MailboxExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    public CompletableFuture<Void> submit(String key, Runnable task) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        Runnable wrapper = () -> {
+            try {
+                task.run();
+                future.complete(null);
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        };
+
+        boolean[] isNew = {false};
+        mailboxes.compute(key, (k, tasks) -> {
+            if (tasks == null) {
+                tasks = new ArrayDeque<>();
+                isNew[0] = true;
+            }
+            tasks.add(wrapper);
+            return tasks;
+        });
+
+        if (isNew[0]) {
+            try {
+                executor.execute(() -> drain(key));
+            } catch (RejectedExecutionException e) {
+                // the mailbox must be drained, otherwise tasks of the key are queued forever
+                drain(key);
+            }
+        }
+
+        return future;
+    }
+
+    /**
+     * Num of running mailboxes
+     */
+    public int size() {
+        return mailboxes.size();
+    }
+
+    private void drain(String key) {
+        Runnable next;
+        while ((next = poll(key)) != null) {
+            next.run();
+        }
+    }
+
+    /**
+     * Poll next task of the mailbox, and remove the mailbox if no more tasks
+     */
+    private Runnable poll(String key) {
+        Runnable[] next = {null};
+        mailboxes.computeIfPresent(key, (k, tasks) -> {
+            next[0] = tasks.poll();
+            return next[0] == null ? null : tasks;
+        });
+        return next[0];
+    }
+}
@@ -1,20 +1,28 @@
 package com.flowci.sm;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
 import lombok.Getter;
-import lombok.RequiredArgsConstructor;
 import lombok.Setter;
 import lombok.extern.log4j.Log4j2;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 @Log4j2
 @Setter
 @Getter
-@RequiredArgsConstructor
 public class StateMachine<T extends Context> {
 
+    public static final String MetricTransition = "sm.transition";
+
+    public static final String MetricTransitionErrors = "sm.transition.errors";
+
     private final Map<Status, Map<Status, Action<T>>> actions = new HashMap<>();
 
     private final Map<Status, List<Consumer<T>>> hooksOnTargetStatus = new HashMap<>();
@@ -23,6 +31,21 @@ public class StateMachine<T extends Context> {
 
     private final Executor executor;
 
+    private final MailboxExecutor mailbox;
+
+    private final MeterRegistry registry;
+
+    public StateMachine(String name, Executor executor) {
+        this(name, executor, Metrics.globalRegistry);
+    }
+
+    public StateMachine(String name, Executor executor, MeterRegistry registry) {
+        this.name = name;
+        this.executor = executor;
+        this.mailbox = executor == null ? null : new MailboxExecutor(executor);
+        this.registry = registry;
+    }
+
     public void addHookActionOnTargetStatus(Consumer<T> action, Status... targets) {
         for (Status target : targets) {
             List<Consumer<T>> actions = hooksOnTargetStatus.computeIfAbsent(target, status -> new LinkedList<>());
@@ -46,6 +69,23 @@ public class StateMachine<T extends Context> {
         execute(context);
     }
 
+    /**
+     * Execute transition in the mailbox of the key on executor, transitions with the same key are executed in order
+     *
+     * @param key     mailbox key, ex: job id
+     * @param context create context when transition is executing, skip the transition if null returned
+     */
+    public CompletableFuture<Void> executeAsync(String key, Supplier<T> context) {
+        Objects.requireNonNull(mailbox, "SM executor is missing");
+
+        return mailbox.submit(key, () -> {
+            T c = context.get();
+            if (c != null) {
+                execute(c);
+            }
+        });
+    }
+
     public void execute(T context) {
         Status current = context.getCurrent();
         Status target = context.getTo();
@@ -68,6 +108,9 @@ public class StateMachine<T extends Context> {
             return;
         }
 
+        // duration includes nested transitions executed within the action
+        Timer.Sample sample = Timer.start(registry);
+
         try {
             action.accept(context);
 
@@ -85,12 +128,29 @@ public class StateMachine<T extends Context> {
 
         } catch (Throwable e) {
             log.debug(e);
+            errorCounter(current, target).increment();
             action.onException(e, context);
         } finally {
             action.onFinally(context);
+            sample.stop(timer(current, target));
         }
     }
 
+    private Timer timer(Status from, Status to) {
+        return Timer.builder(MetricTransition)
+                .description("State machine transition duration")
+                .tags("sm", name, "from", from.getName(), "to", to.getName())
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private Counter errorCounter(Status from, Status to) {
+        return Counter.builder(MetricTransitionErrors)
+                .description("State machine transition errors")
+                .tags("sm", name, "from", from.getName(), "to", to.getName())
+                .register(registry);
+    }
+
     private boolean isOnSameContext(Status current, Status target, T context) {
         return context.getTo() == target && context.getCurrent() == current;
     }
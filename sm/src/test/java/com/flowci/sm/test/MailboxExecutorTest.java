@@ -0,0 +1,106 @@
+package com.flowci.sm.test;
+
+import com.flowci.sm.MailboxExecutor;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+
+public class MailboxExecutorTest {
+
+    private final ExecutorService pool = Executors.newFixedThreadPool(4);
+
+    private final MailboxExecutor mailbox = new MailboxExecutor(pool);
+
+    @After
+    public void cleanup() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    public void should_run_tasks_in_order_for_same_key() throws Exception {
+        List<Integer> results = Collections.synchronizedList(new ArrayList<>());
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+
+        for (int i = 0; i < 100; i++) {
+            final int n = i;
+            futures.add(mailbox.submit("job-1", () -> results.add(n)));
+        }
+
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+
+        Assert.assertEquals(100, results.size());
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals(i, results.get(i).intValue());
+        }
+
+        // mailbox is removed after the last task completed
+        for (int i = 0; i < 100 && mailbox.size() > 0; i++) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(0, mailbox.size());
+    }
+
+    @Test
+    public void should_run_tasks_in_parallel_for_different_keys() throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+
+        // job-1 is blocked until job-2 finished
+        CompletableFuture<Void> first = mailbox.submit("job-1", () -> {
+            try {
+                blocked.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException ignore) {
+            }
+        });
+
+        mailbox.submit("job-2", blocked::countDown).get(10, TimeUnit.SECONDS);
+        first.get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void should_drain_on_caller_thread_if_rejected() throws Exception {
+        ThreadPoolExecutor single = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(1), new ThreadPoolExecutor.AbortPolicy());
+        MailboxExecutor bounded = new MailboxExecutor(single);
+
+        try {
+            // occupy the thread and the queue of executor
+            CountDownLatch blocked = new CountDownLatch(1);
+            Runnable block = () -> {
+                try {
+                    blocked.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException ignore) {
+                }
+            };
+            CompletableFuture<Void> first = bounded.submit("job-1", block);
+            CompletableFuture<Void> second = bounded.submit("job-2", block);
+
+            // rejected by executor, run on the caller thread
+            Thread caller = Thread.currentThread();
+            List<Thread> threads = new ArrayList<>();
+            bounded.submit("job-3", () -> threads.add(Thread.currentThread())).get(10, TimeUnit.SECONDS);
+            Assert.assertEquals(caller, threads.get(0));
+
+            // following tasks of the key are not stuck
+            bounded.submit("job-3", () -> threads.add(Thread.currentThread())).get(10, TimeUnit.SECONDS);
+            Assert.assertEquals(2, threads.size());
+
+            blocked.countDown();
+            first.get(10, TimeUnit.SECONDS);
+            second.get(10, TimeUnit.SECONDS);
+        } finally {
+            single.shutdownNow();
+        }
+    }
+
+    @Test(expected = ExecutionException.class)
+    public void should_complete_exceptionally_if_task_failed() throws Exception {
+        mailbox.submit("job-1", () -> {
+            throw new IllegalStateException();
+        }).get(10, TimeUnit.SECONDS);
+    }
+}
@@ -1,11 +1,17 @@
 package com.flowci.sm.test;
 
 import com.flowci.sm.*;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 
 public class StateMachineTest {
 
@@ -79,4 +85,83 @@ public class StateMachineTest {
         Assert.assertTrue(shouldNotExecute.get());
         Assert.assertTrue(shouldExecuteOnHook.get());
     }
+
+    @Test
+    public void should_record_transition_time_and_errors() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        StateMachine<TestContext> sm = new StateMachine<>("METRICS", null, registry);
+
+        sm.add(AtoB, new Action<TestContext>() {
+            @Override
+            public void accept(TestContext ctx) {
+            }
+        });
+
+        sm.add(AtoC, new Action<TestContext>() {
+            @Override
+            public void accept(TestContext ctx) {
+                throw new IllegalStateException();
+            }
+        });
+
+        sm.execute(A, B, new TestContext());
+        sm.execute(A, B, new TestContext());
+        sm.execute(A, C, new TestContext());
+
+        Assert.assertEquals(2, registry.get(StateMachine.MetricTransition).tags("from", "A", "to", "B").timer().count());
+        Assert.assertEquals(1, registry.get(StateMachine.MetricTransition).tags("from", "A", "to", "C").timer().count());
+        Assert.assertEquals(1.0, registry.get(StateMachine.MetricTransitionErrors).tags("to", "C").counter().count(), 0.0);
+        Assert.assertNull(registry.find(StateMachine.MetricTransitionErrors).tags("to", "B").counter());
+    }
+
+    @Test
+    public void should_execute_transitions_of_key_in_order_even_if_executor_rejected() throws Exception {
+        ThreadPoolExecutor single = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(1), new ThreadPoolExecutor.AbortPolicy());
+
+        try {
+            StateMachine<TestContext> sm = new StateMachine<>("ASYNC", single, new SimpleMeterRegistry());
+            List<String> executed = Collections.synchronizedList(new ArrayList<>());
+
+            sm.add(AtoB, new Action<TestContext>() {
+                @Override
+                public void accept(TestContext ctx) throws Exception {
+                    executed.add(Thread.currentThread().getName());
+                }
+            });
+
+            // occupy the thread and queue of executor by other keys
+            CountDownLatch blocked = new CountDownLatch(1);
+            Supplier<TestContext> waiting = () -> {
+                try {
+                    blocked.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException ignore) {
+                }
+                return null;
+            };
+            CompletableFuture<Void> other1 = sm.executeAsync("job-1", waiting);
+            CompletableFuture<Void> other2 = sm.executeAsync("job-2", waiting);
+
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                futures.add(sm.executeAsync("job-3", () -> {
+                    TestContext context = new TestContext();
+                    context.setCurrent(A);
+                    context.setTo(B);
+                    return context;
+                }));
+            }
+
+            for (CompletableFuture<Void> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+            Assert.assertEquals(3, executed.size());
+
+            blocked.countDown();
+            other1.get(10, TimeUnit.SECONDS);
+            other2.get(10, TimeUnit.SECONDS);
+        } finally {
+            single.shutdownNow();
+        }
+    }
 }
@@ -36,6 +36,16 @@ public interface FileManager {
      */
     InputStream read(String fileName, Pathable... objs) throws IOException;
 
+    /**
+     * Read file content from offset with length
+     */
+    InputStream read(String fileName, long from, long length, Pathable... objs) throws IOException;
+
+    /**
+     * Get file size in bytes
+     */
+    long size(String fileName, Pathable... objs) throws IOException;
+
     /**
      * Remove file
      */
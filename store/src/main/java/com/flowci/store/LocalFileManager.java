@@ -19,12 +19,16 @@ package com.flowci.store;
 import com.flowci.util.FileHelper;
 
 import java.io.FileInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 
 /**
  * Local file system storage manager,
@@ -81,6 +85,32 @@ public class LocalFileManager implements FileManager {
         return new FileInputStream(target.toFile());
     }
 
+    @Override
+    public InputStream read(String fileName, long from, long length, Pathable... objs) throws IOException {
+        Path dir = connect(base, objs);
+        Path target = Paths.get(dir.toString(), fileName);
+
+        if (!Files.exists(target)) {
+            throw new IOException("File not found");
+        }
+
+        FileChannel channel = FileChannel.open(target, StandardOpenOption.READ);
+        channel.position(from);
+        return new LimitedInputStream(Channels.newInputStream(channel), length);
+    }
+
+    @Override
+    public long size(String fileName, Pathable... objs) throws IOException {
+        Path dir = connect(base, objs);
+        Path target = Paths.get(dir.toString(), fileName);
+
+        if (!Files.exists(target)) {
+            throw new IOException("File not found");
+        }
+
+        return Files.size(target);
+    }
+
     @Override
     public String remove(String fileName, Pathable... objs) throws IOException {
         Path dir = connect(base, objs);
@@ -105,4 +135,57 @@ public class LocalFileManager implements FileManager {
 
         return path;
     }
+
+    private static class LimitedInputStream extends FilterInputStream {
+
+        private long remaining;
+
+        LimitedInputStream(InputStream in, long length) {
+            super(in);
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+
+            int b = in.read();
+            if (b != -1) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+
+            int n = in.read(b, off, (int) Math.min(len, remaining));
+            if (n != -1) {
+                remaining -= n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = in.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(in.available(), remaining);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
 }
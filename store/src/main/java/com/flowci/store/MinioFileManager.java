@@ -106,6 +106,26 @@ public class MinioFileManager implements FileManager {
         }
     }
 
+    @Override
+    public InputStream read(String fileName, long from, long length, Pathable... objs) throws IOException {
+        try {
+            String objectName = getObjectName(objs) + fileName;
+            return minioClient.getObject(bucket, objectName, from, length);
+        } catch (Exception e) {
+            throw new IOException(e.getMessage());
+        }
+    }
+
+    @Override
+    public long size(String fileName, Pathable... objs) throws IOException {
+        try {
+            String objectName = getObjectName(objs) + fileName;
+            return minioClient.statObject(bucket, objectName).length();
+        } catch (Exception e) {
+            throw new IOException(e.getMessage());
+        }
+    }
+
     @Override
     public String remove(String fileName, Pathable... objs) throws IOException {
         try {
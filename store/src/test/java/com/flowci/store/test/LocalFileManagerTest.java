@@ -77,6 +77,17 @@ public class LocalFileManagerTest {
         Assert.assertFalse(exist);
     }
 
+    @Test
+    public void should_read_object_by_range() throws IOException {
+        final String fileName = "test.log";
+        final Pathable[] dir = {flow, job, logDir};
+        fileManager.save(fileName, StringHelper.toInputStream("hello world"), dir);
+
+        Assert.assertEquals(11, fileManager.size(fileName, dir));
+        Assert.assertEquals("lo wo", StringHelper.toString(fileManager.read(fileName, 3, 5, dir)));
+        Assert.assertEquals("world", StringHelper.toString(fileManager.read(fileName, 6, 100, dir)));
+    }
+
     @Test(expected = IOException.class)
     public void should_throw_exception_if_not_found() throws IOException {
         fileManager.read("hello", flow, job, logDir);
@@ -18,6 +18,7 @@ package com.flowci.tree;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.flowci.domain.DockerOption;
+import com.flowci.domain.LayeredVars;
 import com.flowci.domain.ObjectWrapper;
 import com.flowci.domain.StringVars;
 import com.flowci.util.StringHelper;
@@ -27,9 +28,11 @@ import lombok.Setter;
 import lombok.ToString;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.function.Function;
 
@@ -149,16 +152,19 @@ public abstract class Node implements Serializable {
         return !dockers.isEmpty();
     }
 
+    /**
+     * Envs of node and parents as layers, the inner node has higher priority
+     */
     @JsonIgnore
     public StringVars fetchEnvs() {
-        StringVars output = new StringVars();
+        List<Map<String, String>> layers = new ArrayList<>(path.depth());
 
         this.forEachBottomUp(this, (n) -> {
-            output.merge(n.getEnvironments(), false);
+            layers.add(n.getEnvironments());
             return true;
         });
 
-        return output;
+        return new LayeredVars(layers);
     }
 
     @JsonIgnore
@@ -20,7 +20,6 @@ import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Range;
 import com.google.common.collect.Sets;
-import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.ToString;
 import org.yaml.snakeyaml.error.YAMLException;
@@ -32,7 +31,6 @@ import java.util.*;
  * @author yang
  */
 @ToString(of = {"pathInStr"})
-@EqualsAndHashCode(of = {"pathInStr"})
 public final class NodePath implements Serializable {
 
     public static final String PathSeparator = "/";
@@ -48,6 +46,11 @@ public final class NodePath implements Serializable {
     @Getter
     private final String pathInStr;
 
+    private final int hash;
+
+    // lazy loaded if not created from parent
+    private transient NodePath parent;
+
     public static NodePath create(String... nameOrPaths) {
 
         return new NodePath(Arrays.asList(nameOrPaths));
@@ -59,7 +62,12 @@ public final class NodePath implements Serializable {
             paths.addAll(parentPath.paths);
         }
         paths.addAll(Arrays.asList(nameOrPaths));
-        return new NodePath(paths);
+
+        NodePath path = new NodePath(paths);
+        if (parentPath != null && path.depth() == parentPath.depth() + 1) {
+            path.parent = parentPath;
+        }
+        return path;
     }
 
     private NodePath(List<String> nameOrPaths) {
@@ -116,6 +124,7 @@ public final class NodePath implements Serializable {
             builder.append(name).append(PathSeparator);
         }
         pathInStr = builder.deleteCharAt(builder.length() - 1).toString();
+        hash = pathInStr.hashCode();
     }
 
     public int depth() {
@@ -130,12 +139,18 @@ public final class NodePath implements Serializable {
         return paths.size() == 1;
     }
 
+    /**
+     * Get parent path, or null if it's root path
+     */
     public NodePath parent() {
-        if ((paths.size() - 1) >= 0) {
-            paths.remove(paths.size() - 1);
-            return new NodePath(paths);
+        if (isRoot()) {
+            return null;
+        }
+
+        if (parent == null) {
+            parent = new NodePath(paths.subList(0, paths.size() - 1));
         }
-        return null;
+        return parent;
     }
 
     public NodePath root() {
@@ -146,6 +161,25 @@ public final class NodePath implements Serializable {
         return paths.get(paths.size() - 1);
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+
+        if (!(o instanceof NodePath)) {
+            return false;
+        }
+
+        NodePath that = (NodePath) o;
+        return hash == that.hash && pathInStr.equals(that.pathInStr);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
     /**
      * Validate node name with the criteria
      * - not empty
@@ -18,7 +18,6 @@ package com.flowci.tree;
 
 import com.flowci.exception.ArgumentException;
 import com.google.common.collect.Lists;
-import com.google.common.collect.Sets;
 import lombok.Getter;
 
 import java.util.*;
@@ -26,13 +25,10 @@ import java.util.*;
 /**
  * @author yang
  */
-@Getter
 public final class NodeTree {
 
     private static final int DefaultSize = 10;
 
-    private static final int DefaultSizeForPrev = 5;
-
     /**
      * Create node tree from FlowNode object
      */
@@ -41,35 +37,108 @@ public final class NodeTree {
     }
 
     /**
-     * Flatted nodes
+     * Flatted nodes, in order of node ordinal
      */
-    private final Map<NodePath, Node> flatted = new HashMap<>(DefaultSize);
+    @Getter
+    private final Map<NodePath, Node> flatted = new LinkedHashMap<>(DefaultSize);
 
+    @Getter
     private final FlowNode root;
 
+    @Getter
     private final Set<Node> ends = new HashSet<>();
 
+    @Getter
     private final Set<Selector> selectors = new HashSet<>();
 
+    @Getter
     private final Set<String> conditions = new HashSet<>(DefaultSize);
 
+    @Getter
     private final Set<String> plugins = new HashSet<>(DefaultSize);
 
+    @Getter
     private final Set<String> secrets = new HashSet<>(DefaultSize);
 
+    @Getter
     private final Set<String> configs = new HashSet<>(DefaultSize);
 
+    @Getter
     private int maxHeight = 1;
 
+    // ordinal : node, ordinal is the index of depth-first traversal
+    private final Node[] nodes;
+
+    // node path : ordinal, the interning table of path string
+    private final Map<String, Integer> ordinals;
+
+    // next of node i are nextIndices[nextOffsets[i] .. nextOffsets[i + 1])
+    private final int[] nextOffsets;
+
+    private final int[] nextIndices;
+
+    // prev of node i are prevIndices[prevOffsets[i] .. prevOffsets[i + 1])
+    private final int[] prevOffsets;
+
+    private final int[] prevIndices;
+
+    private final BitSet postSteps;
+
+    // ordinal : post steps after node
+    private final List<List<Node>> posts;
+
+    // ordinal : next nodes if node skipped
+    private final List<List<Node>> skips;
+
     public NodeTree(FlowNode root) {
+        this(root, null);
+    }
+
+    /**
+     * Create tree from nodes in ordinal order, which next and prev have been linked
+     * or build graph from root if linked nodes not given
+     */
+    NodeTree(FlowNode root, List<Node> linked) {
         this.root = root;
-        buildGraph(this.root);
+
+        if (linked == null) {
+            buildGraph(this.root);
+        } else {
+            for (Node node : linked) {
+                flatted.put(node.getPath(), node);
+                if (node instanceof ParallelStepNode) {
+                    maxHeight = Math.max(maxHeight, ((ParallelStepNode) node).getParallel().size());
+                }
+            }
+        }
+
         buildMetaData();
-        buildEndNodes();
+
+        this.nodes = flatted.values().toArray(new Node[0]);
+        this.ordinals = new HashMap<>(nodes.length);
+        for (int i = 0; i < nodes.length; i++) {
+            ordinals.put(nodes[i].getPathAsString(), i);
+        }
+
+        this.nextOffsets = new int[nodes.length + 1];
+        this.prevOffsets = new int[nodes.length + 1];
+        this.nextIndices = buildIndices(nextOffsets, true);
+        this.prevIndices = buildIndices(prevOffsets, false);
+
+        this.postSteps = new BitSet(nodes.length);
+        for (int i = 0; i < nodes.length; i++) {
+            postSteps.set(i, isPostStep(nodes[i]));
+            if (nextOffsets[i] == nextOffsets[i + 1]) {
+                ends.add(nodes[i]);
+            }
+        }
+
+        this.posts = buildPostSteps();
+        this.skips = buildSkips();
     }
 
     public int numOfNode() {
-        return flatted.size();
+        return nodes.length;
     }
 
     /**
@@ -81,103 +150,99 @@ public final class NodeTree {
         return ends;
     }
 
+    /**
+     * Get previous nodes of the nodes, or the closest previous post steps if post is true
+     */
     public Collection<Node> prevs(Collection<Node> nodes, boolean post) {
-        Collection<Node> ps = prevs(nodes);
+        BitSet selected = new BitSet(this.nodes.length);
+        for (Node n : nodes) {
+            prevs(ordinal(n), selected);
+        }
 
         if (!post) {
-            return ps;
+            return toNodes(selected);
         }
 
-        Set<Node> prevPost = new HashSet<>(DefaultSizeForPrev);
-        for (Node p : ps) {
-            if (isPostStep(p)) {
-                prevPost.add(p);
+        while (!selected.isEmpty() && !selected.intersects(postSteps)) {
+            BitSet ps = new BitSet(this.nodes.length);
+            for (int i = selected.nextSetBit(0); i >= 0; i = selected.nextSetBit(i + 1)) {
+                prevs(i, ps);
             }
+            selected = ps;
         }
 
-        if (prevPost.isEmpty()) {
-            return prevs(ps, true);
-        }
-
-        return prevPost;
+        selected.and(postSteps);
+        return toNodes(selected);
     }
 
     /**
      * Skip current node and return next nodes with the same root of current
      */
     public List<Node> skip(NodePath current) {
-        Node node = get(current);
-
-        Node parent = node.getParent();
-        if (parent == null) {
-            return Collections.emptyList();
-        }
-
-        if (parent instanceof ParallelStepNode) {
-            parent = parent.parent;
-        } else {
-            List<Node> children = parent.getChildren();
-            if (children.get(children.size() - 1).equals(node)) {
-                return node.next;
-            }
-        }
-
-        Node nextWithSameParent = findNextWithSameParent(node, parent);
-        if (nextWithSameParent == null) {
-            return Collections.emptyList();
-        }
-
-        return Lists.newArrayList(nextWithSameParent);
+        return skips.get(ordinal(current.getPathInStr()));
     }
 
     public List<Node> post(NodePath path) {
-        List<Node> post = findNextPost(NodePath.create(path));
-        Collections.reverse(post);
-        return post;
+        return posts.get(ordinal(path.getPathInStr()));
     }
 
     public List<Node> post(String path) {
-        List<Node> post = findNextPost(NodePath.create(path));
-        Collections.reverse(post);
-        return post;
+        return posts.get(ordinal(path));
+    }
+
+    /**
+     * Get canonical node path instance of the tree from path string
+     */
+    public NodePath path(String nodePath) {
+        return nodes[ordinal(nodePath)].getPath();
     }
 
     public Node get(NodePath path) {
-        Node node = flatted.get(path);
-        if (node == null) {
-            throw new ArgumentException("invalid node path {0}", path.getPathInStr());
-        }
-        return node;
+        return nodes[ordinal(path.getPathInStr())];
     }
 
     public Node get(String nodePath) {
-        return get(NodePath.create(nodePath));
+        return nodes[ordinal(nodePath)];
     }
 
     /**
-     * Get all previous node list from path
+     * Ordinal of node path, which is the index of flatted nodes, -1 if not in the tree
      */
-    private Collection<Node> prevs(Collection<Node> nodes) {
-        Set<Node> list = new HashSet<>(DefaultSizeForPrev);
-        for (Node n : nodes) {
-            list.addAll(n.getPrev());
+    public int indexOf(String nodePath) {
+        Integer ordinal = ordinals.get(nodePath);
+
+        // path not in normalized format
+        if (ordinal == null) {
+            ordinal = ordinals.get(NodePath.create(nodePath).getPathInStr());
         }
-        return list;
+
+        return ordinal == null ? -1 : ordinal;
     }
 
-    private Node findNextWithSameParent(Node node, Node parent) {
-        for (Node next : node.next) {
-            if (parent.equals((next.parent))) {
-                return next;
-            }
+    int ordinal(Node node) {
+        return ordinal(node.getPathAsString());
+    }
 
-            Node n = findNextWithSameParent(next, parent);
-            if (n != null) {
-                return n;
-            }
+    private int ordinal(String path) {
+        int ordinal = indexOf(path);
+        if (ordinal < 0) {
+            throw new ArgumentException("invalid node path {0}", path);
         }
+        return ordinal;
+    }
 
-        return null;
+    private void prevs(int ordinal, BitSet output) {
+        for (int i = prevOffsets[ordinal]; i < prevOffsets[ordinal + 1]; i++) {
+            output.set(prevIndices[i]);
+        }
+    }
+
+    private List<Node> toNodes(BitSet selected) {
+        List<Node> list = new ArrayList<>(selected.cardinality());
+        for (int i = selected.nextSetBit(0); i >= 0; i = selected.nextSetBit(i + 1)) {
+            list.add(nodes[i]);
+        }
+        return list;
     }
 
     private void buildMetaData() {
@@ -254,90 +319,153 @@ public final class NodeTree {
         return prevs;
     }
 
-    private void buildEndNodes() {
-        flatted.forEach((k, v) -> {
-            if (v.next.isEmpty()) {
-                ends.add(v);
+    /**
+     * Build CSR indices of next or prev nodes, and fill offsets
+     */
+    private int[] buildIndices(int[] offsets, boolean isNext) {
+        for (int i = 0; i < nodes.length; i++) {
+            List<Node> adjacent = isNext ? nodes[i].next : nodes[i].prev;
+            offsets[i + 1] = offsets[i] + adjacent.size();
+        }
+
+        int[] indices = new int[offsets[nodes.length]];
+        for (int i = 0; i < nodes.length; i++) {
+            List<Node> adjacent = isNext ? nodes[i].next : nodes[i].prev;
+            int j = offsets[i];
+            for (Node n : adjacent) {
+                indices[j++] = ordinal(n);
             }
-        });
+        }
+        return indices;
+    }
+
+    private List<List<Node>> buildSkips() {
+        List<List<Node>> list = new ArrayList<>(nodes.length);
+        for (Node node : nodes) {
+            list.add(Collections.unmodifiableList(findSkip(node)));
+        }
+        return list;
+    }
+
+    private List<List<Node>> buildPostSteps() {
+        BitSet[] cache = new BitSet[nodes.length];
+        List<List<Node>> list = new ArrayList<>(nodes.length);
+        for (int i = 0; i < nodes.length; i++) {
+            list.add(Collections.unmodifiableList(toNodes(findNextPost(i, cache))));
+        }
+        return list;
     }
 
-    private List<Node> findNextPost(NodePath path) {
-        Node n = get(path);
+    private List<Node> findSkip(Node node) {
+        Node parent = node.getParent();
+        if (parent == null) {
+            return Collections.emptyList();
+        }
+
+        if (parent instanceof ParallelStepNode) {
+            parent = parent.parent;
+        } else {
+            List<Node> children = parent.getChildren();
+            if (children.get(children.size() - 1).equals(node)) {
+                return new ArrayList<>(node.next);
+            }
+        }
+
+        Node nextWithSameParent = findNextWithSameParent(node, parent);
+        if (nextWithSameParent == null) {
+            return Collections.emptyList();
+        }
+
+        return Lists.newArrayList(nextWithSameParent);
+    }
+
+    private Node findNextWithSameParent(Node node, Node parent) {
+        for (Node next : node.next) {
+            if (parent.equals((next.parent))) {
+                return next;
+            }
+
+            Node n = findNextWithSameParent(next, parent);
+            if (n != null) {
+                return n;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Find post steps after the node
+     */
+    private BitSet findNextPost(int ordinal, BitSet[] cache) {
+        Node n = nodes[ordinal];
 
         // check if step in parallel
-        if (!isPostStep(n)) {
+        if (!postSteps.get(ordinal)) {
             ParallelStepNode parent = n.getParent(ParallelStepNode.class);
             if (parent != null) {
-                return Lists.newArrayList(findPostSteps(parent));
+                BitSet post = new BitSet(nodes.length);
+                findPostSteps(parent, post);
+                return post;
             }
         }
 
-        Collection<Node> post = new HashSet<>();
-        for (Node next : n.next) {
-            post.addAll(findNextPost(next));
+        BitSet post = new BitSet(nodes.length);
+        for (int i = nextOffsets[ordinal]; i < nextOffsets[ordinal + 1]; i++) {
+            post.or(findNextPostOfNode(nextIndices[i], cache));
         }
-
-        return Lists.newArrayList(post);
+        return post;
     }
 
-    private Collection<Node> findNextPost(Node node) {
+    /**
+     * Find closest post steps from the node, result cached by ordinal
+     */
+    private BitSet findNextPostOfNode(int ordinal, BitSet[] cache) {
+        if (cache[ordinal] != null) {
+            return cache[ordinal];
+        }
+
+        Node node = nodes[ordinal];
+        BitSet post = new BitSet(nodes.length);
+
         if (node instanceof ParallelStepNode) {
-            Collection<Node> output = findPostSteps((ParallelStepNode) node);
-            if (!output.isEmpty()) {
-                return output;
-            }
+            findPostSteps((ParallelStepNode) node, post);
         }
 
         if (node instanceof FlowNode) {
-            Collection<Node> output = findPostSteps((FlowNode) node);
-            if (!output.isEmpty()) {
-                return output;
-            }
+            findPostSteps((FlowNode) node, post);
         }
 
         if (node instanceof RegularStepNode) {
-            Collection<Node> output = findPostSteps((RegularStepNode) node);
-            if (!output.isEmpty()) {
-                return output;
-            }
+            post.set(ordinal, postSteps.get(ordinal));
         }
 
-        Collection<Node> post = new HashSet<>();
-        for (Node next : node.next) {
-            post.addAll(findNextPost(next));
+        if (post.isEmpty()) {
+            for (int i = nextOffsets[ordinal]; i < nextOffsets[ordinal + 1]; i++) {
+                post.or(findNextPostOfNode(nextIndices[i], cache));
+            }
         }
+
+        cache[ordinal] = post;
         return post;
     }
 
-    private Collection<Node> findPostSteps(ParallelStepNode p) {
-        Collection<Node> post = new HashSet<>();
+    private void findPostSteps(ParallelStepNode p, BitSet output) {
         for (Node child : p.getChildren()) {
-            FlowNode f = (FlowNode) child;
-            post.addAll(findPostSteps(f));
+            findPostSteps((FlowNode) child, output);
         }
-        return post;
     }
 
-    private Collection<Node> findPostSteps(FlowNode f) {
-        Collection<Node> post = new HashSet<>();
+    private void findPostSteps(FlowNode f, BitSet output) {
         for (Node child : f.getChildren()) {
-            if (child instanceof RegularStepNode) {
-                post.addAll(findPostSteps((RegularStepNode) child));
+            if (child instanceof RegularStepNode && isPostStep(child)) {
+                output.set(ordinal(child));
             }
 
             if (child instanceof ParallelStepNode) {
-                post.addAll(findPostSteps((ParallelStepNode) child));
+                findPostSteps((ParallelStepNode) child, output);
             }
         }
-        return post;
-    }
-
-    private Collection<Node> findPostSteps(RegularStepNode r) {
-        if (r.isPost()) {
-            return Sets.newHashSet(r);
-        }
-        return Collections.emptyList();
     }
 
     private static boolean isPostStep(Node n) {
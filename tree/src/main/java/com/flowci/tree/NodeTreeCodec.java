@@ -0,0 +1,478 @@
+/*
+ * Copyright 2020 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.tree;
+
+import com.flowci.domain.DockerOption;
+import com.flowci.domain.LocalTask;
+import com.flowci.domain.StringVars;
+import com.flowci.exception.YmlException;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Binary encoding of the built node tree, to restore tree without yaml parsing and graph building
+ *
+ * Layout:
+ * - header: magic, version
+ * - string table: count, [length, utf-8 bytes]
+ * - nodes in ordinal order: type, name, parent ordinal, common fields, fields of type
+ * - edges in ordinal order: [num of next, next ordinals], [num of prev, prev ordinals]
+ *
+ * All integers are var int, strings are referred by index of string table, 0 is null
+ *
+ * @author yang
+ */
+public final class NodeTreeCodec {
+
+    private static final int Magic = 0x464E5454; // FNTT
+
+    private static final byte Version = 1;
+
+    private static final byte TypeFlow = 1;
+
+    private static final byte TypeRegular = 2;
+
+    private static final byte TypeParallel = 3;
+
+    private NodeTreeCodec() {
+    }
+
+    public static byte[] encode(NodeTree tree) {
+        Encoder encoder = new Encoder();
+        Collection<Node> nodes = tree.getFlatted().values();
+
+        encoder.body.writeInt(nodes.size());
+        for (Node node : nodes) {
+            encoder.writeNode(tree, node);
+        }
+
+        for (Node node : nodes) {
+            encoder.writeEdges(tree, node.next);
+            encoder.writeEdges(tree, node.prev);
+        }
+
+        return encoder.toByteArray();
+    }
+
+    /**
+     * Decode node tree from bytes
+     *
+     * @throws YmlException if bytes are not valid encoded tree
+     */
+    public static NodeTree decode(byte[] bytes) {
+        try {
+            return new Decoder(ByteBuffer.wrap(bytes)).readTree();
+        } catch (YmlException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw new YmlException("Invalid encoded node tree", e);
+        }
+    }
+
+    private static final class Encoder {
+
+        private final Map<String, Integer> strings = new HashMap<>();
+
+        private final Output table = new Output();
+
+        private final Output body = new Output();
+
+        byte[] toByteArray() {
+            Output header = new Output();
+            header.writeFixedInt(Magic);
+            header.write(Version);
+            header.writeInt(strings.size());
+
+            Output output = new Output(header.size() + table.size() + body.size());
+            header.writeTo(output);
+            table.writeTo(output);
+            body.writeTo(output);
+            return output.toByteArray();
+        }
+
+        void writeNode(NodeTree tree, Node node) {
+            if (node instanceof FlowNode) {
+                body.write(TypeFlow);
+            } else if (node instanceof RegularStepNode) {
+                body.write(TypeRegular);
+            } else if (node instanceof ParallelStepNode) {
+                body.write(TypeParallel);
+            } else {
+                throw new YmlException("Unsupported node type {0}", node.getClass().getName());
+            }
+
+            writeString(node.getName());
+            body.writeInt(node.getParent() == null ? 0 : tree.ordinal(node.getParent()) + 1);
+            writeString(node.getCondition());
+            writeMap(node.getEnvironments());
+
+            body.writeInt(node.getDockers().size());
+            for (DockerOption docker : node.getDockers()) {
+                writeDocker(docker);
+            }
+
+            if (node instanceof FlowNode) {
+                writeFlow((FlowNode) node);
+                return;
+            }
+
+            if (node instanceof RegularStepNode) {
+                writeRegular((RegularStepNode) node);
+            }
+        }
+
+        void writeEdges(NodeTree tree, List<Node> nodes) {
+            body.writeInt(nodes.size());
+            for (Node n : nodes) {
+                body.writeInt(tree.ordinal(n));
+            }
+        }
+
+        private void writeFlow(FlowNode node) {
+            Selector selector = node.getSelector();
+            if (selector == Selector.EMPTY) {
+                body.write(0);
+            } else {
+                body.write(1);
+                writeStrings(selector.getLabel());
+            }
+
+            body.writeInt(node.getNotifications().size());
+            for (LocalTask task : node.getNotifications()) {
+                writeString(task.getPlugin());
+                writeMap(task.getEnvs());
+            }
+        }
+
+        private void writeRegular(RegularStepNode node) {
+            body.write(node.isPost() ? 1 : 0);
+            body.write(node.isAllowFailure() ? 1 : 0);
+            writeString(node.getBash());
+            writeString(node.getPwsh());
+            writeString(node.getPlugin());
+            writeInteger(node.getTimeout());
+            writeInteger(node.getRetry());
+            writeStrings(node.getExports());
+            writeStrings(node.getSecrets());
+            writeStrings(node.getConfigs());
+
+            Cache cache = node.getCache();
+            if (cache == null) {
+                body.write(0);
+            } else {
+                body.write(1);
+                writeString(cache.getKey());
+                writeStrings(cache.getPaths());
+            }
+        }
+
+        private void writeDocker(DockerOption docker) {
+            writeString(docker.getImage());
+            writeString(docker.getAuth());
+            writeString(docker.getName());
+            writeStrings(docker.getEntrypoint());
+            writeStrings(docker.getCommand());
+            writeString(docker.getNetwork());
+            writeString(docker.getUser());
+            writeMap(docker.getEnvironment());
+            writeStrings(docker.getPorts());
+            writeString(docker.getContainerId());
+            body.write(docker.isRuntime() ? 1 : 0);
+            body.write(docker.isStopContainer() ? 1 : 0);
+            body.write(docker.isDeleteContainer() ? 1 : 0);
+        }
+
+        private void writeInteger(Integer value) {
+            body.writeInt(value == null ? 0 : 1);
+            if (value != null) {
+                body.writeFixedInt(value);
+            }
+        }
+
+        private void writeMap(Map<String, String> map) {
+            if (map == null) {
+                body.writeInt(0);
+                return;
+            }
+
+            body.writeInt(map.size() + 1);
+            for (Map.Entry<String, String> entry : map.entrySet()) {
+                writeString(entry.getKey());
+                writeString(entry.getValue());
+            }
+        }
+
+        private void writeStrings(Collection<String> list) {
+            if (list == null) {
+                body.writeInt(0);
+                return;
+            }
+
+            body.writeInt(list.size() + 1);
+            for (String item : list) {
+                writeString(item);
+            }
+        }
+
+        private void writeString(String value) {
+            if (value == null) {
+                body.writeInt(0);
+                return;
+            }
+
+            Integer index = strings.get(value);
+            if (index == null) {
+                index = strings.size();
+                strings.put(value, index);
+
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                table.writeInt(bytes.length);
+                table.write(bytes, 0, bytes.length);
+            }
+
+            body.writeInt(index + 1);
+        }
+    }
+
+    private static final class Decoder {
+
+        private final ByteBuffer buffer;
+
+        private String[] strings;
+
+        Decoder(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        NodeTree readTree() {
+            if (buffer.getInt() != Magic || buffer.get() != Version) {
+                throw new YmlException("Invalid encoded node tree");
+            }
+
+            strings = new String[readInt()];
+            for (int i = 0; i < strings.length; i++) {
+                int length = readInt();
+                strings[i] = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+                buffer.position(buffer.position() + length);
+            }
+
+            Node[] nodes = new Node[readInt()];
+            for (int i = 0; i < nodes.length; i++) {
+                nodes[i] = readNode(nodes);
+            }
+
+            for (Node node : nodes) {
+                readEdges(nodes, node.next);
+                readEdges(nodes, node.prev);
+            }
+
+            return new NodeTree((FlowNode) nodes[0], Arrays.asList(nodes));
+        }
+
+        private Node readNode(Node[] nodes) {
+            byte type = buffer.get();
+            String name = readString();
+            int parentOrdinal = readInt();
+            Node parent = parentOrdinal == 0 ? null : nodes[parentOrdinal - 1];
+
+            Node node;
+            if (type == TypeFlow) {
+                node = new FlowNode(name, parent);
+            } else if (type == TypeRegular) {
+                node = new RegularStepNode(name, parent);
+            } else if (type == TypeParallel) {
+                node = new ParallelStepNode(name, parent);
+            } else {
+                throw new YmlException("Invalid encoded node tree");
+            }
+
+            if (parent instanceof ParallelStepNode) {
+                ((ParallelStepNode) parent).getParallel().put(name, (FlowNode) node);
+            } else if (parent != null) {
+                parent.getChildren().add(node);
+            }
+
+            node.setCondition(readString());
+            node.setEnvironments(readStringVars());
+
+            int numOfDocker = readInt();
+            for (int i = 0; i < numOfDocker; i++) {
+                node.getDockers().add(readDocker());
+            }
+
+            if (node instanceof FlowNode) {
+                readFlow((FlowNode) node);
+            }
+
+            if (node instanceof RegularStepNode) {
+                readRegular((RegularStepNode) node);
+            }
+
+            return node;
+        }
+
+        private void readEdges(Node[] nodes, List<Node> edges) {
+            int size = readInt();
+            for (int i = 0; i < size; i++) {
+                edges.add(nodes[readInt()]);
+            }
+        }
+
+        private void readFlow(FlowNode node) {
+            if (buffer.get() == 1) {
+                Selector selector = new Selector();
+                selector.setLabel(readStrings(new HashSet<>()));
+                node.setSelector(selector);
+            }
+
+            int numOfNotification = readInt();
+            for (int i = 0; i < numOfNotification; i++) {
+                LocalTask task = new LocalTask();
+                task.setPlugin(readString());
+                task.setEnvs(readStringVars());
+                node.getNotifications().add(task);
+            }
+        }
+
+        private void readRegular(RegularStepNode node) {
+            node.setPost(buffer.get() == 1);
+            node.setAllowFailure(buffer.get() == 1);
+            node.setBash(readString());
+            node.setPwsh(readString());
+            node.setPlugin(readString());
+            node.setTimeout(readInteger());
+            node.setRetry(readInteger());
+            node.setExports(readStrings(new HashSet<>()));
+            node.setSecrets(readStrings(new HashSet<>()));
+            node.setConfigs(readStrings(new HashSet<>()));
+
+            if (buffer.get() == 1) {
+                Cache cache = new Cache();
+                cache.setKey(readString());
+                cache.setPaths(readStrings(new ArrayList<>()));
+                node.setCache(cache);
+            }
+        }
+
+        private DockerOption readDocker() {
+            DockerOption docker = new DockerOption();
+            docker.setImage(readString());
+            docker.setAuth(readString());
+            docker.setName(readString());
+            docker.setEntrypoint(readStrings(new ArrayList<>()));
+            docker.setCommand(readStrings(new ArrayList<>()));
+            docker.setNetwork(readString());
+            docker.setUser(readString());
+            docker.setEnvironment(readMap(new HashMap<>()));
+            docker.setPorts(readStrings(new LinkedList<>()));
+            docker.setContainerId(readString());
+            docker.setRuntime(buffer.get() == 1);
+            docker.setStopContainer(buffer.get() == 1);
+            docker.setDeleteContainer(buffer.get() == 1);
+            return docker;
+        }
+
+        private Integer readInteger() {
+            if (readInt() == 0) {
+                return null;
+            }
+            return buffer.getInt();
+        }
+
+        private StringVars readStringVars() {
+            StringVars vars = new StringVars();
+            return readMap(vars);
+        }
+
+        private <T extends Map<String, String>> T readMap(T map) {
+            int size = readInt() - 1;
+            if (size < 0) {
+                return null;
+            }
+
+            for (int i = 0; i < size; i++) {
+                map.put(readString(), readString());
+            }
+            return map;
+        }
+
+        private <T extends Collection<String>> T readStrings(T collection) {
+            int size = readInt() - 1;
+            if (size < 0) {
+                return null;
+            }
+
+            for (int i = 0; i < size; i++) {
+                collection.add(readString());
+            }
+            return collection;
+        }
+
+        private String readString() {
+            int index = readInt();
+            return index == 0 ? null : strings[index - 1];
+        }
+
+        private int readInt() {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                byte b = buffer.get();
+                value |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new YmlException("Invalid encoded node tree");
+        }
+    }
+
+    /**
+     * Byte output with var int support
+     */
+    private static final class Output extends ByteArrayOutputStream {
+
+        Output() {
+            super(256);
+        }
+
+        Output(int size) {
+            super(size);
+        }
+
+        void writeInt(int value) {
+            while ((value & ~0x7F) != 0) {
+                write((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            write(value);
+        }
+
+        void writeFixedInt(int value) {
+            write(value >>> 24);
+            write(value >>> 16);
+            write(value >>> 8);
+            write(value);
+        }
+
+        void writeTo(Output output) {
+            output.write(buf, 0, count);
+        }
+    }
+}
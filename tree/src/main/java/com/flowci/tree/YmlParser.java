@@ -29,11 +29,14 @@ import static com.flowci.tree.FlowNode.DEFAULT_ROOT_NAME;
  */
 public class YmlParser {
 
+    // yaml instance is not thread safe
+    private static final ThreadLocal<Yaml> Parser = ThreadLocal.withInitial(() -> YamlHelper.create(FlowYml.class));
+
     /**
      * Create Node instance from yml
      */
-    public static synchronized FlowNode load(String yml) {
-        Yaml yaml = YamlHelper.create(FlowYml.class);
+    public static FlowNode load(String yml) {
+        Yaml yaml = Parser.get();
 
         try {
             FlowYml root = yaml.load(yml);
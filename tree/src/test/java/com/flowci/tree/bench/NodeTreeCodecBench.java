@@ -0,0 +1,93 @@
+/*
+ * Copyright 2020 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.tree.bench;
+
+import com.flowci.tree.NodeTree;
+import com.flowci.tree.NodeTreeCodec;
+import com.flowci.tree.YmlParser;
+
+/**
+ * Compare time of decoding encoded node tree and parsing yml, it is not a unit test and not run by surefire
+ * <p>
+ * Run from the tree module after mvn test-compile:
+ * java -cp target/classes:target/test-classes:{dependencies} com.flowci.tree.bench.NodeTreeCodecBench [groups] [subflows] [rounds]
+ */
+public final class NodeTreeCodecBench {
+
+    public static void main(String[] args) {
+        int groups = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        int subflows = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+
+        String yml = createLargeYml(groups, subflows);
+        NodeTree tree = NodeTree.create(YmlParser.load(yml));
+        byte[] bytes = NodeTreeCodec.encode(tree);
+
+        // warm up
+        for (int i = 0; i < rounds; i++) {
+            NodeTree.create(YmlParser.load(yml));
+            NodeTreeCodec.decode(bytes);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            NodeTree.create(YmlParser.load(yml));
+        }
+        long parseTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            NodeTreeCodec.decode(bytes);
+        }
+        long decodeTime = System.nanoTime() - start;
+
+        System.out.printf("%d nodes, yml %d chars, encoded %d bytes: parse %.3f ms, decode %.3f ms%n",
+                tree.numOfNode(), yml.length(), bytes.length,
+                parseTime / 1e6 / rounds, decodeTime / 1e6 / rounds);
+    }
+
+    /**
+     * Create yml with groups of step, each group has a parallel step with subflows
+     */
+    private static String createLargeYml(int groups, int subflows) {
+        StringBuilder builder = new StringBuilder();
+        builder.append("envs:\n  FLOW_VERSION: \"1.0\"\n\nsteps:\n");
+
+        for (int i = 0; i < groups; i++) {
+            builder.append("  - name: step-").append(i).append("\n")
+                    .append("    envs:\n      STEP_INDEX: \"").append(i).append("\"\n")
+                    .append("    docker:\n      image: \"ubuntu:18.04\"\n")
+                    .append("    bash: |\n      echo ").append(i).append("\n");
+
+            builder.append("  - parallel:\n");
+            for (int j = 0; j < subflows; j++) {
+                builder.append("      subflow-").append(i).append("-").append(j).append(":\n")
+                        .append("        steps:\n")
+                        .append("          - name: build\n")
+                        .append("            bash: \"echo build\"\n")
+                        .append("          - name: test\n")
+                        .append("            allow_failure: true\n")
+                        .append("            bash: \"echo test\"\n");
+            }
+        }
+
+        return builder.toString();
+    }
+
+    private NodeTreeCodecBench() {
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2020 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.tree.test;
+
+import com.flowci.domain.DockerOption;
+import com.flowci.exception.YmlException;
+import com.flowci.tree.*;
+import com.google.common.io.Files;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * @author yang
+ */
+public class NodeTreeCodecTest {
+
+    private static final String[] Resources = {
+            "flow.yml",
+            "flow-parallel.yml",
+            "flow-with-post.yml",
+            "flow-with-exports.yml",
+            "step-in-step.yml",
+            "step-with-dockers.yml"
+    };
+
+    @Test
+    public void should_encode_and_decode_tree() throws IOException {
+        for (String resource : Resources) {
+            NodeTree expected = NodeTree.create(YmlParser.load(loadContent(resource)));
+            NodeTree actual = NodeTreeCodec.decode(NodeTreeCodec.encode(expected));
+            assertTree(expected, actual);
+        }
+    }
+
+    @Test
+    public void should_encode_same_bytes_after_decode() throws IOException {
+        NodeTree tree = NodeTree.create(YmlParser.load(loadContent("flow-with-post.yml")));
+        byte[] bytes = NodeTreeCodec.encode(tree);
+        Assert.assertArrayEquals(bytes, NodeTreeCodec.encode(NodeTreeCodec.decode(bytes)));
+    }
+
+    @Test(expected = YmlException.class)
+    public void should_throw_exception_if_bytes_invalid() throws IOException {
+        byte[] bytes = NodeTreeCodec.encode(NodeTree.create(YmlParser.load(loadContent("flow.yml"))));
+        byte[] truncated = new byte[bytes.length / 2];
+        System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+        NodeTreeCodec.decode(truncated);
+    }
+
+    @Test(expected = YmlException.class)
+    public void should_throw_exception_if_not_encoded_tree() {
+        NodeTreeCodec.decode("steps:".getBytes());
+    }
+
+    private static void assertTree(NodeTree expected, NodeTree actual) {
+        Assert.assertEquals(expected.numOfNode(), actual.numOfNode());
+        Assert.assertEquals(expected.getMaxHeight(), actual.getMaxHeight());
+        Assert.assertEquals(paths(expected.getEnds()), paths(actual.getEnds()));
+        Assert.assertEquals(expected.getSelectors(), actual.getSelectors());
+        Assert.assertEquals(expected.getConditions(), actual.getConditions());
+        Assert.assertEquals(expected.getPlugins(), actual.getPlugins());
+        Assert.assertEquals(expected.getSecrets(), actual.getSecrets());
+        Assert.assertEquals(expected.getConfigs(), actual.getConfigs());
+
+        Iterator<Node> iterator = actual.getFlatted().values().iterator();
+        for (Node e : expected.getFlatted().values()) {
+            Node a = iterator.next();
+            assertNode(e, a);
+
+            Assert.assertEquals(paths(e.getNext()), paths(a.getNext()));
+            Assert.assertEquals(paths(e.getPrev()), paths(a.getPrev()));
+            Assert.assertEquals(paths(e.getChildren()), paths(a.getChildren()));
+            Assert.assertEquals(paths(expected.post(e.getPath())), paths(actual.post(a.getPath())));
+            Assert.assertEquals(paths(expected.skip(e.getPath())), paths(actual.skip(a.getPath())));
+            Assert.assertSame(a, actual.get(a.getPath()));
+        }
+    }
+
+    private static void assertNode(Node expected, Node actual) {
+        Assert.assertEquals(expected.getClass(), actual.getClass());
+        Assert.assertEquals(expected.getPath(), actual.getPath());
+        Assert.assertEquals(expected.getName(), actual.getName());
+        Assert.assertEquals(expected.getParent() == null, actual.getParent() == null);
+        if (expected.getParent() != null) {
+            Assert.assertEquals(expected.getParent().getPath(), actual.getParent().getPath());
+        }
+        Assert.assertEquals(expected.getCondition(), actual.getCondition());
+        Assert.assertEquals(expected.getEnvironments(), actual.getEnvironments());
+
+        Assert.assertEquals(expected.getDockers().size(), actual.getDockers().size());
+        for (int i = 0; i < expected.getDockers().size(); i++) {
+            assertDocker(expected.getDockers().get(i), actual.getDockers().get(i));
+        }
+
+        if (expected instanceof FlowNode) {
+            FlowNode e = (FlowNode) expected;
+            FlowNode a = (FlowNode) actual;
+            Assert.assertEquals(e.getSelector().getLabel(), a.getSelector().getLabel());
+            Assert.assertEquals(e.getNotifications().size(), a.getNotifications().size());
+            for (int i = 0; i < e.getNotifications().size(); i++) {
+                Assert.assertEquals(e.getNotifications().get(i).getPlugin(), a.getNotifications().get(i).getPlugin());
+                Assert.assertEquals(e.getNotifications().get(i).getEnvs(), a.getNotifications().get(i).getEnvs());
+            }
+        }
+
+        if (expected instanceof RegularStepNode) {
+            RegularStepNode e = (RegularStepNode) expected;
+            RegularStepNode a = (RegularStepNode) actual;
+            Assert.assertEquals(e.isPost(), a.isPost());
+            Assert.assertEquals(e.isAllowFailure(), a.isAllowFailure());
+            Assert.assertEquals(e.getBash(), a.getBash());
+            Assert.assertEquals(e.getPwsh(), a.getPwsh());
+            Assert.assertEquals(e.getPlugin(), a.getPlugin());
+            Assert.assertEquals(e.getTimeout(), a.getTimeout());
+            Assert.assertEquals(e.getRetry(), a.getRetry());
+            Assert.assertEquals(e.getExports(), a.getExports());
+            Assert.assertEquals(e.getSecrets(), a.getSecrets());
+            Assert.assertEquals(e.getConfigs(), a.getConfigs());
+            Assert.assertEquals(e.getCache() == null, a.getCache() == null);
+            if (e.getCache() != null) {
+                Assert.assertEquals(e.getCache().getKey(), a.getCache().getKey());
+                Assert.assertEquals(e.getCache().getPaths(), a.getCache().getPaths());
+            }
+        }
+
+        if (expected instanceof ParallelStepNode) {
+            ParallelStepNode e = (ParallelStepNode) expected;
+            ParallelStepNode a = (ParallelStepNode) actual;
+            Assert.assertEquals(e.getParallel().keySet(), a.getParallel().keySet());
+        }
+    }
+
+    private static Set<NodePath> paths(Collection<Node> nodes) {
+        Set<NodePath> paths = new LinkedHashSet<>(nodes.size());
+        for (Node n : nodes) {
+            paths.add(n.getPath());
+        }
+        return paths;
+    }
+
+    private static void assertDocker(DockerOption expected, DockerOption actual) {
+        Assert.assertEquals(expected.getImage(), actual.getImage());
+        Assert.assertEquals(expected.getAuth(), actual.getAuth());
+        Assert.assertEquals(expected.getName(), actual.getName());
+        Assert.assertEquals(expected.getEntrypoint(), actual.getEntrypoint());
+        Assert.assertEquals(expected.getCommand(), actual.getCommand());
+        Assert.assertEquals(expected.getNetwork(), actual.getNetwork());
+        Assert.assertEquals(expected.getUser(), actual.getUser());
+        Assert.assertEquals(expected.getEnvironment(), actual.getEnvironment());
+        Assert.assertEquals(expected.getPorts(), actual.getPorts());
+        Assert.assertEquals(expected.isRuntime(), actual.isRuntime());
+        Assert.assertEquals(expected.isStopContainer(), actual.isStopContainer());
+        Assert.assertEquals(expected.isDeleteContainer(), actual.isDeleteContainer());
+    }
+
+    private static String loadContent(String resource) throws IOException {
+        ClassLoader classLoader = NodeTreeCodecTest.class.getClassLoader();
+        URL url = classLoader.getResource(resource);
+        return Files.toString(new File(url.getFile()), StandardCharsets.UTF_8);
+    }
+}
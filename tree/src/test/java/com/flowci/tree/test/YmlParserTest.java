@@ -28,8 +28,13 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static com.flowci.tree.FlowNode.DEFAULT_ROOT_NAME;
 
@@ -127,6 +132,23 @@ public class YmlParserTest {
         Assert.assertTrue(step2.getChildren().isEmpty());
         Assert.assertEquals(root, step2.getParent());
         Assert.assertEquals(step2, step1.getNext().get(0));
+
+        // verify canonical path instance
+        NodePath step2Path = tree.path("/" + DEFAULT_ROOT_NAME + "/step2");
+        Assert.assertSame(step2.getPath(), step2Path);
+        Assert.assertSame(root.getPath(), step2Path.parent());
+        Assert.assertEquals(2, step2Path.depth());
+        Assert.assertNull(root.getPath().parent());
+
+        NodePath created = NodePath.create(DEFAULT_ROOT_NAME, "step2");
+        Assert.assertEquals(step2Path, created);
+        Assert.assertEquals(root.getPath(), created.parent());
+        Assert.assertEquals(2, created.depth());
+
+        // verify ordinal in flatted order
+        Assert.assertEquals(0, tree.indexOf(root.getPathAsString()));
+        Assert.assertEquals(tree.indexOf(step1.getPathAsString()) + 1, tree.indexOf("/" + DEFAULT_ROOT_NAME + "/step2"));
+        Assert.assertEquals(-1, tree.indexOf(DEFAULT_ROOT_NAME + "/not-existed"));
     }
 
     @Test
@@ -369,6 +391,36 @@ public class YmlParserTest {
 
         prevsOfPost1 = tree.prevs(nextFromSubD, true);
         Assert.assertEquals(2, prevsOfPost1.size());
+        Assert.assertTrue(prevsOfPost1.contains(tree.get(postOfSubC)));
+        Assert.assertTrue(prevsOfPost1.contains(tree.get(postOfSubD)));
+
+        // post steps from string path, and the result is shared
+        Assert.assertSame(nextFromSubflowC, tree.post("/flow/parallel-3/subflow-C/C"));
+        Assert.assertEquals(tree.get(post1OfRoot), tree.get("/flow/post-1"));
+    }
+
+    @Test
+    public void should_load_yml_concurrently() throws Exception {
+        String parallel = loadContent("flow-parallel.yml");
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+
+        try {
+            List<Future<FlowNode>> results = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                String yml = i % 2 == 0 ? content : parallel;
+                results.add(pool.submit(() -> YmlParser.load(yml)));
+            }
+
+            int numOfNode = NodeTree.create(YmlParser.load(content)).numOfNode();
+            int numOfParallelNode = NodeTree.create(YmlParser.load(parallel)).numOfNode();
+
+            for (int i = 0; i < results.size(); i++) {
+                FlowNode root = results.get(i).get(10, TimeUnit.SECONDS);
+                Assert.assertEquals(i % 2 == 0 ? numOfNode : numOfParallelNode, NodeTree.create(root).numOfNode());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
     }
 
     private String loadContent(String resource) throws IOException {
@@ -1,15 +1,19 @@
 package com.flowci.zookeeper;
 
-import lombok.AllArgsConstructor;
 import lombok.Getter;
 import org.apache.curator.framework.recipes.locks.InterProcessLock;
 
 @Getter
-@AllArgsConstructor
 public final class InterLock {
 
     private final String path;
 
     private final InterProcessLock lock;
 
+    private final long acquiredAt = System.nanoTime();
+
+    public InterLock(String path, InterProcessLock lock) {
+        this.path = path;
+        this.lock = lock;
+    }
 }
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2021 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.zookeeper;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lock wait and hold time, tagged by the first segment of lock path, ex: /job-locks/{job id} -> job-locks
+ */
+public final class LockMetrics {
+
+    public static final String MetricWait = "lock.wait";
+
+    public static final String MetricHold = "lock.hold";
+
+    private final MeterRegistry registry;
+
+    public LockMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public void recordWait(String path, long startNanos, boolean acquired) {
+        Timer.builder(MetricWait)
+                .description("Time to acquire lock")
+                .tags("lock", prefix(path), "acquired", String.valueOf(acquired))
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordHold(String path, long acquiredNanos) {
+        Timer.builder(MetricHold)
+                .description("Time of lock been held")
+                .tags("lock", prefix(path))
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(System.nanoTime() - acquiredNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public static String prefix(String path) {
+        int start = path.startsWith("/") ? 1 : 0;
+        int end = path.indexOf('/', start);
+        return end < 0 ? path.substring(start) : path.substring(start, end);
+    }
+}
@@ -16,6 +16,8 @@
 
 package com.flowci.zookeeper;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
 import lombok.Getter;
 import org.apache.curator.RetryPolicy;
 import org.apache.curator.framework.CuratorFramework;
@@ -56,11 +58,20 @@ public class ZookeeperClient implements AutoCloseable {
     @Getter
     private final Executor watchExecutor;
 
+    @Getter
+    private final LockMetrics lockMetrics;
+
     public ZookeeperClient(String connection, int retryTimes, int timeOutInSeconds, Executor watchExecutor) {
+        this(connection, retryTimes, timeOutInSeconds, watchExecutor, Metrics.globalRegistry);
+    }
+
+    public ZookeeperClient(String connection, int retryTimes, int timeOutInSeconds, Executor watchExecutor,
+                           MeterRegistry registry) {
         RetryPolicy policy = new RetryNTimes(retryTimes, RetryBetweenInMs);
         client = CuratorFrameworkFactory.newClient(connection, policy);
         this.timeout = timeOutInSeconds;
         this.watchExecutor = watchExecutor;
+        this.lockMetrics = new LockMetrics(registry);
     }
 
     public String makePath(String parent, String child) {
@@ -156,37 +167,54 @@ public class ZookeeperClient implements AutoCloseable {
 
     public void lock(String path, Consumer<String> consumer) {
         InterProcessMutex lock = new InterProcessMutex(client, path);
+        long start = System.nanoTime();
+        boolean acquired = false;
 
         try {
-            if (!lock.acquire(0, TimeUnit.SECONDS)) {
-                throw new ZookeeperException("Cannot acquire the lock on path: " + path);
-            }
-            consumer.accept(path);
+            acquired = lock.acquire(0, TimeUnit.SECONDS);
         } catch (Exception e) {
             throw new ZookeeperException("Cannot acquire the lock on path {0}: {1}", path, e.getMessage());
+        } finally {
+            lockMetrics.recordWait(path, start, acquired);
+        }
+
+        if (!acquired) {
+            throw new ZookeeperException("Cannot acquire the lock on path: " + path);
+        }
+
+        long acquiredAt = System.nanoTime();
+        try {
+            consumer.accept(path);
         } finally {
             try {
                 lock.release();
             } catch (Exception ignored) {
             }
+
+            lockMetrics.recordHold(path, acquiredAt);
         }
     }
 
     public Optional<InterLock> lock(String path, int timeout) {
         InterProcessMutex lock = new InterProcessMutex(client, path);
+        long start = System.nanoTime();
         try {
             if (lock.acquire(timeout, TimeUnit.SECONDS)) {
+                lockMetrics.recordWait(path, start, true);
                 return Optional.of(new InterLock(path, lock));
             }
         } catch (Exception ignore) {
             ignore.printStackTrace();
         }
+
+        lockMetrics.recordWait(path, start, false);
         return Optional.empty();
     }
 
     public void release(InterLock lock) {
         try {
             lock.getLock().release();
+            lockMetrics.recordHold(lock.getPath(), lock.getAcquiredAt());
         } catch (Exception e) {
             throw new ZookeeperException("Unable to release lock: {0}", e.getMessage());
         }